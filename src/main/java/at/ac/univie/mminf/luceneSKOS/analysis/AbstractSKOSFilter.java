@@ -19,9 +19,7 @@ package at.ac.univie.mminf.luceneSKOS.analysis;
 import java.io.IOException;
 import java.io.StringReader;
 import java.util.Arrays;
-import java.util.Set;
-import java.util.Stack;
-import java.util.TreeSet;
+import java.util.EnumSet;
 
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.TokenFilter;
@@ -33,27 +31,65 @@ import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
 import org.apache.lucene.util.AttributeSource;
 import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.CharsRef;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import at.ac.univie.mminf.luceneSKOS.analysis.tokenattributes.SKOSTypeAttribute;
 import at.ac.univie.mminf.luceneSKOS.analysis.tokenattributes.SKOSTypeAttribute.SKOSType;
+import at.ac.univie.mminf.luceneSKOS.skos.ExpansionSink;
 import at.ac.univie.mminf.luceneSKOS.skos.SKOSEngine;
+import at.ac.univie.mminf.luceneSKOS.skos.SKOSExpansion;
+import at.ac.univie.mminf.luceneSKOS.skos.SKOSLanguages;
+import at.ac.univie.mminf.luceneSKOS.skos.SKOSRevision;
+import at.ac.univie.mminf.luceneSKOS.skos.VersionedSKOSEngine;
 
 /**
  * A SKOS-specific TokenFilter implementation
  */
 public abstract class AbstractSKOSFilter extends TokenFilter {
   
+  private static final Logger log = LoggerFactory
+      .getLogger(AbstractSKOSFilter.class);
+  
+  private static final SKOSType[] SKOS_TYPES = SKOSType.values();
+  
   /* a stack holding the expanded terms for a token */
-  protected Stack<ExpandedTerm> termStack;
+  protected final TermStack termStack = new TermStack();
   
   /* an engine delivering SKOS concepts */
   protected SKOSEngine engine;
   
+  /* the engine passed in, if it may change between token streams */
+  private final VersionedSKOSEngine versioned;
+  
+  /* the revision of the versioned engine used by the current token stream */
+  private SKOSRevision revision;
+  
   /* the skos types to expand to */
-  protected Set<SKOSType> types;
+  protected EnumSet<SKOSType> types;
+  
+  /* the skos types to expand to, one bit per SKOSType ordinal */
+  protected int typeMask;
   
-  /* provides access to the the term attributes */
-  protected AttributeSource.State current;
+  /* the languages of the labels to look up and expand to, see SKOSLanguages */
+  protected long languages = SKOSLanguages.ALL;
+  
+  /* pushes the labels of an engine expansion onto the stack */
+  protected final ExpansionSink stackSink = new ExpansionSink() {
+    @Override
+    public void add(String label, SKOSType type) {
+      termStack.push(label, type);
+    }
+  };
+  
+  /* the attributes of the token being expanded, reused for every token */
+  private AttributeSource current;
+  
+  /* the payload of each SKOSType, by ordinal */
+  private final BytesRef[] payloads = new BytesRef[SKOS_TYPES.length];
+  
+  /* receives the analyzed labels that are not precomputed */
+  private final CharsRef analyzedTerm = new CharsRef();
   
   /* the term text (propagated to the index) */
   protected final CharTermAttribute termAtt;
@@ -70,6 +106,12 @@ public abstract class AbstractSKOSFilter extends TokenFilter {
   /* the analyzer to use when parsing */
   protected final Analyzer analyzer;
   
+  /* whether to emit the analyzed labels of the pinned revisions */
+  private boolean revisionLabels;
+  
+  /* the analyzed labels of the engine used by the current token stream */
+  private AnalyzedLabels analyzedLabels;
+  
   /**
    * Constructor
    * 
@@ -83,15 +125,24 @@ public abstract class AbstractSKOSFilter extends TokenFilter {
   public AbstractSKOSFilter(TokenStream input, SKOSEngine engine,
       Analyzer analyzer, SKOSType... types) {
     super(input);
-    termStack = new Stack<ExpandedTerm>();
     this.engine = engine;
+    this.versioned = engine instanceof VersionedSKOSEngine
+        ? (VersionedSKOSEngine) engine : null;
     this.analyzer = analyzer;
     
     if (types != null && types.length > 0) {
-      this.types = new TreeSet<SKOSType>(Arrays.asList(types));
+      this.types = EnumSet.copyOf(Arrays.asList(types));
     } else {
-      this.types = new TreeSet<SKOSType>(Arrays.asList(new SKOSType[] {
-          SKOSType.PREF, SKOSType.ALT}));
+      this.types = EnumSet.of(SKOSType.PREF, SKOSType.ALT);
+    }
+    
+    for (SKOSType type : this.types) {
+      typeMask |= 1 << type.ordinal();
+    }
+    
+    for (SKOSType type : SKOS_TYPES) {
+      payloads[type.ordinal()] = new BytesRef(PayloadHelper.encodeInt(type
+          .ordinal()));
     }
     
     this.termAtt = addAttribute(CharTermAttribute.class);
@@ -100,6 +151,83 @@ public abstract class AbstractSKOSFilter extends TokenFilter {
     this.skosAtt = addAttribute(SKOSTypeAttribute.class);
   }
   
+  public long getLanguages() {
+    return languages;
+  }
+  
+  /**
+   * Restricts the labels that are looked up and emitted to the given
+   * languages, e.g. per request before the token stream is consumed
+   * 
+   * @param languages
+   *          a language mask, see {@link SKOSLanguages#getMask(String...)}
+   */
+  public void setLanguages(long languages) {
+    this.languages = languages;
+  }
+  
+  /**
+   * Emits the expanded labels in precomputed forms, instead of analyzing each
+   * label when it is emitted. The labels must be analyzed by the analyzer of
+   * this filter; labels missing from them are analyzed when emitted.
+   */
+  public void setAnalyzedLabels(AnalyzedLabels analyzedLabels) {
+    this.analyzedLabels = analyzedLabels;
+  }
+  
+  /**
+   * Emits the expanded labels in the forms analyzed when the revision pinned
+   * for a token stream was built (see {@link SKOSRevision#getAnalyzedLabels()}
+   * ), for an engine that is versioned. The analyzer of this filter must be a
+   * StandardAnalyzer of the vocabulary's match version.
+   */
+  public void setRevisionLabels(boolean revisionLabels) {
+    this.revisionLabels = revisionLabels;
+  }
+  
+  /**
+   * Pins the current revision of a versioned engine (e.g. a reloadable or
+   * merged one) for this token stream, with its analyzed labels
+   */
+  @Override
+  public void reset() throws IOException {
+    super.reset();
+    termStack.clear();
+    if (versioned != null) {
+      releaseRevision();
+      revision = versioned.acquire();
+      engine = revision.getEngine();
+      if (revisionLabels) {
+        try {
+          analyzedLabels = revision.getAnalyzedLabels();
+        } catch (Exception e) {
+          log.error("Error when accessing SKOS Engine.", e);
+        }
+      }
+    }
+  }
+  
+  @Override
+  public void close() throws IOException {
+    try {
+      super.close();
+    } finally {
+      releaseRevision();
+    }
+  }
+  
+  private void releaseRevision() throws IOException {
+    if (revision != null) {
+      SKOSRevision pinned = revision;
+      revision = null;
+      engine = versioned;
+      if (revisionLabels) {
+        analyzedLabels = null;
+      }
+      pinned.release();
+    }
+  }
+  
   /**
    * Advances the stream to the next token.
    * 
@@ -108,6 +236,18 @@ public abstract class AbstractSKOSFilter extends TokenFilter {
   @Override
   public abstract boolean incrementToken() throws IOException;
   
+  /**
+   * Captures the attributes of the token being expanded, into attributes
+   * reused for every token
+   */
+  protected final void captureCurrent() {
+    if (current == null) {
+      current = cloneAttributes();
+    } else {
+      copyTo(current);
+    }
+  }
+  
   /**
    * Replaces the current term (attributes) with term (attributes) from the
    * stack
@@ -115,31 +255,42 @@ public abstract class AbstractSKOSFilter extends TokenFilter {
    * @throws IOException
    */
   protected void processTermOnStack() throws IOException {
-    ExpandedTerm expandedTerm = termStack.pop();
+    String term = termStack.peekTerm();
     
-    String term = expandedTerm.getTerm();
+    SKOSType termType = termStack.peekType();
     
-    SKOSType termType = expandedTerm.getTermType();
+    termStack.pop();
     
-    String sTerm = "";
+    /* the labels of the engine are analyzed once, see AnalyzedLabels */
+    char[] analyzed = analyzedLabels == null ? null : analyzedLabels.get(term);
     
-    try {
-      sTerm = analyze(analyzer, term, new CharsRef()).toString();
-    } catch (IllegalArgumentException e) {
+    if (analyzed == AnalyzedLabels.ELIMINATED) {
       // skip this term
       return;
+    } else if (analyzed == null) {
+      try {
+        analyze(analyzer, term, analyzedTerm);
+      } catch (IllegalArgumentException e) {
+        // skip this term
+        return;
+      }
     }
     
     /*
-     * copies the values of all attribute implementations from this state into
-     * the implementations of the target stream
+     * copies the values of all attribute implementations of the expanded
+     * token into the implementations of the target stream
      */
-    restoreState(current);
+    current.copyTo(this);
     
     /*
      * Adds the expanded term to the term buffer
      */
-    termAtt.setEmpty().append(sTerm);
+    if (analyzed != null) {
+      termAtt.copyBuffer(analyzed, 0, analyzed.length);
+    } else {
+      termAtt.copyBuffer(analyzedTerm.chars, analyzedTerm.offset,
+          analyzedTerm.length);
+    }
     
     /*
      * set position increment to zero to put multiple terms into the same
@@ -154,10 +305,10 @@ public abstract class AbstractSKOSFilter extends TokenFilter {
     
     /*
      * converts the SKOS Attribute to a payload, which is propagated to the
-     * index
+     * index. The payloads are shared by all terms of a type and must not be
+     * modified.
      */
-    byte[] bytes = PayloadHelper.encodeInt(skosAtt.getSkosType().ordinal());
-    payloadAtt.setPayload(new BytesRef(bytes));
+    payloadAtt.setPayload(payloads[termType.ordinal()]);
   }
   
   /* Snipped from Solr's SynonymMap */
@@ -207,32 +358,98 @@ public abstract class AbstractSKOSFilter extends TokenFilter {
     
     if (labels != null) {
       for (String label : labels) {
-        termStack.push(new ExpandedTerm(label, type));
+        termStack.push(label, type);
       }
     }
-    
+  
   }
   
   /**
-   * Helper class for capturing terms and term types
+   * Pushes the labels of an expansion onto the stack, restricted to the skos
+   * types of this filter
+   * 
+   * @param expansion
    */
-  protected static class ExpandedTerm {
+  protected void pushExpansionToStack(SKOSExpansion expansion) {
+    pushExpansionToStack(expansion, 0);
+  }
+  
+  /**
+   * Pushes the labels of an expansion of the types of this filter, except
+   * those expanded only by the given sources (see
+   * {@link SKOSExpansion#getSources(int)})
+   * 
+   * @return the mask of the other sources of the pushed labels
+   */
+  protected long pushExpansionToStack(SKOSExpansion expansion, long skipped) {
+    long pushed = 0;
+    if (expansion != null) {
+      for (SKOSType type : SKOS_TYPES) {
+        if ((typeMask & (1 << type.ordinal())) != 0) {
+          for (int i = expansion.getStart(type); i < expansion.getEnd(type); i++) {
+            long sources = expansion.getSources(i) & ~skipped;
+            if (sources != 0) {
+              termStack.push(expansion.getLabel(i), type);
+              pushed |= sources;
+            }
+          }
+        }
+      }
+    }
+    return pushed;
+  }
+  
+  /**
+   * A stack of expanded terms and their types, kept in arrays that are reused
+   * for every token. The terms are the labels held by the engine.
+   */
+  protected static final class TermStack {
+    
+    private String[] terms = new String[16];
     
-    private final String term;
+    private SKOSType[] types = new SKOSType[16];
     
-    private final SKOSType termType;
+    private int size;
     
-    protected ExpandedTerm(String term, SKOSType termType) {
-      this.term = term;
-      this.termType = termType;
+    public void push(String term, SKOSType type) {
+      if (size == terms.length) {
+        terms = Arrays.copyOf(terms, 2 * size);
+        types = Arrays.copyOf(types, 2 * size);
+      }
+      terms[size] = term;
+      types[size] = type;
+      size++;
+    }
+    
+    /** Returns the term on top of the stack */
+    public String peekTerm() {
+      return terms[size - 1];
+    }
+    
+    /** Returns the type of the term on top of the stack */
+    public SKOSType peekType() {
+      return types[size - 1];
+    }
+    
+    /** Removes the term on top of the stack */
+    public void pop() {
+      size--;
+      /* does not keep the labels of a replaced engine reachable */
+      terms[size] = null;
+    }
+    
+    public void clear() {
+      while (size > 0) {
+        pop();
+      }
     }
     
-    protected String getTerm() {
-      return this.term;
+    public int size() {
+      return size;
     }
     
-    protected SKOSType getTermType() {
-      return this.termType;
+    public boolean isEmpty() {
+      return size == 0;
     }
   }
 }
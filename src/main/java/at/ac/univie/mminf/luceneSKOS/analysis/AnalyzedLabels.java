@@ -0,0 +1,101 @@
+package at.ac.univie.mminf.luceneSKOS.analysis;
+
+/**
+ * Copyright 2010 Bernhard Haslhofer 
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.util.CharsRef;
+
+import at.ac.univie.mminf.luceneSKOS.skos.LabelTrie;
+
+/**
+ * The labels of a vocabulary as emitted by the SKOS filters: each label run
+ * through the filters' analyzer once, so that expanded labels are emitted
+ * without creating a TokenStream, see
+ * {@link AbstractSKOSFilter#processTermOnStack()}.
+ *
+ * The labels of a vocabulary revision are analyzed when the revision is built
+ * (see {@link at.ac.univie.mminf.luceneSKOS.skos.SKOSRevision}), and shared by
+ * all filters using it. Instances are immutable and may be shared between
+ * threads.
+ */
+public final class AnalyzedLabels {
+  
+  /** Marks the labels the analyzer eliminates, which are not emitted */
+  static final char[] ELIMINATED = new char[0];
+  
+  /* the analyzed form of each label */
+  private final Map<String,char[]> forms;
+  
+  private AnalyzedLabels(Map<String,char[]> forms) {
+    this.forms = forms;
+  }
+  
+  /**
+   * Analyzes all labels of a trie, see
+   * {@link AbstractSKOSFilter#analyze(Analyzer, String, CharsRef)}
+   */
+  public static AnalyzedLabels analyze(Analyzer analyzer, LabelTrie labels)
+      throws IOException {
+    Map<String,char[]> forms = new HashMap<String,char[]>();
+    CharsRef analyzed = new CharsRef();
+    for (String label : labels.getLabels()) {
+      try {
+        AbstractSKOSFilter.analyze(analyzer, label, analyzed);
+        forms.put(label, Arrays.copyOfRange(analyzed.chars, analyzed.offset,
+            analyzed.offset + analyzed.length));
+      } catch (IllegalArgumentException e) {
+        forms.put(label, ELIMINATED);
+      }
+    }
+    return new AnalyzedLabels(forms);
+  }
+  
+  /**
+   * Merges the analyzed labels of several vocabularies
+   * 
+   * @return the merged labels, or null if the labels of any vocabulary are
+   *         missing
+   */
+  public static AnalyzedLabels merge(AnalyzedLabels... labels) {
+    Map<String,char[]> forms = new HashMap<String,char[]>();
+    for (AnalyzedLabels source : labels) {
+      if (source == null) {
+        return null;
+      }
+      forms.putAll(source.forms);
+    }
+    return new AnalyzedLabels(forms);
+  }
+  
+  /** Returns the number of analyzed labels */
+  public int size() {
+    return forms.size();
+  }
+  
+  /**
+   * Returns the analyzed form of a label, {@link #ELIMINATED} if the analyzer
+   * eliminates it, or null if the label was not analyzed
+   */
+  char[] get(String label) {
+    return forms.get(label);
+  }
+}
@@ -19,6 +19,7 @@ package at.ac.univie.mminf.luceneSKOS.analysis;
 import java.io.IOException;
 import java.io.Reader;
 
+import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.TokenStream;
 import org.apache.lucene.analysis.core.KeywordTokenizer;
 import org.apache.lucene.analysis.core.LowerCaseFilter;
@@ -31,10 +32,14 @@ import org.apache.lucene.analysis.standard.StandardTokenizer;
 import org.apache.lucene.analysis.util.CharArraySet;
 import org.apache.lucene.analysis.util.StopwordAnalyzerBase;
 import org.apache.lucene.util.Version;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import at.ac.univie.mminf.luceneSKOS.analysis.tokenattributes.SKOSTypeAttribute.SKOSType;
 import at.ac.univie.mminf.luceneSKOS.skos.SKOSEngine;
 import at.ac.univie.mminf.luceneSKOS.skos.SKOSEngineFactory;
+import at.ac.univie.mminf.luceneSKOS.skos.SKOSLanguages;
+import at.ac.univie.mminf.luceneSKOS.skos.VersionedSKOSEngine;
 
 /**
  * An analyzer for expanding fields that contain either (i) URI references to
@@ -42,6 +47,9 @@ import at.ac.univie.mminf.luceneSKOS.skos.SKOSEngineFactory;
  */
 public class SKOSAnalyzer extends StopwordAnalyzerBase {
   
+  private static final Logger log = LoggerFactory
+      .getLogger(SKOSAnalyzer.class);
+  
   /** The supported expansion types */
   public enum ExpansionType {
     URI, LABEL
@@ -63,6 +71,15 @@ public class SKOSAnalyzer extends StopwordAnalyzerBase {
   /** A SKOS Engine instance */
   private SKOSEngine skosEngine;
   
+  /** The languages of the labels to look up and expand to */
+  private long languages = SKOSLanguages.ALL;
+  
+  /** The analyzer of the labels emitted by the filters */
+  private Analyzer labelAnalyzer;
+  
+  /** The labels of the engine analyzed for the filters, unless versioned */
+  private AnalyzedLabels analyzedLabels;
+  
   /** The size of the buffer used for multi-term prediction */
   private int bufferSize = SKOSLabelFilter.DEFAULT_BUFFER_SIZE;
   
@@ -82,6 +99,7 @@ public class SKOSAnalyzer extends StopwordAnalyzerBase {
     super(matchVersion, stopWords);
     this.skosEngine = skosEngine;
     this.expansionType = expansionType;
+    analyzeLabels();
   }
   
   public SKOSAnalyzer(Version matchVersion, SKOSEngine skosEngine,
@@ -99,10 +117,12 @@ public class SKOSAnalyzer extends StopwordAnalyzerBase {
       String skosFile, ExpansionType expansionType, int bufferSize,
       String... languages) throws IOException {
     super(matchVersion, stopWords);
-    this.skosEngine = SKOSEngineFactory.getSKOSEngine(matchVersion, skosFile,
-        languages);
+    /* one engine serves all languages, the filters select them */
+    this.skosEngine = SKOSEngineFactory.getSKOSEngine(matchVersion, skosFile);
+    this.languages = SKOSLanguages.getMask(languages);
     this.expansionType = expansionType;
     this.bufferSize = bufferSize;
+    analyzeLabels();
   }
   
   public SKOSAnalyzer(Version matchVersion, String skosFile,
@@ -138,6 +158,19 @@ public class SKOSAnalyzer extends StopwordAnalyzerBase {
     this.types = types;
   }
   
+  public long getLanguages() {
+    return languages;
+  }
+  
+  /**
+   * Restricts the labels that are looked up and emitted to the given
+   * languages, all languages if there are none. This setting takes effect the
+   * next time tokenStream is called.
+   */
+  public void setLanguages(String... languages) {
+    this.languages = SKOSLanguages.getMask(languages);
+  }
+  
   /**
    * Set maximum allowed token length. If a token is seen that exceeds this
    * length then it is discarded. This setting only takes effect the next time
@@ -154,30 +187,62 @@ public class SKOSAnalyzer extends StopwordAnalyzerBase {
     return maxTokenLength;
   }
   
+  /**
+   * Analyzes the labels of the engine once for the filters of this analyzer.
+   * The filters of a versioned engine emit the labels analyzed with each of
+   * its revisions instead.
+   */
+  private void analyzeLabels() {
+    labelAnalyzer = new StandardAnalyzer(matchVersion);
+    if (skosEngine instanceof VersionedSKOSEngine) {
+      return;
+    }
+    try {
+      analyzedLabels = AnalyzedLabels.analyze(labelAnalyzer, skosEngine
+          .getLabelTrie());
+    } catch (IOException e) {
+      log.error("Error when accessing SKOS Engine.", e);
+    }
+  }
+  
   @Override
   protected TokenStreamComponents createComponents(String fileName,
       Reader reader) {
+    boolean versioned = skosEngine instanceof VersionedSKOSEngine;
     if (expansionType.equals(ExpansionType.URI)) {
       final KeywordTokenizer src = new KeywordTokenizer(reader);
-      TokenStream tok = new SKOSURIFilter(src, skosEngine,
-          new StandardAnalyzer(matchVersion), types);
-      tok = new LowerCaseFilter(matchVersion, tok);
-      return new TokenStreamComponents(src, tok);
+      final SKOSURIFilter filter = new SKOSURIFilter(src, skosEngine,
+          labelAnalyzer, types);
+      filter.setLanguages(languages);
+      filter.setAnalyzedLabels(analyzedLabels);
+      filter.setRevisionLabels(versioned);
+      TokenStream tok = new LowerCaseFilter(matchVersion, filter);
+      return new TokenStreamComponents(src, tok) {
+        @Override
+        protected void setReader(final Reader reader) throws IOException {
+          filter.setLanguages(languages);
+          super.setReader(reader);
+        }
+      };
     } else {
       final StandardTokenizer src = new StandardTokenizer(matchVersion, reader);
       src.setMaxTokenLength(maxTokenLength);
       TokenStream tok = new StandardFilter(matchVersion, src);
       // prior to this we get the classic behavior, standardfilter does it for
       // us.
-      tok = new SKOSLabelFilter(tok, skosEngine, new StandardAnalyzer(
-          matchVersion), bufferSize, types);
-      tok = new LowerCaseFilter(matchVersion, tok);
+      final SKOSLabelFilter filter = new SKOSLabelFilter(tok, skosEngine,
+          labelAnalyzer, bufferSize, types);
+      filter.setLanguages(languages);
+      filter.setAnalyzedLabels(analyzedLabels);
+      filter.setRevisionLabels(versioned);
+      tok = new LowerCaseFilter(matchVersion, filter);
       tok = new StopFilter(matchVersion, tok, stopwords);
       tok = new RemoveDuplicatesTokenFilter(tok);
       return new TokenStreamComponents(src, tok) {
         @Override
         protected void setReader(final Reader reader) throws IOException {
           src.setMaxTokenLength(maxTokenLength);
+          filter.setLanguages(languages);
           super.setReader(reader);
         }
       };
@@ -17,14 +17,20 @@ package at.ac.univie.mminf.luceneSKOS.analysis;
  */
 
 import java.io.IOException;
-import java.util.LinkedList;
-import java.util.Queue;
 
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.util.AttributeSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import at.ac.univie.mminf.luceneSKOS.analysis.tokenattributes.SKOSTypeAttribute.SKOSType;
+import at.ac.univie.mminf.luceneSKOS.skos.LabelExpansions;
+import at.ac.univie.mminf.luceneSKOS.skos.LabelTrie;
 import at.ac.univie.mminf.luceneSKOS.skos.SKOSEngine;
+import at.ac.univie.mminf.luceneSKOS.skos.SKOSExpansion;
+import at.ac.univie.mminf.luceneSKOS.skos.SKOSVocabularyProfile;
 
 /**
  * A Lucene TokenFilter that supports label-based term expansion as described in
@@ -37,13 +43,52 @@ import at.ac.univie.mminf.luceneSKOS.skos.SKOSEngine;
  */
 public final class SKOSLabelFilter extends AbstractSKOSFilter {
   
+  private static final Logger log = LoggerFactory
+      .getLogger(SKOSLabelFilter.class);
+  
   public static final int DEFAULT_BUFFER_SIZE = 1;
   
-  /* the size of the buffer used for multi-term prediction */
+  /**
+   * The buffer size that stands for the number of tokens of the longest label
+   * of the vocabulary, as measured by the engine's profile
+   */
+  public static final int AUTO_BUFFER_SIZE = 0;
+  
+  /* the maximum number of tokens of a label to consider */
   private int bufferSize = DEFAULT_BUFFER_SIZE;
   
-  /* a list serving as token buffer between consumed and consuming stream */
-  private Queue<State> buffer = new LinkedList<State>();
+  /* the buffer size in effect, -1 until resolved, see getWindow() */
+  private int window = -1;
+  
+  /*
+   * a ring of attribute copies serving as token buffer between consumed and
+   * consuming stream, reused for every token
+   */
+  private AttributeSource[] buffer = new AttributeSource[0];
+  
+  /* the ring index of the first buffered token */
+  private int bufferStart;
+  
+  /* the number of buffered tokens */
+  private int buffered;
+  
+  /* the attributes of the token a label match started from */
+  private AttributeSource entered;
+  
+  /* joins the buffered tokens to a label */
+  private final StringBuilder label = new StringBuilder();
+  
+  /* the labels of the engine, fetched for each token stream */
+  private LabelTrie labels;
+  
+  /* the expansions of the labels to the types and languages of this filter */
+  private LabelExpansions expansions;
+  
+  /*
+   * the label id of the first i+1 buffered tokens, -1 if they do not form a
+   * label, see matchLabels()
+   */
+  private int[] labelIds = new int[0];
   
   /**
    * Constructor for multi-term expansion support. Takes an input token stream,
@@ -55,8 +100,9 @@ public final class SKOSLabelFilter extends AbstractSKOSFilter {
    * @param skosEngine
    *          the skos expansion engine
    * @param bufferSize
-   *          the length of the longest pref-label to consider (needed for
-   *          mult-term expansion)
+   *          the number of tokens of the longest label to consider (needed for
+   *          mult-term expansion), or {@link #AUTO_BUFFER_SIZE} for the
+   *          longest label of the vocabulary
    * @param types
    *          the skos types to expand to
    */
@@ -66,6 +112,29 @@ public final class SKOSLabelFilter extends AbstractSKOSFilter {
     this.bufferSize = bufferSize;
   }
   
+  /**
+   * Drops the expansions fetched for the previous languages
+   */
+  @Override
+  public void setLanguages(long languages) {
+    super.setLanguages(languages);
+    expansions = null;
+  }
+  
+  /**
+   * Fetches the labels, their expansions and the profile again, as the engine
+   * may have been reloaded
+   */
+  @Override
+  public void reset() throws IOException {
+    super.reset();
+    labels = null;
+    expansions = null;
+    window = -1;
+    bufferStart = 0;
+    buffered = 0;
+  }
+  
   /**
    * Advances the stream to the next token
    */
@@ -77,36 +146,97 @@ public final class SKOSLabelFilter extends AbstractSKOSFilter {
       return true;
     }
     
-    while (buffer.size() < bufferSize && input.incrementToken()) {
-      buffer.add(input.captureState());
-      
-    }
-    
-    if (buffer.isEmpty()) {
-      return false;
+    if (buffered == 0) {
+      if (!input.incrementToken()) {
+        return false;
+      }
+      bufferToken();
     }
     
-    restoreState(buffer.peek());
+    getBuffered(0).copyTo(this);
     
     /* check whether there are expanded terms for a given token */
     if (addAliasesToStack()) {
       /* if yes, capture the state of all attributes */
-      current = captureState();
+      captureCurrent();
     }
     
-    buffer.remove();
+    bufferStart = (bufferStart + 1) % buffer.length;
+    buffered--;
     
     return true;
   }
   
+  /**
+   * Appends the attributes of the current token to the buffer, growing the
+   * ring while the window is being filled for the first time
+   */
+  private void bufferToken() {
+    if (buffered == buffer.length) {
+      AttributeSource[] grown = new AttributeSource[Math.max(1,
+          2 * buffer.length)];
+      for (int i = 0; i < buffered; i++) {
+        grown[i] = getBuffered(i);
+      }
+      buffer = grown;
+      bufferStart = 0;
+    }
+    int slot = (bufferStart + buffered) % buffer.length;
+    if (buffer[slot] == null) {
+      buffer[slot] = cloneAttributes();
+    } else {
+      copyTo(buffer[slot]);
+    }
+    buffered++;
+  }
+  
+  /** Returns the attributes of the i-th buffered token */
+  private AttributeSource getBuffered(int i) {
+    return buffer[(bufferStart + i) % buffer.length];
+  }
+  
+  /** Saves the attributes of the current token, see restoreEntered() */
+  private void saveEntered() {
+    if (entered == null) {
+      entered = cloneAttributes();
+    } else {
+      copyTo(entered);
+    }
+  }
+  
+  private void restoreEntered() {
+    entered.copyTo(this);
+  }
+  
+  /**
+   * Pushes the expansion of the longest label starting at the current token.
+   * For the vocabularies of a merged engine the longest match is taken per
+   * vocabulary: a shorter label still expands to the labels of the
+   * vocabularies that did not match a longer one.
+   */
   private boolean addAliasesToStack() throws IOException {
-    for (int i = buffer.size(); i > 0; i--) {
-      String inputTokens = bufferToString(i);
-      
-      if (addTermsToStack(inputTokens)) {
-        break;
+    LabelTrie labels = getLabelTrie();
+    
+    /* without the trie, every token sequence is looked up */
+    int length = labels == null ? fillBuffer() : matchLabels(labels);
+    
+    /* the sources that matched a longer label */
+    long matched = 0;
+    for (int i = length; i > 0; i--) {
+      if (labels == null) {
+        if (addTermsToStack(bufferToString(i))) {
+          break;
+        }
+      } else if (labelIds[i - 1] != -1) {
+        SKOSExpansion expansion = getExpansion(labelIds[i - 1]);
+        if (expansion != null) {
+          matched |= pushExpansionToStack(expansion, matched);
+          if (matched != 0 && !expansion.isMerged()) {
+            break;
+          }
+        }
       }
-      
+    
     }
     
     if (termStack.isEmpty()) {
@@ -117,25 +247,136 @@ public final class SKOSLabelFilter extends AbstractSKOSFilter {
   }
   
   /**
-   * Converts the first x=noTokens states in the queue to a concatenated token
-   * string separated by white spaces
+   * Walks the label trie along the tokens starting at the head of the buffer,
+   * reading further tokens into the buffer only while they continue a label,
+   * and records the ids of the token sequences that are labels.
+   * 
+   * The trie is an exact set of the labels and of the tokens that start one:
+   * a token that starts no label ends the walk at the first step, and token
+   * sequences that are not labels are never looked up, whatever the buffer
+   * size. Only labels reach the engine, each once per expansion table.
+   * 
+   * @return the number of tokens of the longest label, 0 if there is none
    */
-  private String bufferToString(int noTokens) {
-    State entered = captureState();
+  private int matchLabels(LabelTrie labels) throws IOException {
+    saveEntered();
     
-    State[] bufferedStates = buffer.toArray(new State[buffer.size()]);
+    int window = getWindow();
+    if (labelIds.length < window) {
+      labelIds = new int[window];
+    }
     
-    StringBuilder builder = new StringBuilder();
-    builder.append(termAtt.toString());
-    restoreState(bufferedStates[0]);
-    for (int i = 1; i < noTokens; i++) {
-      restoreState(bufferedStates[i]);
-      builder.append(" " + termAtt.toString());
+    int longest = 0;
+    int node = LabelTrie.ROOT;
+    for (int i = 0; i < window; i++) {
+      if (i == buffered) {
+        if (!input.incrementToken()) {
+          break;
+        }
+        bufferToken();
+      } else if (i > 0) {
+        getBuffered(i).copyTo(this);
+      }
+      
+      node = labels.step(node, termAtt.buffer(), 0, termAtt.length());
+      if (node == LabelTrie.NO_NODE) {
+        break;
+      }
+      labelIds[i] = labels.getLabelId(node);
+      if (labelIds[i] != -1) {
+        longest = i + 1;
+      }
+    }
+    
+    restoreEntered();
+    
+    return longest;
+  }
+  
+  /**
+   * Reads tokens into the buffer up to its size
+   * 
+   * @return the number of buffered tokens
+   */
+  private int fillBuffer() throws IOException {
+    saveEntered();
+    
+    int window = getWindow();
+    while (buffered < window && input.incrementToken()) {
+      bufferToken();
     }
     
-    restoreState(entered);
+    restoreEntered();
     
-    return builder.toString();
+    return buffered;
+  }
+  
+  /**
+   * Returns the number of tokens of the longest label to consider: the buffer
+   * size, or the longest label of the engine's vocabulary for
+   * {@link #AUTO_BUFFER_SIZE}
+   */
+  private int getWindow() {
+    if (window == -1) {
+      window = bufferSize;
+      if (bufferSize == AUTO_BUFFER_SIZE) {
+        window = DEFAULT_BUFFER_SIZE;
+        try {
+          SKOSVocabularyProfile profile = engine.getProfile();
+          if (profile != null) {
+            window = Math.max(1, profile.getMaxLabelTokens());
+          }
+        } catch (Exception e) {
+          log.error("Error when accessing SKOS Engine.", e);
+        }
+      }
+    }
+    return window;
+  }
+  
+  /**
+   * Returns the label trie of the engine, or null if it is not available
+   */
+  private LabelTrie getLabelTrie() {
+    if (labels == null) {
+      try {
+        labels = engine.getLabelTrie();
+      } catch (Exception e) {
+        log.error("Error when accessing SKOS Engine.", e);
+      }
+    }
+    return labels;
+  }
+  
+  /**
+   * Converts the first x=noTokens tokens in the buffer to a concatenated token
+   * string separated by white spaces, reading the terms from the buffered
+   * attributes
+   */
+  private String bufferToString(int noTokens) {
+    label.setLength(0);
+    label.append(termAtt.buffer(), 0, termAtt.length());
+    for (int i = 1; i < noTokens; i++) {
+      CharTermAttribute term = getBuffered(i).getAttribute(
+          CharTermAttribute.class);
+      label.append(' ').append(term.buffer(), 0, term.length());
+    }
+    return label.toString();
+  }
+  
+  /**
+   * Returns the expansion of a label of the trie, by its id
+   */
+  private SKOSExpansion getExpansion(int labelId) {
+    try {
+      if (expansions == null) {
+        expansions = engine.getLabelExpansions(types, languages);
+      }
+      return expansions.get(labelId);
+    } catch (Exception e) {
+      log.error("Error when accessing SKOS Engine.", e);
+    }
+    return null;
   }
   
   /**
@@ -144,82 +385,9 @@ public final class SKOSLabelFilter extends AbstractSKOSFilter {
    */
   public boolean addTermsToStack(String term) throws IOException {
     try {
-      String[] conceptURIs = engine.getConcepts(term);
-      
-      for (String conceptURI : conceptURIs) {
-        if (types.contains(SKOSType.PREF)) {
-          String[] prefLabels = engine.getPrefLabels(conceptURI);
-          pushLabelsToStack(prefLabels, SKOSType.PREF);
-        }
-        if (types.contains(SKOSType.ALT)) {
-          String[] altLabels = engine.getAltLabels(conceptURI);
-          pushLabelsToStack(altLabels, SKOSType.ALT);
-        }
-        if (types.contains(SKOSType.HIDDEN)) {
-          String[] hiddenLabels = engine.getHiddenLabels(conceptURI);
-          pushLabelsToStack(hiddenLabels, SKOSType.HIDDEN);
-        }
-        if (types.contains(SKOSType.BROADER)) {
-          String[] broaderLabels = engine.getBroaderLabels(conceptURI);
-          pushLabelsToStack(broaderLabels, SKOSType.BROADER);
-        }
-        if (types.contains(SKOSType.BROADERTRANSITIVE)) {
-          String[] broaderTransitiveLabels = engine
-              .getBroaderTransitiveLabels(conceptURI);
-          pushLabelsToStack(broaderTransitiveLabels, SKOSType.BROADERTRANSITIVE);
-        }
-        if (types.contains(SKOSType.NARROWER)) {
-          String[] narrowerLabels = engine.getNarrowerLabels(conceptURI);
-          pushLabelsToStack(narrowerLabels, SKOSType.NARROWER);
-        }
-        if (types.contains(SKOSType.NARROWERTRANSITIVE)) {
-          String[] narrowerTransitiveLabels = engine
-              .getNarrowerTransitiveLabels(conceptURI);
-          pushLabelsToStack(narrowerTransitiveLabels,
-              SKOSType.NARROWERTRANSITIVE);
-        }
-        // Added for EHRI extension
-        if (types.contains(SKOSType.PREFMALE)) {
-            String[] prefMaleLabels = engine
-                .getPrefMaleLabels(conceptURI);
-            pushLabelsToStack(prefMaleLabels,
-                SKOSType.PREFMALE);
-          }
-        if (types.contains(SKOSType.PREFFEMALE)) {
-            String[] prefFemaleLabels = engine
-                .getPrefFemaleLabels(conceptURI);
-            pushLabelsToStack(prefFemaleLabels,
-                SKOSType.PREFFEMALE);
-          }
-        if (types.contains(SKOSType.PREFNEUTER)) {
-            String[] prefNeuterLabels = engine
-                .getPrefNeuterLabels(conceptURI);
-            pushLabelsToStack(prefNeuterLabels,
-                SKOSType.PREFNEUTER);
-          }
-        if (types.contains(SKOSType.ALTMALE)) {
-            String[] altMaleLabels = engine
-                .getAltMaleLabels(conceptURI);
-            pushLabelsToStack(altMaleLabels,
-                SKOSType.ALTMALE);
-          }
-        if (types.contains(SKOSType.ALTFEMALE)) {
-            String[] altFemaleLabels = engine
-                .getAltFemaleLabels(conceptURI);
-            pushLabelsToStack(altFemaleLabels,
-                SKOSType.ALTFEMALE);
-          }
-        if (types.contains(SKOSType.ALTNEUTER)) {
-            String[] altNeuterLabels = engine
-                .getAltNeuterLabels(conceptURI);
-            pushLabelsToStack(altNeuterLabels,
-                SKOSType.ALTNEUTER);
-          }
-        
-      }
+      pushExpansionToStack(engine.getExpansion(term, languages));
     } catch (Exception e) {
-      System.err
-          .println("Error when accessing SKOS Engine.\n" + e.getMessage());
+      log.error("Error when accessing SKOS Engine.", e);
     }
     
     if (termStack.isEmpty()) {
@@ -20,6 +20,8 @@ import java.io.IOException;
 
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.TokenStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import at.ac.univie.mminf.luceneSKOS.analysis.tokenattributes.SKOSTypeAttribute.SKOSType;
 import at.ac.univie.mminf.luceneSKOS.skos.SKOSEngine;
@@ -35,6 +37,9 @@ import at.ac.univie.mminf.luceneSKOS.skos.SKOSEngine;
  */
 public final class SKOSURIFilter extends AbstractSKOSFilter {
   
+  private static final Logger log = LoggerFactory
+      .getLogger(SKOSURIFilter.class);
+  
   /**
    * Constructor.
    * 
@@ -68,7 +73,7 @@ public final class SKOSURIFilter extends AbstractSKOSFilter {
     if (addTermsToStack(termAtt.toString())) {
       
       /* if yes, capture the state of all attributes */
-      current = captureState();
+      captureCurrent();
     }
     
     return true;
@@ -79,65 +84,9 @@ public final class SKOSURIFilter extends AbstractSKOSFilter {
    */
   public boolean addTermsToStack(String term) throws IOException {
     try {
-      if (types.contains(SKOSType.PREF)) {
-        String[] prefLabels = engine.getPrefLabels(term);
-        pushLabelsToStack(prefLabels, SKOSType.PREF);
-      }
-      if (types.contains(SKOSType.ALT)) {
-        String[] altLabels = engine.getAltLabels(term);
-        pushLabelsToStack(altLabels, SKOSType.ALT);
-      }
-      if (types.contains(SKOSType.BROADER)) {
-        String[] broaderLabels = engine.getBroaderLabels(term);
-        pushLabelsToStack(broaderLabels, SKOSType.BROADER);
-      }
-      if (types.contains(SKOSType.BROADERTRANSITIVE)) {
-        String[] broaderTransitiveLabels = engine
-            .getBroaderTransitiveLabels(term);
-        pushLabelsToStack(broaderTransitiveLabels, SKOSType.BROADERTRANSITIVE);
-      }
-      if (types.contains(SKOSType.NARROWER)) {
-        String[] narrowerLabels = engine.getNarrowerLabels(term);
-        pushLabelsToStack(narrowerLabels, SKOSType.NARROWER);
-      }
-      if (types.contains(SKOSType.NARROWERTRANSITIVE)) {
-        String[] narrowerTransitiveLabels = engine
-            .getNarrowerTransitiveLabels(term);
-        pushLabelsToStack(narrowerTransitiveLabels, SKOSType.NARROWERTRANSITIVE);
-      }
-      if (types.contains(SKOSType.PREFMALE)) {
-          String[] narrowerTransitiveLabels = engine
-              .getNarrowerTransitiveLabels(term);
-          pushLabelsToStack(narrowerTransitiveLabels, SKOSType.PREFMALE);
-        }
-      if (types.contains(SKOSType.PREFFEMALE)) {
-          String[] narrowerTransitiveLabels = engine
-              .getNarrowerTransitiveLabels(term);
-          pushLabelsToStack(narrowerTransitiveLabels, SKOSType.PREFFEMALE);
-        }
-      if (types.contains(SKOSType.PREFNEUTER)) {
-          String[] narrowerTransitiveLabels = engine
-              .getNarrowerTransitiveLabels(term);
-          pushLabelsToStack(narrowerTransitiveLabels, SKOSType.PREFNEUTER);
-        }
-      if (types.contains(SKOSType.ALTMALE)) {
-          String[] narrowerTransitiveLabels = engine
-              .getNarrowerTransitiveLabels(term);
-          pushLabelsToStack(narrowerTransitiveLabels, SKOSType.ALTMALE);
-        }
-      if (types.contains(SKOSType.ALTFEMALE)) {
-          String[] narrowerTransitiveLabels = engine
-              .getNarrowerTransitiveLabels(term);
-          pushLabelsToStack(narrowerTransitiveLabels, SKOSType.ALTFEMALE);
-        }
-      if (types.contains(SKOSType.ALTNEUTER)) {
-          String[] narrowerTransitiveLabels = engine
-              .getNarrowerTransitiveLabels(term);
-          pushLabelsToStack(narrowerTransitiveLabels, SKOSType.ALTNEUTER);
-        }
+      engine.expand(term, types, languages, stackSink);
     } catch (Exception e) {
-      System.err
-          .println("Error when accessing SKOS Engine.\n" + e.getMessage());
+      log.error("Error when accessing SKOS Engine.", e);
     }
     
     if (termStack.isEmpty()) {
@@ -0,0 +1,36 @@
+package at.ac.univie.mminf.luceneSKOS.skos;
+
+/**
+ * Copyright 2010 Bernhard Haslhofer 
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import at.ac.univie.mminf.luceneSKOS.analysis.tokenattributes.SKOSTypeAttribute.SKOSType;
+
+/**
+ * Receives the labels of a concept expansion, see
+ * {@link SKOSEngine#expand(String, java.util.EnumSet, ExpansionSink)}
+ */
+public interface ExpansionSink {
+  
+  /**
+   * Called for each label of the expansion
+   * 
+   * @param label
+   *          the expanded label
+   * @param type
+   *          the SKOSType the label was expanded to
+   */
+  void add(String label, SKOSType type);
+}
@@ -0,0 +1,256 @@
+package at.ac.univie.mminf.luceneSKOS.skos;
+
+/**
+ * Copyright 2010 Bernhard Haslhofer 
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.EnumSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import at.ac.univie.mminf.luceneSKOS.analysis.tokenattributes.SKOSTypeAttribute.SKOSType;
+
+/**
+ * A SKOSEngine that is being built in the background. Calls block until the
+ * engine is available; {@link #get()} awaits it explicitly.
+ */
+public final class FutureSKOSEngine implements SKOSEngine {
+  
+  private final Future<SKOSEngine> future;
+  
+  public FutureSKOSEngine(Future<SKOSEngine> future) {
+    this.future = future;
+  }
+  
+  /**
+   * Waits for the engine to be built and returns it
+   * 
+   * @throws IOException
+   *           if the engine could not be built
+   */
+  public SKOSEngine get() throws IOException {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException(
+          "Interrupted while waiting for the SKOS engine");
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      }
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new IOException(cause);
+    }
+  }
+  
+  /** Returns true if the engine has been built or failed to build */
+  public boolean isDone() {
+    return future.isDone();
+  }
+  
+  @Override
+  public String[] getPrefLabels(String conceptURI) throws IOException {
+    return get().getPrefLabels(conceptURI);
+  }
+  
+  @Override
+  public String[] getAltLabels(String conceptURI) throws IOException {
+    return get().getAltLabels(conceptURI);
+  }
+  
+  @Override
+  public String[] getHiddenLabels(String conceptURI) throws IOException {
+    return get().getHiddenLabels(conceptURI);
+  }
+  
+  @Override
+  public String[] getRelatedLabels(String conceptURI) throws IOException {
+    return get().getRelatedLabels(conceptURI);
+  }
+  
+  @Override
+  public String[] getRelatedConcepts(String conceptURI) throws IOException {
+    return get().getRelatedConcepts(conceptURI);
+  }
+  
+  @Override
+  public String[] getBroaderConcepts(String conceptURI) throws IOException {
+    return get().getBroaderConcepts(conceptURI);
+  }
+  
+  @Override
+  public String[] getNarrowerConcepts(String conceptURI) throws IOException {
+    return get().getNarrowerConcepts(conceptURI);
+  }
+  
+  @Override
+  public String[] getBroaderLabels(String conceptURI) throws IOException {
+    return get().getBroaderLabels(conceptURI);
+  }
+  
+  @Override
+  public String[] getNarrowerLabels(String conceptURI) throws IOException {
+    return get().getNarrowerLabels(conceptURI);
+  }
+  
+  @Override
+  public String[] getBroaderTransitiveConcepts(String conceptURI)
+      throws IOException {
+    return get().getBroaderTransitiveConcepts(conceptURI);
+  }
+  
+  @Override
+  public String[] getNarrowerTransitiveConcepts(String conceptURI)
+      throws IOException {
+    return get().getNarrowerTransitiveConcepts(conceptURI);
+  }
+  
+  @Override
+  public String[] getBroaderTransitiveLabels(String conceptURI)
+      throws IOException {
+    return get().getBroaderTransitiveLabels(conceptURI);
+  }
+  
+  @Override
+  public String[] getNarrowerTransitiveLabels(String conceptURI)
+      throws IOException {
+    return get().getNarrowerTransitiveLabels(conceptURI);
+  }
+  
+  @Override
+  public boolean hasConcept(String conceptURI) throws IOException {
+    return get().hasConcept(conceptURI);
+  }
+  
+  @Override
+  public String[] getConcepts(String label) throws IOException {
+    return get().getConcepts(label);
+  }
+  
+  @Override
+  public SKOSBatchResult getConcepts(String[] labels) throws IOException {
+    return get().getConcepts(labels);
+  }
+  
+  @Override
+  public SKOSBatchResult getLabels(String[] conceptURIs,
+      EnumSet<SKOSType> types) throws IOException {
+    return get().getLabels(conceptURIs, types);
+  }
+  
+  @Override
+  public void expand(String conceptURI, EnumSet<SKOSType> types,
+      ExpansionSink sink) throws IOException {
+    get().expand(conceptURI, types, sink);
+  }
+  
+  @Override
+  public void expand(String conceptURI, EnumSet<SKOSType> types,
+      long languages, ExpansionSink sink) throws IOException {
+    get().expand(conceptURI, types, languages, sink);
+  }
+  
+  @Override
+  public LabelTrie getLabelTrie() throws IOException {
+    return get().getLabelTrie();
+  }
+  
+  @Override
+  public LabelExpansions getLabelExpansions(EnumSet<SKOSType> types,
+      long languages) throws IOException {
+    return get().getLabelExpansions(types, languages);
+  }
+  
+  @Override
+  public SKOSVocabularyProfile getProfile() throws IOException {
+    return get().getProfile();
+  }
+  
+  @Override
+  public SKOSExpansion getExpansion(String label) throws IOException {
+    return get().getExpansion(label);
+  }
+  
+  @Override
+  public SKOSExpansion getExpansion(String label, long languages)
+      throws IOException {
+    return get().getExpansion(label, languages);
+  }
+  
+  @Override
+  public String[] getAltTerms(String label) throws IOException {
+    return get().getAltTerms(label);
+  }
+  
+  @Override
+  public String[] getPrefMaleLabels(String conceptURI) throws IOException {
+    return get().getPrefMaleLabels(conceptURI);
+  }
+  
+  @Override
+  public String[] getPrefFemaleLabels(String conceptURI) throws IOException {
+    return get().getPrefFemaleLabels(conceptURI);
+  }
+  
+  @Override
+  public String[] getPrefNeuterLabels(String conceptURI) throws IOException {
+    return get().getPrefNeuterLabels(conceptURI);
+  }
+  
+  @Override
+  public String[] getAltMaleLabels(String conceptURI) throws IOException {
+    return get().getAltMaleLabels(conceptURI);
+  }
+  
+  @Override
+  public String[] getAltFemaleLabels(String conceptURI) throws IOException {
+    return get().getAltFemaleLabels(conceptURI);
+  }
+  
+  @Override
+  public String[] getAltNeuterLabels(String conceptURI) throws IOException {
+    return get().getAltNeuterLabels(conceptURI);
+  }
+  
+  /**
+   * Cancels the build if it has not started yet, otherwise waits for it and
+   * closes the engine
+   */
+  @Override
+  public void close() throws IOException {
+    if (future.cancel(false)) {
+      return;
+    }
+    SKOSEngine engine;
+    try {
+      engine = get();
+    } catch (IOException e) {
+      /* a failed build holds no resources */
+      return;
+    } catch (RuntimeException e) {
+      return;
+    }
+    engine.close();
+  }
+}
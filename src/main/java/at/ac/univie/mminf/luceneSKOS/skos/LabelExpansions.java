@@ -0,0 +1,208 @@
+package at.ac.univie.mminf.luceneSKOS.skos;
+
+/**
+ * Copyright 2010 Bernhard Haslhofer 
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import at.ac.univie.mminf.luceneSKOS.analysis.tokenattributes.SKOSTypeAttribute.SKOSType;
+
+/**
+ * The expansions of the labels of a vocabulary, restricted to a set of
+ * SKOSTypes and languages, by the id of the label in the engine's
+ * {@link LabelTrie}. A filter resolves the table once per token stream and
+ * looks up the labels it matched in the trie by id, without building a
+ * String for the label.
+ *
+ * Each expansion is computed on its first lookup and kept with the table.
+ * Instances may be shared between threads.
+ */
+public final class LabelExpansions {
+  
+  /**
+   * Computes the expansions of the labels of an engine
+   */
+  public interface Expander {
+    
+    /**
+     * Returns the expansion of a (lower-cased) label to the given types,
+     * restricted to the given languages, or null if no concept carries the
+     * label in these languages
+     */
+    SKOSExpansion expand(String label, EnumSet<SKOSType> types, long languages)
+        throws IOException;
+  }
+  
+  private static final EnumSet<SKOSType> ALL_TYPES = EnumSet
+      .allOf(SKOSType.class);
+  
+  /* marks the labels without expansion */
+  private static final SKOSExpansion NONE = new SKOSExpansion(new String[0],
+      new int[SKOSType.values().length + 1]);
+  
+  private final Cache cache;
+  
+  private final EnumSet<SKOSType> types;
+  
+  private final long languages;
+  
+  private final AtomicReferenceArray<SKOSExpansion> expansions;
+  
+  private LabelExpansions(Cache cache, EnumSet<SKOSType> types,
+      long languages) {
+    this.cache = cache;
+    this.types = types;
+    this.languages = languages;
+    this.expansions = new AtomicReferenceArray<SKOSExpansion>(cache.trie
+        .getNumLabels());
+  }
+  
+  /**
+   * Returns the expansion of a label
+   * 
+   * @param labelId
+   *          the id of the label in the trie, see
+   *          {@link LabelTrie#getLabelId(int)}
+   * @return the expansion, or null if no concept carries the label in the
+   *         languages of this table
+   */
+  public SKOSExpansion get(int labelId) throws IOException {
+    SKOSExpansion expansion = expansions.get(labelId);
+    if (expansion == null) {
+      expansion = cache.expander.expand(cache.getLabel(labelId), types,
+          languages);
+      if (expansion == null) {
+        expansion = NONE;
+      }
+      expansions.set(labelId, expansion);
+    }
+    return expansion == NONE ? null : expansion;
+  }
+  
+  /**
+   * Holds the tables of the labels of a trie per set of types and languages,
+   * e.g. for the lifetime of an engine. Each table takes a slot per label of
+   * the trie, so only the most recently used tables are kept; token streams
+   * holding an evicted table keep using it.
+   */
+  public static final class Cache {
+    
+    /** The maximum number of tables kept per cache */
+    private static final int MAX_TABLES = Integer.getInteger(
+        "skos.labelExpansionTables", 16);
+    
+    private final LabelTrie trie;
+    
+    private final Expander expander;
+    
+    /* the labels of the trie by id, listed on first use */
+    private volatile List<String> labels;
+    
+    /* by type mask and language mask, in the order of their last use */
+    private final Map<Key,LabelExpansions> tables = new LinkedHashMap<Key,LabelExpansions>(
+        16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(
+          Map.Entry<Key,LabelExpansions> eldest) {
+        return size() > MAX_TABLES;
+      }
+    };
+    
+    public Cache(LabelTrie trie, Expander expander) {
+      this.trie = trie;
+      this.expander = expander;
+    }
+    
+    /**
+     * Returns the table of the expansions to the given types, restricted to
+     * the given languages
+     */
+    public LabelExpansions get(EnumSet<SKOSType> types, long languages) {
+      Key key = new Key(types, languages);
+      synchronized (tables) {
+        LabelExpansions table = tables.get(key);
+        if (table == null) {
+          table = new LabelExpansions(this, EnumSet.copyOf(types), languages);
+          tables.put(key, table);
+        }
+        return table;
+      }
+    }
+    
+    /**
+     * Returns the expansion of a (lower-cased) label to all types, restricted
+     * to the given languages
+     */
+    public SKOSExpansion getExpansion(String label, long languages)
+        throws IOException {
+      int labelId = trie.getLabelId(label);
+      if (labelId == -1) {
+        return null;
+      }
+      return get(ALL_TYPES, languages).get(labelId);
+    }
+    
+    private String getLabel(int labelId) {
+      List<String> labels = this.labels;
+      if (labels == null) {
+        synchronized (this) {
+          labels = this.labels;
+          if (labels == null) {
+            labels = trie.getLabels();
+            this.labels = labels;
+          }
+        }
+      }
+      return labels.get(labelId);
+    }
+  }
+  
+  /* a set of types and a language mask */
+  private static final class Key {
+    
+    private final int types;
+    
+    private final long languages;
+    
+    private Key(EnumSet<SKOSType> types, long languages) {
+      int mask = 0;
+      for (SKOSType type : types) {
+        mask |= 1 << type.ordinal();
+      }
+      this.types = mask;
+      this.languages = languages;
+    }
+    
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) obj;
+      return types == other.types && languages == other.languages;
+    }
+    
+    @Override
+    public int hashCode() {
+      return 31 * types + (int) (languages ^ (languages >>> 32));
+    }
+  }
+}
@@ -0,0 +1,360 @@
+package at.ac.univie.mminf.luceneSKOS.skos;
+
+/**
+ * Copyright 2010 Bernhard Haslhofer 
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A trie over the token sequences of the (lower-cased) labels of a vocabulary,
+ * so that label filters can find the labels starting at a token by walking
+ * the following tokens one by one, instead of looking up every candidate
+ * token sequence.
+ * 
+ * Labels are split into tokens at spaces, the way the filters join the tokens
+ * they look up. Tokens are compared after lower-casing each char. Nodes are
+ * ints, starting from {@link #ROOT}; tokens and transitions are kept in open
+ * addressing hash tables, so walking the trie does not allocate. The labels
+ * are numbered densely from 0 in the order of {@link #getLabels()}, so that
+ * data per label can be kept in arrays (see {@link LabelExpansions}).
+ * Instances are immutable and may be shared between threads.
+ */
+public final class LabelTrie {
+  
+  /** The node of the empty token sequence */
+  public static final int ROOT = 0;
+  
+  /** Returned by {@link #step} if no label continues with the token */
+  public static final int NO_NODE = -1;
+  
+  /* the distinct tokens, by the slot of their hash */
+  private final char[][] tokens;
+  
+  /* the ids of the tokens by slot */
+  private final int[] tokenIds;
+  
+  /* the transitions (node << 32 | token id) by the slot of their hash */
+  private final long[] transitions;
+  
+  /* the target node of the transition in each slot */
+  private final int[] targets;
+  
+  /* one bit per node, set if the node ends a label */
+  private final long[] labelNodes;
+  
+  /* per word of labelNodes the number of labels ending at the nodes before */
+  private final int[] labelRanks;
+  
+  private LabelTrie(char[][] tokens, int[] tokenIds, long[] transitions,
+      int[] targets, long[] labelNodes) {
+    this.tokens = tokens;
+    this.tokenIds = tokenIds;
+    this.transitions = transitions;
+    this.targets = targets;
+    this.labelNodes = labelNodes;
+    this.labelRanks = new int[labelNodes.length + 1];
+    for (int i = 0; i < labelNodes.length; i++) {
+      labelRanks[i + 1] = labelRanks[i] + Long.bitCount(labelNodes[i]);
+    }
+  }
+  
+  /**
+   * Returns the node reached from the given node by a token, or
+   * {@link #NO_NODE} if no label continues with the token
+   */
+  public int step(int node, char[] buffer, int offset, int length) {
+    int token = getTokenId(tokens, tokenIds, buffer, offset, length);
+    if (token == -1) {
+      return NO_NODE;
+    }
+    long key = (long) node << 32 | token;
+    int mask = transitions.length - 1;
+    for (int slot = mix(key) & mask;; slot = (slot + 1) & mask) {
+      if (targets[slot] == 0) {
+        return NO_NODE;
+      }
+      if (transitions[slot] == key) {
+        return targets[slot];
+      }
+    }
+  }
+  
+  /**
+   * Returns the node reached from the given node by a token, or
+   * {@link #NO_NODE} if no label continues with the token
+   */
+  public int step(int node, String token) {
+    return step(node, token.toCharArray(), 0, token.length());
+  }
+  
+  /** Returns true if the trie holds a (lower-cased) label */
+  public boolean contains(String label) {
+    return getLabelId(label) != -1;
+  }
+  
+  /** Returns the number of labels */
+  public int getNumLabels() {
+    return labelRanks[labelNodes.length];
+  }
+  
+  /**
+   * Returns the id of the label ending at a node, -1 if the token sequence
+   * leading to the node is not a label
+   */
+  public int getLabelId(int node) {
+    if (node == NO_NODE || !isLabel(node)) {
+      return -1;
+    }
+    return labelRanks[node >>> 6]
+        + Long.bitCount(labelNodes[node >>> 6] & ((1L << node) - 1));
+  }
+  
+  /** Returns the id of a (lower-cased) label, -1 if the trie does not hold it */
+  public int getLabelId(String label) {
+    char[] buffer = label.toCharArray();
+    int node = ROOT;
+    int start = 0;
+    while (start < buffer.length && node != NO_NODE) {
+      int end = label.indexOf(' ', start);
+      if (end == -1) {
+        end = buffer.length;
+      }
+      if (end > start) {
+        node = step(node, buffer, start, end - start);
+      }
+      start = end + 1;
+    }
+    return node == ROOT ? -1 : getLabelId(node);
+  }
+  
+  /** Returns true if the token sequence leading to the node is a label */
+  public boolean isLabel(int node) {
+    return (labelNodes[node >>> 6] & (1L << node)) != 0;
+  }
+  
+  /**
+   * Returns the labels of the trie by id, with their tokens joined by single
+   * spaces, e.g. to merge the labels of several vocabularies
+   */
+  public List<String> getLabels() {
+    String[] tokensById = new String[tokens.length];
+    for (int slot = 0; slot < tokens.length; slot++) {
+      if (tokens[slot] != null) {
+        tokensById[tokenIds[slot]] = new String(tokens[slot]);
+      }
+    }
+    
+    /* nodes are numbered in the order they were added, parents first */
+    int numNodes = 1;
+    for (int target : targets) {
+      if (target != 0) {
+        numNodes++;
+      }
+    }
+    long[] keys = new long[numNodes];
+    for (int slot = 0; slot < targets.length; slot++) {
+      if (targets[slot] != 0) {
+        keys[targets[slot]] = transitions[slot];
+      }
+    }
+    
+    List<String> labels = new ArrayList<String>();
+    String[] prefixes = new String[numNodes];
+    for (int node = 1; node < numNodes; node++) {
+      int parent = (int) (keys[node] >>> 32);
+      String token = tokensById[(int) keys[node]];
+      prefixes[node] = parent == ROOT ? token : prefixes[parent] + " " + token;
+      if (isLabel(node)) {
+        labels.add(prefixes[node]);
+      }
+    }
+    return labels;
+  }
+  
+  /* returns the id of a token, -1 if no label contains it */
+  private static int getTokenId(char[][] tokens, int[] tokenIds,
+      char[] buffer, int offset, int length) {
+    int mask = tokens.length - 1;
+    for (int slot = hash(buffer, offset, length) & mask;; slot = (slot + 1)
+        & mask) {
+      char[] token = tokens[slot];
+      if (token == null) {
+        return -1;
+      }
+      if (equals(token, buffer, offset, length)) {
+        return tokenIds[slot];
+      }
+    }
+  }
+  
+  private static int hash(char[] buffer, int offset, int length) {
+    int hash = 0;
+    for (int i = offset; i < offset + length; i++) {
+      hash = 31 * hash + Character.toLowerCase(buffer[i]);
+    }
+    return mix(hash);
+  }
+  
+  private static boolean equals(char[] token, char[] buffer, int offset,
+      int length) {
+    if (token.length != length) {
+      return false;
+    }
+    for (int i = 0; i < length; i++) {
+      if (token[i] != Character.toLowerCase(buffer[offset + i])) {
+        return false;
+      }
+    }
+    return true;
+  }
+  
+  private static int mix(long key) {
+    key ^= key >>> 33;
+    key *= 0xff51afd7ed558ccdL;
+    key ^= key >>> 33;
+    return (int) key & 0x7fffffff;
+  }
+  
+  /* the smallest power of two keeping the table at most half full */
+  private static int tableSize(int size) {
+    int tableSize = 2;
+    while (tableSize < 2 * size) {
+      tableSize <<= 1;
+    }
+    return tableSize;
+  }
+  
+  /**
+   * Collects the labels of a vocabulary and compiles them into a
+   * {@link LabelTrie}
+   */
+  public static final class Builder {
+    
+    private char[][] tokens = new char[64][];
+    
+    private int[] tokenIds = new int[64];
+    
+    private int numTokens;
+    
+    private long[] transitions = new long[64];
+    
+    private int[] targets = new int[64];
+    
+    /* the root is node 0 */
+    private int numNodes = 1;
+    
+    private long[] labelNodes = new long[1];
+    
+    /** Adds a (lower-cased) label */
+    public void add(String label) {
+      int node = ROOT;
+      int start = 0;
+      while (start < label.length()) {
+        int end = label.indexOf(' ', start);
+        if (end == -1) {
+          end = label.length();
+        }
+        if (end > start) {
+          node = addTransition(node, addToken(label.substring(start, end)
+              .toCharArray()));
+        }
+        start = end + 1;
+      }
+      if (node != ROOT) {
+        if (node >>> 6 >= labelNodes.length) {
+          labelNodes = Arrays.copyOf(labelNodes, Math.max(
+              2 * labelNodes.length, (node >>> 6) + 1));
+        }
+        labelNodes[node >>> 6] |= 1L << node;
+      }
+    }
+    
+    public LabelTrie build() {
+      long[] labels = Arrays.copyOf(labelNodes, (numNodes + 63) >>> 6);
+      return new LabelTrie(tokens, tokenIds, transitions, targets, labels);
+    }
+    
+    private int addToken(char[] token) {
+      int id = getTokenId(tokens, tokenIds, token, 0, token.length);
+      if (id != -1) {
+        return id;
+      }
+      if (2 * (numTokens + 1) > tokens.length) {
+        char[][] oldTokens = tokens;
+        int[] oldIds = tokenIds;
+        tokens = new char[2 * oldTokens.length][];
+        tokenIds = new int[tokens.length];
+        for (int slot = 0; slot < oldTokens.length; slot++) {
+          if (oldTokens[slot] != null) {
+            putToken(oldTokens[slot], oldIds[slot]);
+          }
+        }
+      }
+      putToken(token, numTokens);
+      return numTokens++;
+    }
+    
+    private void putToken(char[] token, int id) {
+      int mask = tokens.length - 1;
+      int slot = hash(token, 0, token.length) & mask;
+      while (tokens[slot] != null) {
+        slot = (slot + 1) & mask;
+      }
+      tokens[slot] = token;
+      tokenIds[slot] = id;
+    }
+    
+    private int addTransition(int node, int token) {
+      long key = (long) node << 32 | token;
+      int mask = transitions.length - 1;
+      int slot = mix(key) & mask;
+      while (targets[slot] != 0) {
+        if (transitions[slot] == key) {
+          return targets[slot];
+        }
+        slot = (slot + 1) & mask;
+      }
+      
+      /* targets are never the root, so 0 marks an empty slot */
+      int target = numNodes++;
+      if (2 * numNodes > transitions.length) {
+        long[] oldTransitions = transitions;
+        int[] oldTargets = targets;
+        transitions = new long[tableSize(numNodes)];
+        targets = new int[transitions.length];
+        for (int i = 0; i < oldTargets.length; i++) {
+          if (oldTargets[i] != 0) {
+            putTransition(oldTransitions[i], oldTargets[i]);
+          }
+        }
+      }
+      putTransition(key, target);
+      return target;
+    }
+    
+    private void putTransition(long key, int target) {
+      int mask = transitions.length - 1;
+      int slot = mix(key) & mask;
+      while (targets[slot] != 0) {
+        slot = (slot + 1) & mask;
+      }
+      transitions[slot] = key;
+      targets[slot] = target;
+    }
+  }
+}
@@ -0,0 +1,259 @@
+package at.ac.univie.mminf.luceneSKOS.skos;
+
+/**
+ * Copyright 2010 Bernhard Haslhofer 
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+
+import at.ac.univie.mminf.luceneSKOS.analysis.tokenattributes.SKOSTypeAttribute.SKOSType;
+
+/**
+ * Restricts an engine holding the labels of all languages to a set of
+ * languages, so that a vocabulary is built once whatever languages its users
+ * consider. Labels in other languages are neither returned nor matched; the
+ * relations between concepts are not restricted.
+ *
+ * The label trie and profile are those of the underlying engine, so the trie
+ * may hold labels that do not match in these languages.
+ */
+public final class LanguageRestrictedSKOSEngine implements SKOSEngine {
+  
+  private final SKOSEngine engine;
+  
+  /** The language mask, see {@link SKOSLanguages} */
+  private final long languages;
+  
+  /**
+   * @param engine
+   *          the engine of all languages; closed with this engine
+   * @param languages
+   *          the languages to be considered
+   */
+  public LanguageRestrictedSKOSEngine(SKOSEngine engine, String... languages) {
+    this.engine = engine;
+    this.languages = SKOSLanguages.getMask(languages);
+  }
+  
+  /** Returns the labels in the languages of this engine of a type */
+  private String[] getLabels(String conceptURI, SKOSType type)
+      throws IOException {
+    final List<String> labels = new ArrayList<String>();
+    engine.expand(conceptURI, EnumSet.of(type), languages, new ExpansionSink() {
+      @Override
+      public void add(String label, SKOSType labelType) {
+        labels.add(label);
+      }
+    });
+    return labels.toArray(new String[labels.size()]);
+  }
+  
+  @Override
+  public String[] getPrefLabels(String conceptURI) throws IOException {
+    return getLabels(conceptURI, SKOSType.PREF);
+  }
+  
+  @Override
+  public String[] getAltLabels(String conceptURI) throws IOException {
+    return getLabels(conceptURI, SKOSType.ALT);
+  }
+  
+  @Override
+  public String[] getHiddenLabels(String conceptURI) throws IOException {
+    return getLabels(conceptURI, SKOSType.HIDDEN);
+  }
+  
+  @Override
+  public String[] getRelatedLabels(String conceptURI) throws IOException {
+    return getLabels(conceptURI, SKOSType.RELATED);
+  }
+  
+  @Override
+  public String[] getRelatedConcepts(String conceptURI) throws IOException {
+    return engine.getRelatedConcepts(conceptURI);
+  }
+  
+  @Override
+  public String[] getBroaderConcepts(String conceptURI) throws IOException {
+    return engine.getBroaderConcepts(conceptURI);
+  }
+  
+  @Override
+  public String[] getNarrowerConcepts(String conceptURI) throws IOException {
+    return engine.getNarrowerConcepts(conceptURI);
+  }
+  
+  @Override
+  public String[] getBroaderLabels(String conceptURI) throws IOException {
+    return getLabels(conceptURI, SKOSType.BROADER);
+  }
+  
+  @Override
+  public String[] getNarrowerLabels(String conceptURI) throws IOException {
+    return getLabels(conceptURI, SKOSType.NARROWER);
+  }
+  
+  @Override
+  public String[] getBroaderTransitiveConcepts(String conceptURI)
+      throws IOException {
+    return engine.getBroaderTransitiveConcepts(conceptURI);
+  }
+  
+  @Override
+  public String[] getNarrowerTransitiveConcepts(String conceptURI)
+      throws IOException {
+    return engine.getNarrowerTransitiveConcepts(conceptURI);
+  }
+  
+  @Override
+  public String[] getBroaderTransitiveLabels(String conceptURI)
+      throws IOException {
+    return getLabels(conceptURI, SKOSType.BROADERTRANSITIVE);
+  }
+  
+  @Override
+  public String[] getNarrowerTransitiveLabels(String conceptURI)
+      throws IOException {
+    return getLabels(conceptURI, SKOSType.NARROWERTRANSITIVE);
+  }
+  
+  @Override
+  public boolean hasConcept(String conceptURI) throws IOException {
+    return engine.hasConcept(conceptURI);
+  }
+  
+  /**
+   * Returns the concepts carrying the label in one of the languages of this
+   * engine
+   */
+  @Override
+  public String[] getConcepts(String label) throws IOException {
+    String[] concepts = engine.getConcepts(label);
+    if (concepts == null || languages == SKOSLanguages.ALL) {
+      return concepts;
+    }
+    String queryString = label.toLowerCase();
+    List<String> result = new ArrayList<String>();
+    for (String conceptURI : concepts) {
+      if (SKOSExpansion.hasLabel(engine, conceptURI, queryString, languages)) {
+        result.add(conceptURI);
+      }
+    }
+    return result.toArray(new String[result.size()]);
+  }
+  
+  @Override
+  public SKOSBatchResult getConcepts(String[] labels) throws IOException {
+    return SKOSBatchResult.getConcepts(this, labels);
+  }
+  
+  @Override
+  public SKOSBatchResult getLabels(String[] conceptURIs,
+      EnumSet<SKOSType> types) throws IOException {
+    return SKOSBatchResult.getLabels(this, conceptURIs, types);
+  }
+  
+  @Override
+  public void expand(String conceptURI, EnumSet<SKOSType> types,
+      ExpansionSink sink) throws IOException {
+    engine.expand(conceptURI, types, languages, sink);
+  }
+  
+  @Override
+  public void expand(String conceptURI, EnumSet<SKOSType> types,
+      long languages, ExpansionSink sink) throws IOException {
+    if ((languages & this.languages) != 0) {
+      engine.expand(conceptURI, types, languages & this.languages, sink);
+    }
+  }
+  
+  @Override
+  public SKOSExpansion getExpansion(String label) throws IOException {
+    return engine.getExpansion(label, languages);
+  }
+  
+  @Override
+  public SKOSExpansion getExpansion(String label, long languages)
+      throws IOException {
+    if ((languages & this.languages) == 0) {
+      return null;
+    }
+    return engine.getExpansion(label, languages & this.languages);
+  }
+  
+  @Override
+  public LabelTrie getLabelTrie() throws IOException {
+    return engine.getLabelTrie();
+  }
+  
+  @Override
+  public LabelExpansions getLabelExpansions(EnumSet<SKOSType> types,
+      long languages) throws IOException {
+    return engine.getLabelExpansions(types, languages & this.languages);
+  }
+  
+  @Override
+  public SKOSVocabularyProfile getProfile() throws IOException {
+    return engine.getProfile();
+  }
+  
+  @Override
+  public String[] getAltTerms(String label) throws IOException {
+    List<String> result = new ArrayList<String>();
+    for (String conceptURI : getConcepts(label)) {
+      result.addAll(Arrays.asList(getAltLabels(conceptURI)));
+    }
+    return result.toArray(new String[result.size()]);
+  }
+  
+  @Override
+  public String[] getPrefMaleLabels(String conceptURI) throws IOException {
+    return getLabels(conceptURI, SKOSType.PREFMALE);
+  }
+  
+  @Override
+  public String[] getPrefFemaleLabels(String conceptURI) throws IOException {
+    return getLabels(conceptURI, SKOSType.PREFFEMALE);
+  }
+  
+  @Override
+  public String[] getPrefNeuterLabels(String conceptURI) throws IOException {
+    return getLabels(conceptURI, SKOSType.PREFNEUTER);
+  }
+  
+  @Override
+  public String[] getAltMaleLabels(String conceptURI) throws IOException {
+    return getLabels(conceptURI, SKOSType.ALTMALE);
+  }
+  
+  @Override
+  public String[] getAltFemaleLabels(String conceptURI) throws IOException {
+    return getLabels(conceptURI, SKOSType.ALTFEMALE);
+  }
+  
+  @Override
+  public String[] getAltNeuterLabels(String conceptURI) throws IOException {
+    return getLabels(conceptURI, SKOSType.ALTNEUTER);
+  }
+  
+  @Override
+  public void close() throws IOException {
+    engine.close();
+  }
+}
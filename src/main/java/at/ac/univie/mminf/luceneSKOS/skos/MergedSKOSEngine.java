@@ -0,0 +1,1080 @@
+package at.ac.univie.mminf.luceneSKOS.skos;
+
+/**
+ * Copyright 2010 Bernhard Haslhofer 
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import at.ac.univie.mminf.luceneSKOS.analysis.AnalyzedLabels;
+import at.ac.univie.mminf.luceneSKOS.analysis.tokenattributes.SKOSTypeAttribute.SKOSType;
+
+/**
+ * A SKOSEngine serving several vocabularies at once, so that a single filter
+ * can look up the labels of all of them in one pass over the token stream.
+ *
+ * Each vocabulary has its own engine and the SKOSTypes its labels are
+ * expanded to: {@link #getExpansion(String, long)} and
+ * {@link #expand(String, EnumSet, long, ExpansionSink)} merge the expansions
+ * of the vocabularies carrying a label or concept, restricted to the types of
+ * each vocabulary. The other lookups are answered by all vocabularies.
+ *
+ * The label trie is merged from those of the vocabularies into a
+ * {@link Revision}, which pins the current revision of each versioned
+ * vocabulary (e.g. a {@link ReloadableSKOSEngine}). Readers pin a merged
+ * revision by {@link #acquire()} and look it up without merging again. Once a
+ * vocabulary changed, its labels are merged again in the background and the
+ * new revision is published by a later {@link #acquire()}.
+ */
+public final class MergedSKOSEngine implements VersionedSKOSEngine {
+  
+  private static final Logger log = LoggerFactory
+      .getLogger(MergedSKOSEngine.class);
+  
+  private static final SKOSType[] TYPES = SKOSType.values();
+  
+  private static final EnumSet<SKOSType> ALL_TYPES = EnumSet
+      .allOf(SKOSType.class);
+  
+  /**
+   * The vocabularies merged at one version, reference counted by its readers
+   */
+  public static final class Revision implements SKOSRevision {
+    /* per vocabulary the pinned revision, null if it is not versioned */
+    private final SKOSRevision[] sources;
+    
+    /*
+     * per vocabulary its version when last checked, which no pinned revision
+     * is older than; see update()
+     */
+    private volatile long[] versions;
+    
+    private final View view;
+    
+    /* merged from the analyzed labels of the vocabularies */
+    private final AnalyzedLabels analyzedLabels;
+    
+    /* one reference is held for as long as the revision is current */
+    private final AtomicInteger refCount = new AtomicInteger(1);
+    
+    private Revision(SKOSRevision[] sources, long[] versions, View view,
+        AnalyzedLabels analyzedLabels) {
+      this.sources = sources;
+      this.versions = versions;
+      this.view = view;
+      this.analyzedLabels = analyzedLabels;
+    }
+    
+    @Override
+    public SKOSEngine getEngine() {
+      return view;
+    }
+    
+    @Override
+    public AnalyzedLabels getAnalyzedLabels() {
+      return analyzedLabels;
+    }
+    
+    private boolean tryIncRef() {
+      int count;
+      do {
+        count = refCount.get();
+        if (count == 0) {
+          return false;
+        }
+      } while (!refCount.compareAndSet(count, count + 1));
+      return true;
+    }
+    
+    /**
+     * Releases a revision obtained from {@link MergedSKOSEngine#acquire()}
+     */
+    @Override
+    public void release() throws IOException {
+      if (refCount.decrementAndGet() == 0) {
+        releaseAll(sources);
+      }
+    }
+  }
+  
+  /**
+   * The lookups of a merged revision, answered by the engines it pinned
+   */
+  private static final class View implements SKOSEngine {
+    
+    private final SKOSEngine[] engines;
+    
+    /* the types to expand to, per vocabulary */
+    private final List<EnumSet<SKOSType>> types;
+    
+    /* the tries of the vocabularies the labels were merged from */
+    private final LabelTrie[] sources;
+    
+    private final LabelTrie trie;
+    
+    private final SKOSVocabularyProfile profile;
+    
+    /* the merged expansions of the labels of the merged trie */
+    private final LabelExpansions.Cache labelExpansions;
+    
+    private View(SKOSEngine[] engines, List<EnumSet<SKOSType>> types)
+        throws IOException {
+      this.engines = engines;
+      this.types = types;
+      this.sources = new LabelTrie[engines.length];
+      LabelTrie.Builder trie = new LabelTrie.Builder();
+      SKOSVocabularyProfile.Builder profile = new SKOSVocabularyProfile.Builder();
+      for (int i = 0; i < engines.length; i++) {
+        sources[i] = engines[i].getLabelTrie();
+        for (String label : sources[i].getLabels()) {
+          trie.add(label);
+        }
+        SKOSVocabularyProfile source = engines[i].getProfile();
+        if (source != null) {
+          profile.add(source);
+        }
+      }
+      this.trie = trie.build();
+      this.profile = profile.build();
+      this.labelExpansions = new LabelExpansions.Cache(this.trie,
+          new LabelExpansions.Expander() {
+            @Override
+            public SKOSExpansion expand(String label, EnumSet<SKOSType> types,
+                long languages) throws IOException {
+              return mergeExpansions(label, types, languages);
+            }
+          });
+    }
+    
+    @Override
+    public SKOSExpansion getExpansion(String label) throws IOException {
+      return getExpansion(label, SKOSLanguages.ALL);
+    }
+    
+    @Override
+    public SKOSExpansion getExpansion(String label, long languages)
+        throws IOException {
+      return labelExpansions.getExpansion(label.toLowerCase(), languages);
+    }
+    
+    @Override
+    public LabelExpansions getLabelExpansions(EnumSet<SKOSType> types,
+        long languages) {
+      return labelExpansions.get(types, languages);
+    }
+    
+    /**
+     * Merges the expansions of a label to the given types in the given
+     * languages by the vocabularies, each restricted to the types of its
+     * vocabulary and deduplicated per type. Only the vocabularies whose trie
+     * holds the label are asked, by its id in their trie. Each label records
+     * the vocabularies expanding to it, see {@link SKOSExpansion#getSources}.
+     * 
+     * @return the expansion, or null if no vocabulary expands the label
+     */
+    private SKOSExpansion mergeExpansions(String label,
+        EnumSet<SKOSType> types, long languages) throws IOException {
+      /* per type the labels and the mask of the vocabularies expanding them */
+      List<Map<String,Long>> typeLabels = null;
+      for (int i = 0; i < engines.length; i++) {
+        int labelId = sources[i].getLabelId(label);
+        if (labelId == -1) {
+          continue;
+        }
+        EnumSet<SKOSType> allowed = EnumSet.copyOf(types);
+        allowed.retainAll(this.types.get(i));
+        if (allowed.isEmpty()) {
+          continue;
+        }
+        SKOSExpansion expansion = engines[i].getLabelExpansions(allowed,
+            languages).get(labelId);
+        if (expansion == null) {
+          continue;
+        }
+        for (SKOSType type : allowed) {
+          int end = expansion.getEnd(type);
+          for (int j = expansion.getStart(type); j < end; j++) {
+            if (typeLabels == null) {
+              typeLabels = new ArrayList<Map<String,Long>>();
+              for (int t = 0; t < TYPES.length; t++) {
+                typeLabels.add(new LinkedHashMap<String,Long>());
+              }
+            }
+            Map<String,Long> labels = typeLabels.get(type.ordinal());
+            Long sources = labels.get(expansion.getLabel(j));
+            labels.put(expansion.getLabel(j), (sources == null ? 0 : sources)
+                | 1L << i);
+          }
+        }
+      }
+      
+      if (typeLabels == null) {
+        return null;
+      }
+      
+      List<String> labels = new ArrayList<String>();
+      List<Long> sources = new ArrayList<Long>();
+      int[] start = new int[TYPES.length + 1];
+      for (SKOSType type : TYPES) {
+        start[type.ordinal()] = labels.size();
+        labels.addAll(typeLabels.get(type.ordinal()).keySet());
+        sources.addAll(typeLabels.get(type.ordinal()).values());
+      }
+      start[TYPES.length] = labels.size();
+      
+      long[] labelSources = new long[sources.size()];
+      for (int i = 0; i < labelSources.length; i++) {
+        labelSources[i] = sources.get(i);
+      }
+      return new SKOSExpansion(labels.toArray(new String[labels.size()]),
+          start, labelSources);
+    }
+    
+    @Override
+    public void expand(String conceptURI, EnumSet<SKOSType> types,
+        ExpansionSink sink) throws IOException {
+      expand(conceptURI, types, SKOSLanguages.ALL, sink);
+    }
+    
+    @Override
+    public void expand(String conceptURI, EnumSet<SKOSType> types,
+        long languages, ExpansionSink sink) throws IOException {
+      for (int i = 0; i < engines.length; i++) {
+        EnumSet<SKOSType> allowed = EnumSet.copyOf(types);
+        allowed.retainAll(this.types.get(i));
+        if (!allowed.isEmpty()) {
+          engines[i].expand(conceptURI, allowed, languages, sink);
+        }
+      }
+    }
+    
+    @Override
+    public LabelTrie getLabelTrie() throws IOException {
+      return trie;
+    }
+    
+    /**
+     * Returns the profiles of the vocabularies added up
+     */
+    @Override
+    public SKOSVocabularyProfile getProfile() throws IOException {
+      return profile;
+    }
+    
+    @Override
+    public boolean hasConcept(String conceptURI) throws IOException {
+      return getOwner(conceptURI) != null;
+    }
+    
+    @Override
+    public String[] getConcepts(String label) throws IOException {
+      Set<String> concepts = new LinkedHashSet<String>();
+      for (SKOSEngine engine : engines) {
+        String[] values = engine.getConcepts(label);
+        if (values != null) {
+          concepts.addAll(Arrays.asList(values));
+        }
+      }
+      return concepts.toArray(new String[concepts.size()]);
+    }
+    
+    @Override
+    public SKOSBatchResult getConcepts(String[] labels) throws IOException {
+      return SKOSBatchResult.getConcepts(this, labels);
+    }
+    
+    @Override
+    public SKOSBatchResult getLabels(String[] conceptURIs,
+        EnumSet<SKOSType> types) throws IOException {
+      return SKOSBatchResult.getLabels(this, conceptURIs, types);
+    }
+    
+    @Override
+    public String[] getAltTerms(String label) throws IOException {
+      List<String> altTerms = new ArrayList<String>();
+      for (SKOSEngine engine : engines) {
+        String[] values = engine.getAltTerms(label);
+        if (values != null) {
+          altTerms.addAll(Arrays.asList(values));
+        }
+      }
+      return altTerms.toArray(new String[altTerms.size()]);
+    }
+    
+    /**
+     * Returns the labels of a type for a concept, of all vocabularies
+     */
+    private String[] getLabels(String conceptURI, SKOSType type)
+        throws IOException {
+      final List<String> labels = new ArrayList<String>();
+      ExpansionSink sink = new ExpansionSink() {
+        @Override
+        public void add(String label, SKOSType labelType) {
+          labels.add(label);
+        }
+      };
+      for (SKOSEngine engine : engines) {
+        engine.expand(conceptURI, EnumSet.of(type), sink);
+      }
+      return labels.toArray(new String[labels.size()]);
+    }
+    
+    /**
+     * Returns the engine of the vocabulary holding a concept, or null if no
+     * vocabulary holds it
+     */
+    private SKOSEngine getOwner(String conceptURI) throws IOException {
+      for (SKOSEngine engine : engines) {
+        if (engine.hasConcept(conceptURI)) {
+          return engine;
+        }
+      }
+      return null;
+    }
+    
+    @Override
+    public String[] getPrefLabels(String conceptURI) throws IOException {
+      return getLabels(conceptURI, SKOSType.PREF);
+    }
+    
+    @Override
+    public String[] getAltLabels(String conceptURI) throws IOException {
+      return getLabels(conceptURI, SKOSType.ALT);
+    }
+    
+    @Override
+    public String[] getHiddenLabels(String conceptURI) throws IOException {
+      return getLabels(conceptURI, SKOSType.HIDDEN);
+    }
+    
+    @Override
+    public String[] getRelatedLabels(String conceptURI) throws IOException {
+      return getLabels(conceptURI, SKOSType.RELATED);
+    }
+    
+    @Override
+    public String[] getRelatedConcepts(String conceptURI) throws IOException {
+      SKOSEngine owner = getOwner(conceptURI);
+      return owner == null ? null : owner.getRelatedConcepts(conceptURI);
+    }
+    
+    @Override
+    public String[] getBroaderConcepts(String conceptURI) throws IOException {
+      SKOSEngine owner = getOwner(conceptURI);
+      return owner == null ? null : owner.getBroaderConcepts(conceptURI);
+    }
+    
+    @Override
+    public String[] getNarrowerConcepts(String conceptURI) throws IOException {
+      SKOSEngine owner = getOwner(conceptURI);
+      return owner == null ? null : owner.getNarrowerConcepts(conceptURI);
+    }
+    
+    @Override
+    public String[] getBroaderLabels(String conceptURI) throws IOException {
+      return getLabels(conceptURI, SKOSType.BROADER);
+    }
+    
+    @Override
+    public String[] getNarrowerLabels(String conceptURI) throws IOException {
+      return getLabels(conceptURI, SKOSType.NARROWER);
+    }
+    
+    @Override
+    public String[] getBroaderTransitiveConcepts(String conceptURI)
+        throws IOException {
+      SKOSEngine owner = getOwner(conceptURI);
+      return owner == null ? null : owner
+          .getBroaderTransitiveConcepts(conceptURI);
+    }
+    
+    @Override
+    public String[] getNarrowerTransitiveConcepts(String conceptURI)
+        throws IOException {
+      SKOSEngine owner = getOwner(conceptURI);
+      return owner == null ? null : owner
+          .getNarrowerTransitiveConcepts(conceptURI);
+    }
+    
+    @Override
+    public String[] getBroaderTransitiveLabels(String conceptURI)
+        throws IOException {
+      return getLabels(conceptURI, SKOSType.BROADERTRANSITIVE);
+    }
+    
+    @Override
+    public String[] getNarrowerTransitiveLabels(String conceptURI)
+        throws IOException {
+      return getLabels(conceptURI, SKOSType.NARROWERTRANSITIVE);
+    }
+    
+    @Override
+    public String[] getPrefMaleLabels(String conceptURI) throws IOException {
+      return getLabels(conceptURI, SKOSType.PREFMALE);
+    }
+    
+    @Override
+    public String[] getPrefFemaleLabels(String conceptURI) throws IOException {
+      return getLabels(conceptURI, SKOSType.PREFFEMALE);
+    }
+    
+    @Override
+    public String[] getPrefNeuterLabels(String conceptURI) throws IOException {
+      return getLabels(conceptURI, SKOSType.PREFNEUTER);
+    }
+    
+    @Override
+    public String[] getAltMaleLabels(String conceptURI) throws IOException {
+      return getLabels(conceptURI, SKOSType.ALTMALE);
+    }
+    
+    @Override
+    public String[] getAltFemaleLabels(String conceptURI) throws IOException {
+      return getLabels(conceptURI, SKOSType.ALTFEMALE);
+    }
+    
+    @Override
+    public String[] getAltNeuterLabels(String conceptURI) throws IOException {
+      return getLabels(conceptURI, SKOSType.ALTNEUTER);
+    }
+    
+    /* the engines are owned by the merged engine and its revisions */
+    @Override
+    public void close() {}
+  }
+  
+  private final SKOSEngine[] engines;
+  
+  /* the types to expand to, per vocabulary */
+  private final List<EnumSet<SKOSType>> types = new ArrayList<EnumSet<SKOSType>>();
+  
+  /* whether any of the vocabularies is versioned */
+  private final boolean versioned;
+  
+  private volatile Revision current;
+  
+  /* incremented whenever a revision replaces the current one */
+  private volatile long version;
+  
+  /* a revision merged in the background and not yet published */
+  private volatile Revision built;
+  
+  /* whether a merge is running, guarded by this */
+  private boolean merging;
+  
+  private volatile boolean closed;
+  
+  /**
+   * @param engines
+   *          the engines of the vocabularies, at most 64
+   * @param types
+   *          per vocabulary the SKOSTypes its labels are expanded to; null
+   *          (or a null entry) for all types
+   */
+  public MergedSKOSEngine(SKOSEngine[] engines, SKOSType[][] types) {
+    if (engines.length > Long.SIZE) {
+      throw new IllegalArgumentException("Cannot merge more than "
+          + Long.SIZE + " vocabularies, got " + engines.length);
+    }
+    if (types != null && types.length != engines.length) {
+      throw new IllegalArgumentException("Expected " + engines.length
+          + " type lists, got " + types.length);
+    }
+    this.engines = engines.clone();
+    boolean versioned = false;
+    for (int i = 0; i < engines.length; i++) {
+      if (types == null || types[i] == null || types[i].length == 0) {
+        this.types.add(ALL_TYPES);
+      } else {
+        this.types.add(EnumSet.copyOf(Arrays.asList(types[i])));
+      }
+      versioned |= engines[i] instanceof VersionedSKOSEngine;
+    }
+    this.versioned = versioned;
+  }
+  
+  /**
+   * Pins the current merged revision, publishing a revision merged in the
+   * background first if it is ready. The first revision is merged by the
+   * calling thread. The revision must be released when done.
+   */
+  @Override
+  public Revision acquire() throws IOException {
+    if (current == null) {
+      synchronized (this) {
+        if (current == null && !closed) {
+          long[] versions = getVersions();
+          current = merge(pinAll(), versions);
+        }
+      }
+    } else if (versioned) {
+      update();
+    }
+    for (;;) {
+      if (closed) {
+        throw new IllegalStateException("The SKOS engine is closed");
+      }
+      Revision revision = current;
+      /* fails only if the revision was replaced meanwhile */
+      if (revision.tryIncRef()) {
+        return revision;
+      }
+    }
+  }
+  
+  @Override
+  public long getVersion() throws IOException {
+    if (current != null && versioned) {
+      update();
+    }
+    return version;
+  }
+  
+  /**
+   * Publishes a revision merged in the background, or starts merging if any
+   * of the vocabularies changed since the current revision was merged. The
+   * vocabularies are only pinned once one of their versions moved.
+   */
+  private void update() throws IOException {
+    if (built == null) {
+      /* read before pinning, so that no pinned revision is older */
+      final long[] versions = getVersions();
+      Revision revision = current;
+      if (Arrays.equals(versions, revision.versions)) {
+        return;
+      }
+      final SKOSRevision[] pins = pinAll();
+      if (Arrays.equals(pins, revision.sources)) {
+        /* the pinned revisions were newer than their versions last read */
+        revision.versions = versions;
+        releaseAll(pins);
+        return;
+      }
+      boolean started = false;
+      synchronized (this) {
+        if (!closed && !merging && built == null) {
+          merging = true;
+          started = true;
+        }
+      }
+      if (!started) {
+        releaseAll(pins);
+        return;
+      }
+      /*
+       * the revisions of the vocabularies are published once built, so the
+       * merge does not wait for other builds
+       */
+      SKOSEngineRegistry.submit(new Callable<Void>() {
+        @Override
+        public Void call() {
+          mergeInBackground(pins, versions);
+          return null;
+        }
+      });
+      return;
+    }
+    
+    Revision replaced;
+    synchronized (this) {
+      if (closed || built == null) {
+        return;
+      }
+      replaced = current;
+      current = built;
+      built = null;
+      version++;
+    }
+    replaced.release();
+  }
+  
+  /* merges the pinned vocabularies, handing them over to the new revision */
+  private void mergeInBackground(SKOSRevision[] pins, long[] versions) {
+    Revision revision = null;
+    try {
+      revision = merge(pins, versions);
+    } catch (IOException e) {
+      log.error("Could not merge SKOS vocabularies", e);
+    } catch (RuntimeException e) {
+      log.error("Could not merge SKOS vocabularies", e);
+    }
+    boolean discard;
+    synchronized (this) {
+      merging = false;
+      discard = closed;
+      if (!discard) {
+        built = revision;
+      }
+    }
+    if (discard && revision != null) {
+      try {
+        revision.release();
+      } catch (IOException e) {
+        log.error("Error when accessing SKOS Engine.", e);
+      }
+    }
+  }
+  
+  /* returns the current version of each vocabulary, 0 if it is not versioned */
+  private long[] getVersions() throws IOException {
+    long[] versions = new long[engines.length];
+    for (int i = 0; i < engines.length; i++) {
+      if (engines[i] instanceof VersionedSKOSEngine) {
+        versions[i] = ((VersionedSKOSEngine) engines[i]).getVersion();
+      }
+    }
+    return versions;
+  }
+  
+  /* pins the current revision of each versioned vocabulary */
+  private SKOSRevision[] pinAll() throws IOException {
+    SKOSRevision[] pins = new SKOSRevision[engines.length];
+    boolean pinned = false;
+    try {
+      for (int i = 0; i < engines.length; i++) {
+        if (engines[i] instanceof VersionedSKOSEngine) {
+          pins[i] = ((VersionedSKOSEngine) engines[i]).acquire();
+        }
+      }
+      pinned = true;
+    } finally {
+      if (!pinned) {
+        releaseAll(pins);
+      }
+    }
+    return pins;
+  }
+  
+  /*
+   * merges the pinned vocabularies and their analyzed labels; releases them if
+   * that fails
+   */
+  private Revision merge(SKOSRevision[] pins, long[] versions)
+      throws IOException {
+    boolean merged = false;
+    try {
+      SKOSEngine[] pinned = new SKOSEngine[engines.length];
+      AnalyzedLabels[] labels = new AnalyzedLabels[engines.length];
+      for (int i = 0; i < engines.length; i++) {
+        if (pins[i] != null) {
+          pinned[i] = pins[i].getEngine();
+          labels[i] = pins[i].getAnalyzedLabels();
+        } else {
+          pinned[i] = engines[i];
+          /* the labels of a shared engine were analyzed by the registry */
+          if (engines[i] instanceof FutureSKOSEngine) {
+            labels[i] = SKOSEngineRegistry
+                .getAnalyzedLabels((FutureSKOSEngine) engines[i]);
+          }
+        }
+      }
+      Revision revision = new Revision(pins, versions, new View(pinned, types),
+          AnalyzedLabels.merge(labels));
+      merged = true;
+      return revision;
+    } finally {
+      if (!merged) {
+        releaseAll(pins);
+      }
+    }
+  }
+  
+  private static void releaseAll(SKOSRevision[] pins) throws IOException {
+    IOException failure = null;
+    for (SKOSRevision pin : pins) {
+      if (pin != null) {
+        try {
+          pin.release();
+        } catch (IOException e) {
+          failure = e;
+        }
+      }
+    }
+    if (failure != null) {
+      throw failure;
+    }
+  }
+  
+  @Override
+  public SKOSExpansion getExpansion(String label) throws IOException {
+    Revision revision = acquire();
+    try {
+      return revision.getEngine().getExpansion(label);
+    } finally {
+      revision.release();
+    }
+  }
+  
+  @Override
+  public SKOSExpansion getExpansion(String label, long languages)
+      throws IOException {
+    Revision revision = acquire();
+    try {
+      return revision.getEngine().getExpansion(label, languages);
+    } finally {
+      revision.release();
+    }
+  }
+  
+  @Override
+  public void expand(String conceptURI, EnumSet<SKOSType> types,
+      ExpansionSink sink) throws IOException {
+    Revision revision = acquire();
+    try {
+      revision.getEngine().expand(conceptURI, types, sink);
+    } finally {
+      revision.release();
+    }
+  }
+  
+  @Override
+  public void expand(String conceptURI, EnumSet<SKOSType> types,
+      long languages, ExpansionSink sink) throws IOException {
+    Revision revision = acquire();
+    try {
+      revision.getEngine().expand(conceptURI, types, languages, sink);
+    } finally {
+      revision.release();
+    }
+  }
+  
+  @Override
+  public LabelTrie getLabelTrie() throws IOException {
+    Revision revision = acquire();
+    try {
+      return revision.getEngine().getLabelTrie();
+    } finally {
+      revision.release();
+    }
+  }
+  
+  @Override
+  public LabelExpansions getLabelExpansions(EnumSet<SKOSType> types,
+      long languages) throws IOException {
+    Revision revision = acquire();
+    try {
+      return revision.getEngine().getLabelExpansions(types, languages);
+    } finally {
+      revision.release();
+    }
+  }
+  
+  @Override
+  public SKOSVocabularyProfile getProfile() throws IOException {
+    Revision revision = acquire();
+    try {
+      return revision.getEngine().getProfile();
+    } finally {
+      revision.release();
+    }
+  }
+  
+  @Override
+  public boolean hasConcept(String conceptURI) throws IOException {
+    Revision revision = acquire();
+    try {
+      return revision.getEngine().hasConcept(conceptURI);
+    } finally {
+      revision.release();
+    }
+  }
+  
+  @Override
+  public String[] getConcepts(String label) throws IOException {
+    Revision revision = acquire();
+    try {
+      return revision.getEngine().getConcepts(label);
+    } finally {
+      revision.release();
+    }
+  }
+  
+  @Override
+  public SKOSBatchResult getConcepts(String[] labels) throws IOException {
+    Revision revision = acquire();
+    try {
+      return revision.getEngine().getConcepts(labels);
+    } finally {
+      revision.release();
+    }
+  }
+  
+  @Override
+  public SKOSBatchResult getLabels(String[] conceptURIs,
+      EnumSet<SKOSType> types) throws IOException {
+    Revision revision = acquire();
+    try {
+      return revision.getEngine().getLabels(conceptURIs, types);
+    } finally {
+      revision.release();
+    }
+  }
+  
+  @Override
+  public String[] getAltTerms(String label) throws IOException {
+    Revision revision = acquire();
+    try {
+      return revision.getEngine().getAltTerms(label);
+    } finally {
+      revision.release();
+    }
+  }
+  
+  @Override
+  public String[] getPrefLabels(String conceptURI) throws IOException {
+    Revision revision = acquire();
+    try {
+      return revision.getEngine().getPrefLabels(conceptURI);
+    } finally {
+      revision.release();
+    }
+  }
+  
+  @Override
+  public String[] getAltLabels(String conceptURI) throws IOException {
+    Revision revision = acquire();
+    try {
+      return revision.getEngine().getAltLabels(conceptURI);
+    } finally {
+      revision.release();
+    }
+  }
+  
+  @Override
+  public String[] getHiddenLabels(String conceptURI) throws IOException {
+    Revision revision = acquire();
+    try {
+      return revision.getEngine().getHiddenLabels(conceptURI);
+    } finally {
+      revision.release();
+    }
+  }
+  
+  @Override
+  public String[] getRelatedLabels(String conceptURI) throws IOException {
+    Revision revision = acquire();
+    try {
+      return revision.getEngine().getRelatedLabels(conceptURI);
+    } finally {
+      revision.release();
+    }
+  }
+  
+  @Override
+  public String[] getRelatedConcepts(String conceptURI) throws IOException {
+    Revision revision = acquire();
+    try {
+      return revision.getEngine().getRelatedConcepts(conceptURI);
+    } finally {
+      revision.release();
+    }
+  }
+  
+  @Override
+  public String[] getBroaderConcepts(String conceptURI) throws IOException {
+    Revision revision = acquire();
+    try {
+      return revision.getEngine().getBroaderConcepts(conceptURI);
+    } finally {
+      revision.release();
+    }
+  }
+  
+  @Override
+  public String[] getNarrowerConcepts(String conceptURI) throws IOException {
+    Revision revision = acquire();
+    try {
+      return revision.getEngine().getNarrowerConcepts(conceptURI);
+    } finally {
+      revision.release();
+    }
+  }
+  
+  @Override
+  public String[] getBroaderLabels(String conceptURI) throws IOException {
+    Revision revision = acquire();
+    try {
+      return revision.getEngine().getBroaderLabels(conceptURI);
+    } finally {
+      revision.release();
+    }
+  }
+  
+  @Override
+  public String[] getNarrowerLabels(String conceptURI) throws IOException {
+    Revision revision = acquire();
+    try {
+      return revision.getEngine().getNarrowerLabels(conceptURI);
+    } finally {
+      revision.release();
+    }
+  }
+  
+  @Override
+  public String[] getBroaderTransitiveConcepts(String conceptURI)
+      throws IOException {
+    Revision revision = acquire();
+    try {
+      return revision.getEngine().getBroaderTransitiveConcepts(conceptURI);
+    } finally {
+      revision.release();
+    }
+  }
+  
+  @Override
+  public String[] getNarrowerTransitiveConcepts(String conceptURI)
+      throws IOException {
+    Revision revision = acquire();
+    try {
+      return revision.getEngine().getNarrowerTransitiveConcepts(conceptURI);
+    } finally {
+      revision.release();
+    }
+  }
+  
+  @Override
+  public String[] getBroaderTransitiveLabels(String conceptURI)
+      throws IOException {
+    Revision revision = acquire();
+    try {
+      return revision.getEngine().getBroaderTransitiveLabels(conceptURI);
+    } finally {
+      revision.release();
+    }
+  }
+  
+  @Override
+  public String[] getNarrowerTransitiveLabels(String conceptURI)
+      throws IOException {
+    Revision revision = acquire();
+    try {
+      return revision.getEngine().getNarrowerTransitiveLabels(conceptURI);
+    } finally {
+      revision.release();
+    }
+  }
+  
+  @Override
+  public String[] getPrefMaleLabels(String conceptURI) throws IOException {
+    Revision revision = acquire();
+    try {
+      return revision.getEngine().getPrefMaleLabels(conceptURI);
+    } finally {
+      revision.release();
+    }
+  }
+  
+  @Override
+  public String[] getPrefFemaleLabels(String conceptURI) throws IOException {
+    Revision revision = acquire();
+    try {
+      return revision.getEngine().getPrefFemaleLabels(conceptURI);
+    } finally {
+      revision.release();
+    }
+  }
+  
+  @Override
+  public String[] getPrefNeuterLabels(String conceptURI) throws IOException {
+    Revision revision = acquire();
+    try {
+      return revision.getEngine().getPrefNeuterLabels(conceptURI);
+    } finally {
+      revision.release();
+    }
+  }
+  
+  @Override
+  public String[] getAltMaleLabels(String conceptURI) throws IOException {
+    Revision revision = acquire();
+    try {
+      return revision.getEngine().getAltMaleLabels(conceptURI);
+    } finally {
+      revision.release();
+    }
+  }
+  
+  @Override
+  public String[] getAltFemaleLabels(String conceptURI) throws IOException {
+    Revision revision = acquire();
+    try {
+      return revision.getEngine().getAltFemaleLabels(conceptURI);
+    } finally {
+      revision.release();
+    }
+  }
+  
+  @Override
+  public String[] getAltNeuterLabels(String conceptURI) throws IOException {
+    Revision revision = acquire();
+    try {
+      return revision.getEngine().getAltNeuterLabels(conceptURI);
+    } finally {
+      revision.release();
+    }
+  }
+  
+  /**
+   * Releases the merged revisions (revisions pinned by readers are released
+   * once they are done) and closes the engines of all vocabularies
+   */
+  @Override
+  public void close() throws IOException {
+    Revision revision;
+    Revision merged;
+    synchronized (this) {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      revision = current;
+      merged = built;
+      built = null;
+    }
+    IOException failure = null;
+    for (Revision r : new Revision[] {revision, merged}) {
+      if (r != null) {
+        try {
+          r.release();
+        } catch (IOException e) {
+          failure = e;
+        }
+      }
+    }
+    for (SKOSEngine engine : engines) {
+      try {
+        engine.close();
+      } catch (IOException e) {
+        failure = e;
+      }
+    }
+    if (failure != null) {
+      throw failure;
+    }
+  }
+}
@@ -0,0 +1,750 @@
+package at.ac.univie.mminf.luceneSKOS.skos;
+
+/**
+ * Copyright 2010 Bernhard Haslhofer 
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.util.EnumSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.util.Version;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import at.ac.univie.mminf.luceneSKOS.analysis.AnalyzedLabels;
+import at.ac.univie.mminf.luceneSKOS.analysis.tokenattributes.SKOSTypeAttribute.SKOSType;
+import at.ac.univie.mminf.luceneSKOS.skos.SKOSEngineFactory.EngineType;
+import at.ac.univie.mminf.luceneSKOS.skos.impl.SKOSGraphEngineImpl;
+
+/**
+ * A SKOSEngine whose vocabulary is reloaded without downtime when its source
+ * file changes.
+ *
+ * The source file is checked for modifications at most once per check
+ * interval. A modified vocabulary is built in the background (through the
+ * {@link SKOSEngineRegistry}) while the current revision keeps serving, and
+ * is then published by a single volatile write. Readers that pinned a
+ * revision by {@link #acquire()} (e.g. a TokenFilter for the lifetime of a
+ * token stream) finish on it; the replaced revision is closed once the last
+ * of them released it.
+ *
+ * Small changes of a GRAPH engine can be applied without parsing the source
+ * again by {@link #apply(SKOSPatch)}, which publishes the patched vocabulary
+ * as a new revision in the same way.
+ */
+public final class ReloadableSKOSEngine implements VersionedSKOSEngine {
+  
+  private static final Logger log = LoggerFactory
+      .getLogger(ReloadableSKOSEngine.class);
+  
+  /**
+   * A loaded version of the vocabulary, reference counted by its readers
+   */
+  public static final class Revision implements SKOSRevision {
+    /*
+     * the engine, or for a loaded revision a FutureSKOSEngine yielding the
+     * engine acquired from the registry
+     */
+    private final SKOSEngine engine;
+    
+    /* whether the engine was acquired from the registry */
+    private final boolean shared;
+    
+    /* the analyzed labels; for a loaded revision those of the registry */
+    private volatile AnalyzedLabels analyzedLabels;
+    
+    /* the source file's state when the revision was loaded */
+    private final long lastModified;
+    private final long length;
+    
+    /* one reference is held for as long as the revision is current */
+    private final AtomicInteger refCount = new AtomicInteger(1);
+    
+    private Revision(SKOSEngine engine, boolean shared,
+        AnalyzedLabels analyzedLabels, long lastModified, long length) {
+      this.engine = engine;
+      this.shared = shared;
+      this.analyzedLabels = analyzedLabels;
+      this.lastModified = lastModified;
+      this.length = length;
+    }
+    
+    @Override
+    public SKOSEngine getEngine() {
+      return engine;
+    }
+    
+    /**
+     * Returns the analyzed labels of this revision, waiting for a loaded
+     * revision to be built
+     */
+    @Override
+    public AnalyzedLabels getAnalyzedLabels() throws IOException {
+      AnalyzedLabels labels = analyzedLabels;
+      if (labels == null && shared) {
+        labels = SKOSEngineRegistry
+            .getAnalyzedLabels((FutureSKOSEngine) ((FutureSKOSEngine) engine)
+                .get());
+        analyzedLabels = labels;
+      }
+      return labels;
+    }
+    
+    private boolean tryIncRef() {
+      int count;
+      do {
+        count = refCount.get();
+        if (count == 0) {
+          return false;
+        }
+      } while (!refCount.compareAndSet(count, count + 1));
+      return true;
+    }
+    
+    /**
+     * Releases a revision obtained from {@link ReloadableSKOSEngine#acquire()}
+     */
+    @Override
+    public void release() throws IOException {
+      if (refCount.decrementAndGet() == 0) {
+        if (!shared) {
+          engine.close();
+          return;
+        }
+        SKOSEngine acquired;
+        try {
+          acquired = ((FutureSKOSEngine) engine).get();
+        } catch (IOException e) {
+          /* a failed load acquired nothing */
+          return;
+        } catch (RuntimeException e) {
+          return;
+        }
+        SKOSEngineRegistry.release(acquired);
+      }
+    }
+  }
+  
+  private final Version version;
+  
+  private final EngineType engineType;
+  
+  private final File dataDir;
+  
+  private final String filenameOrURI;
+  
+  /** The analyzer of the labels emitted by the filters */
+  private final Analyzer labelAnalyzer;
+  
+  /** The minimum time between two checks of the source file, in ms */
+  private final long checkInterval;
+  
+  private volatile Revision current;
+  
+  /* incremented whenever a revision replaces the current one */
+  private volatile long version;
+  
+  /* the revision being built, if any */
+  private volatile Revision pending;
+  
+  private volatile long nextCheck;
+  
+  private volatile boolean closed;
+  
+  /**
+   * Starts loading the vocabulary in the background.
+   * 
+   * @param owner
+   *          the object using the engine (e.g. a filter factory), the engine
+   *          is closed once it is garbage collected; may be null
+   * @param checkInterval
+   *          the minimum time between two checks of the source file for
+   *          modifications, in milliseconds; 0 disables reloading
+   * @see SKOSEngineRegistry#acquire(Object, Version, EngineType, File, String)
+   */
+  public ReloadableSKOSEngine(Object owner, Version version,
+      EngineType engineType, File dataDir, String filenameOrURI,
+      long checkInterval) throws IOException {
+    this(owner, version, engineType, dataDir, filenameOrURI, checkInterval,
+        new StandardAnalyzer(version));
+  }
+  
+  /**
+   * Starts loading the vocabulary, analyzing the labels of each revision by
+   * the given analyzer (the one the filters analyze their input with).
+   * 
+   * @see #ReloadableSKOSEngine(Object, Version, EngineType, File, String, long)
+   */
+  public ReloadableSKOSEngine(Object owner, Version version,
+      EngineType engineType, File dataDir, String filenameOrURI,
+      long checkInterval, Analyzer labelAnalyzer) throws IOException {
+    this.version = version;
+    this.engineType = engineType;
+    this.dataDir = dataDir;
+    this.filenameOrURI = filenameOrURI;
+    this.labelAnalyzer = labelAnalyzer;
+    this.checkInterval = checkInterval;
+    this.current = load();
+    this.nextCheck = System.currentTimeMillis() + checkInterval;
+    if (owner != null) {
+      SKOSEngineRegistry.closeWhenUnreachable(owner, this);
+    }
+  }
+  
+  /**
+   * Waits for the current revision to be built and returns its engine
+   * 
+   * @throws IOException
+   *           if the engine could not be built
+   */
+  public SKOSEngine get() throws IOException {
+    return await(current);
+  }
+  
+  private static SKOSEngine await(Revision revision) throws IOException {
+    SKOSEngine engine = revision.engine;
+    /* a load yields the registry's engine, which may still be building */
+    while (engine instanceof FutureSKOSEngine) {
+      engine = ((FutureSKOSEngine) engine).get();
+    }
+    return engine;
+  }
+  
+  /* returns true if a revision has been built or failed to */
+  private static boolean isDone(Revision revision) {
+    SKOSEngine engine = revision.engine;
+    while (engine instanceof FutureSKOSEngine) {
+      FutureSKOSEngine future = (FutureSKOSEngine) engine;
+      if (!future.isDone()) {
+        return false;
+      }
+      try {
+        engine = future.get();
+      } catch (IOException e) {
+        return true;
+      } catch (RuntimeException e) {
+        return true;
+      }
+    }
+    return true;
+  }
+  
+  /**
+   * Pins the current revision, publishing a reloaded one first if it is
+   * ready. The revision must be released when done.
+   */
+  @Override
+  public Revision acquire() throws IOException {
+    if (pending != null || System.currentTimeMillis() >= nextCheck) {
+      update();
+    }
+    for (;;) {
+      if (closed) {
+        throw new IllegalStateException("The SKOS engine is closed");
+      }
+      Revision revision = current;
+      /* fails only if the revision was replaced meanwhile */
+      if (revision.tryIncRef()) {
+        return revision;
+      }
+    }
+  }
+  
+  @Override
+  public long getVersion() throws IOException {
+    if (pending != null || System.currentTimeMillis() >= nextCheck) {
+      update();
+    }
+    return version;
+  }
+  
+  /**
+   * Starts reloading the vocabulary whether or not its source was modified,
+   * e.g. for remote sources. The current revision is replaced once the new one
+   * is built.
+   */
+  public synchronized void reload() throws IOException {
+    if (!closed && pending == null) {
+      pending = load();
+    }
+  }
+  
+  /**
+   * Publishes a reloaded revision that has been built, or starts reloading if
+   * the source file was modified
+   */
+  private void update() throws IOException {
+    Revision replaced = null;
+    synchronized (this) {
+      if (closed) {
+        return;
+      }
+      if (pending != null) {
+        if (!isDone(pending)) {
+          return;
+        }
+        Revision built = pending;
+        pending = null;
+        if (!isBuilt(built)) {
+          built.release();
+          return;
+        }
+        replaced = current;
+        current = built;
+        version++;
+      } else if (checkInterval > 0
+          && System.currentTimeMillis() >= nextCheck) {
+        nextCheck = System.currentTimeMillis() + checkInterval;
+        File file = new File(filenameOrURI);
+        if (file.lastModified() != current.lastModified
+            || file.length() != current.length) {
+          log.info("Reloading modified SKOS vocabulary {}", filenameOrURI);
+          pending = load();
+        }
+      }
+    }
+    if (replaced != null) {
+      replaced.release();
+    }
+  }
+  
+  /* returns false if a revision failed to build, keeping the current one */
+  private boolean isBuilt(Revision revision) {
+    try {
+      await(revision);
+      return true;
+    } catch (IOException e) {
+      log.error("Could not reload SKOS vocabulary " + filenameOrURI, e);
+    } catch (RuntimeException e) {
+      log.error("Could not reload SKOS vocabulary " + filenameOrURI, e);
+    }
+    return false;
+  }
+  
+  /**
+   * Starts loading the vocabulary. The registry hashes the source to find a
+   * shared engine, so the engine is acquired on a build thread rather than
+   * the calling (query) thread.
+   */
+  private Revision load() {
+    /* read before hashing, so that a concurrent change triggers a reload */
+    File file = new File(filenameOrURI);
+    long lastModified = file.lastModified();
+    long length = file.length();
+    Future<SKOSEngine> acquired = SKOSEngineRegistry
+        .submit(new Callable<SKOSEngine>() {
+          @Override
+          public SKOSEngine call() throws IOException {
+            return SKOSEngineRegistry.acquire(null, version, engineType,
+                dataDir, filenameOrURI, labelAnalyzer);
+          }
+        });
+    return new Revision(new FutureSKOSEngine(acquired), true, null,
+        lastModified, length);
+  }
+  
+  /**
+   * Applies a patch to the current revision and publishes the result as a new
+   * revision. Patches are kept until the source file is modified and
+   * reloaded; a reload in progress replaces the patched revision when done.
+   * 
+   * The patched vocabulary is compiled from the current one as a whole (see
+   * {@link SKOSGraphEngineImpl#apply(SKOSPatch)}), so a patch saves parsing
+   * the source, but not the cost of building the graph.
+   * 
+   * @throws UnsupportedOperationException
+   *           if the engine is not a GRAPH engine, the only one that can be
+   *           patched
+   */
+  public void apply(SKOSPatch patch) throws IOException {
+    if (engineType != EngineType.GRAPH) {
+      throw new UnsupportedOperationException("Patches can only be applied "
+          + "to the " + EngineType.GRAPH + " engine, not the " + engineType
+          + " engine");
+    }
+    Revision replaced;
+    synchronized (this) {
+      if (closed) {
+        throw new IllegalStateException("The SKOS engine is closed");
+      }
+      SKOSEngine engine = await(current);
+      if (!(engine instanceof SKOSGraphEngineImpl)) {
+        throw new UnsupportedOperationException("The " + engineType
+            + " engine was not built as a graph and cannot be patched");
+      }
+      SKOSEngine patched = ((SKOSGraphEngineImpl) engine).apply(patch);
+      replaced = current;
+      current = new Revision(patched, false, SKOSEngineRegistry.analyzeLabels(
+          labelAnalyzer, patched), replaced.lastModified, replaced.length);
+      version++;
+    }
+    replaced.release();
+  }
+  
+  @Override
+  public String[] getPrefLabels(String conceptURI) throws IOException {
+    Revision revision = acquire();
+    try {
+      return revision.getEngine().getPrefLabels(conceptURI);
+    } finally {
+      revision.release();
+    }
+  }
+  
+  @Override
+  public String[] getAltLabels(String conceptURI) throws IOException {
+    Revision revision = acquire();
+    try {
+      return revision.getEngine().getAltLabels(conceptURI);
+    } finally {
+      revision.release();
+    }
+  }
+  
+  @Override
+  public String[] getHiddenLabels(String conceptURI) throws IOException {
+    Revision revision = acquire();
+    try {
+      return revision.getEngine().getHiddenLabels(conceptURI);
+    } finally {
+      revision.release();
+    }
+  }
+  
+  @Override
+  public String[] getRelatedLabels(String conceptURI) throws IOException {
+    Revision revision = acquire();
+    try {
+      return revision.getEngine().getRelatedLabels(conceptURI);
+    } finally {
+      revision.release();
+    }
+  }
+  
+  @Override
+  public String[] getRelatedConcepts(String conceptURI) throws IOException {
+    Revision revision = acquire();
+    try {
+      return revision.getEngine().getRelatedConcepts(conceptURI);
+    } finally {
+      revision.release();
+    }
+  }
+  
+  @Override
+  public String[] getBroaderConcepts(String conceptURI) throws IOException {
+    Revision revision = acquire();
+    try {
+      return revision.getEngine().getBroaderConcepts(conceptURI);
+    } finally {
+      revision.release();
+    }
+  }
+  
+  @Override
+  public String[] getNarrowerConcepts(String conceptURI) throws IOException {
+    Revision revision = acquire();
+    try {
+      return revision.getEngine().getNarrowerConcepts(conceptURI);
+    } finally {
+      revision.release();
+    }
+  }
+  
+  @Override
+  public String[] getBroaderLabels(String conceptURI) throws IOException {
+    Revision revision = acquire();
+    try {
+      return revision.getEngine().getBroaderLabels(conceptURI);
+    } finally {
+      revision.release();
+    }
+  }
+  
+  @Override
+  public String[] getNarrowerLabels(String conceptURI) throws IOException {
+    Revision revision = acquire();
+    try {
+      return revision.getEngine().getNarrowerLabels(conceptURI);
+    } finally {
+      revision.release();
+    }
+  }
+  
+  @Override
+  public String[] getBroaderTransitiveConcepts(String conceptURI)
+      throws IOException {
+    Revision revision = acquire();
+    try {
+      return revision.getEngine().getBroaderTransitiveConcepts(conceptURI);
+    } finally {
+      revision.release();
+    }
+  }
+  
+  @Override
+  public String[] getNarrowerTransitiveConcepts(String conceptURI)
+      throws IOException {
+    Revision revision = acquire();
+    try {
+      return revision.getEngine().getNarrowerTransitiveConcepts(conceptURI);
+    } finally {
+      revision.release();
+    }
+  }
+  
+  @Override
+  public String[] getBroaderTransitiveLabels(String conceptURI)
+      throws IOException {
+    Revision revision = acquire();
+    try {
+      return revision.getEngine().getBroaderTransitiveLabels(conceptURI);
+    } finally {
+      revision.release();
+    }
+  }
+  
+  @Override
+  public String[] getNarrowerTransitiveLabels(String conceptURI)
+      throws IOException {
+    Revision revision = acquire();
+    try {
+      return revision.getEngine().getNarrowerTransitiveLabels(conceptURI);
+    } finally {
+      revision.release();
+    }
+  }
+  
+  @Override
+  public boolean hasConcept(String conceptURI) throws IOException {
+    Revision revision = acquire();
+    try {
+      return revision.getEngine().hasConcept(conceptURI);
+    } finally {
+      revision.release();
+    }
+  }
+  
+  @Override
+  public String[] getConcepts(String label) throws IOException {
+    Revision revision = acquire();
+    try {
+      return revision.getEngine().getConcepts(label);
+    } finally {
+      revision.release();
+    }
+  }
+  
+  @Override
+  public SKOSBatchResult getConcepts(String[] labels) throws IOException {
+    Revision revision = acquire();
+    try {
+      return revision.getEngine().getConcepts(labels);
+    } finally {
+      revision.release();
+    }
+  }
+  
+  @Override
+  public SKOSBatchResult getLabels(String[] conceptURIs,
+      EnumSet<SKOSType> types) throws IOException {
+    Revision revision = acquire();
+    try {
+      return revision.getEngine().getLabels(conceptURIs, types);
+    } finally {
+      revision.release();
+    }
+  }
+  
+  @Override
+  public void expand(String conceptURI, EnumSet<SKOSType> types,
+      ExpansionSink sink) throws IOException {
+    Revision revision = acquire();
+    try {
+      revision.getEngine().expand(conceptURI, types, sink);
+    } finally {
+      revision.release();
+    }
+  }
+  
+  @Override
+  public void expand(String conceptURI, EnumSet<SKOSType> types,
+      long languages, ExpansionSink sink) throws IOException {
+    Revision revision = acquire();
+    try {
+      revision.getEngine().expand(conceptURI, types, languages, sink);
+    } finally {
+      revision.release();
+    }
+  }
+  
+  @Override
+  public LabelTrie getLabelTrie() throws IOException {
+    Revision revision = acquire();
+    try {
+      return revision.getEngine().getLabelTrie();
+    } finally {
+      revision.release();
+    }
+  }
+  
+  /**
+   * Returns the expansions of the labels of the current revision; the label
+   * ids are those of the trie of the same revision, see {@link #acquire()}
+   */
+  @Override
+  public LabelExpansions getLabelExpansions(EnumSet<SKOSType> types,
+      long languages) throws IOException {
+    Revision revision = acquire();
+    try {
+      return revision.getEngine().getLabelExpansions(types, languages);
+    } finally {
+      revision.release();
+    }
+  }
+  
+  @Override
+  public SKOSVocabularyProfile getProfile() throws IOException {
+    Revision revision = acquire();
+    try {
+      return revision.getEngine().getProfile();
+    } finally {
+      revision.release();
+    }
+  }
+  
+  @Override
+  public SKOSExpansion getExpansion(String label) throws IOException {
+    Revision revision = acquire();
+    try {
+      return revision.getEngine().getExpansion(label);
+    } finally {
+      revision.release();
+    }
+  }
+  
+  @Override
+  public SKOSExpansion getExpansion(String label, long languages)
+      throws IOException {
+    Revision revision = acquire();
+    try {
+      return revision.getEngine().getExpansion(label, languages);
+    } finally {
+      revision.release();
+    }
+  }
+  
+  @Override
+  public String[] getAltTerms(String label) throws IOException {
+    Revision revision = acquire();
+    try {
+      return revision.getEngine().getAltTerms(label);
+    } finally {
+      revision.release();
+    }
+  }
+  
+  @Override
+  public String[] getPrefMaleLabels(String conceptURI) throws IOException {
+    Revision revision = acquire();
+    try {
+      return revision.getEngine().getPrefMaleLabels(conceptURI);
+    } finally {
+      revision.release();
+    }
+  }
+  
+  @Override
+  public String[] getPrefFemaleLabels(String conceptURI) throws IOException {
+    Revision revision = acquire();
+    try {
+      return revision.getEngine().getPrefFemaleLabels(conceptURI);
+    } finally {
+      revision.release();
+    }
+  }
+  
+  @Override
+  public String[] getPrefNeuterLabels(String conceptURI) throws IOException {
+    Revision revision = acquire();
+    try {
+      return revision.getEngine().getPrefNeuterLabels(conceptURI);
+    } finally {
+      revision.release();
+    }
+  }
+  
+  @Override
+  public String[] getAltMaleLabels(String conceptURI) throws IOException {
+    Revision revision = acquire();
+    try {
+      return revision.getEngine().getAltMaleLabels(conceptURI);
+    } finally {
+      revision.release();
+    }
+  }
+  
+  @Override
+  public String[] getAltFemaleLabels(String conceptURI) throws IOException {
+    Revision revision = acquire();
+    try {
+      return revision.getEngine().getAltFemaleLabels(conceptURI);
+    } finally {
+      revision.release();
+    }
+  }
+  
+  @Override
+  public String[] getAltNeuterLabels(String conceptURI) throws IOException {
+    Revision revision = acquire();
+    try {
+      return revision.getEngine().getAltNeuterLabels(conceptURI);
+    } finally {
+      revision.release();
+    }
+  }
+  
+  /**
+   * Releases the current revision (and a revision being built); revisions
+   * pinned by readers are closed once they are released
+   */
+  @Override
+  public void close() throws IOException {
+    Revision revision;
+    Revision built;
+    synchronized (this) {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      revision = current;
+      built = pending;
+      pending = null;
+    }
+    try {
+      revision.release();
+    } finally {
+      if (built != null) {
+        built.release();
+      }
+    }
+  }
+}
@@ -0,0 +1,203 @@
+package at.ac.univie.mminf.luceneSKOS.skos;
+
+/**
+ * Copyright 2010 Bernhard Haslhofer 
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+
+import at.ac.univie.mminf.luceneSKOS.analysis.tokenattributes.SKOSTypeAttribute.SKOSType;
+
+/**
+ * The result of a batch lookup: the values found for each key, in one flat
+ * array. The values of a key are grouped by SKOSType (in ordinal order) when
+ * several types were requested.
+ *
+ * Instances are immutable and may be shared between threads.
+ */
+public final class SKOSBatchResult {
+  
+  private static final SKOSType[] TYPES = SKOSType.values();
+  
+  /** The values of all keys */
+  private final String[] values;
+  
+  /** Offsets into values, one per key and group plus the end offset */
+  private final int[] start;
+  
+  /** The number of groups per key */
+  private final int numGroups;
+  
+  /** The group of each SKOSType by ordinal, -1 for types not requested */
+  private final int[] groups;
+  
+  private SKOSBatchResult(String[] values, int[] start, int numGroups,
+      int[] groups) {
+    this.values = values;
+    this.start = start;
+    this.numGroups = numGroups;
+    this.groups = groups;
+  }
+  
+  /** Returns the number of keys looked up */
+  public int getNumKeys() {
+    return (start.length - 1) / numGroups;
+  }
+  
+  /** Returns the total number of values */
+  public int size() {
+    return values.length;
+  }
+  
+  public String getValue(int i) {
+    return values[i];
+  }
+  
+  /** Returns the offset of the first value of a key */
+  public int getStart(int key) {
+    return start[key * numGroups];
+  }
+  
+  /** Returns the end offset (exclusive) of the values of a key */
+  public int getEnd(int key) {
+    return start[(key + 1) * numGroups];
+  }
+  
+  /**
+   * Returns the offset of the first value of the given type for a key
+   * 
+   * @throws IllegalArgumentException
+   *           if the type was not requested
+   */
+  public int getStart(int key, SKOSType type) {
+    return start[key * numGroups + getGroup(type)];
+  }
+  
+  /** Returns the end offset (exclusive) of the values of a type for a key */
+  public int getEnd(int key, SKOSType type) {
+    return start[key * numGroups + getGroup(type) + 1];
+  }
+  
+  private int getGroup(SKOSType type) {
+    int group = groups == null ? -1 : groups[type.ordinal()];
+    if (group == -1) {
+      throw new IllegalArgumentException("SKOSType " + type
+          + " was not looked up");
+    }
+    return group;
+  }
+  
+  /**
+   * Collects the values of a batch lookup, key by key (and type by type)
+   */
+  public static final class Builder {
+    
+    private final List<String> values = new ArrayList<String>();
+    
+    private final int[] start;
+    
+    private final int numGroups;
+    
+    private final int[] groups;
+    
+    /* the group being collected */
+    private int group;
+    
+    /**
+     * @param numKeys
+     *          the number of keys looked up
+     * @param types
+     *          the types looked up per key, null if the values are not typed
+     */
+    public Builder(int numKeys, EnumSet<SKOSType> types) {
+      if (types == null) {
+        numGroups = 1;
+        groups = null;
+      } else {
+        numGroups = types.size();
+        groups = new int[TYPES.length];
+        int group = 0;
+        for (SKOSType type : TYPES) {
+          groups[type.ordinal()] = types.contains(type) ? group++ : -1;
+        }
+      }
+      start = new int[numKeys * numGroups + 1];
+    }
+    
+    /** Adds a value to the current key (and type) */
+    public void add(String value) {
+      values.add(value);
+    }
+    
+    /** Adds the given values to the current key (and type), if any */
+    public void addAll(String[] values) {
+      if (values != null) {
+        for (String value : values) {
+          this.values.add(value);
+        }
+      }
+    }
+    
+    /**
+     * Completes the values of the current key, or of the current type when
+     * typed, and moves on to the next one
+     */
+    public void next() {
+      start[++group] = values.size();
+    }
+    
+    public SKOSBatchResult build() {
+      if (group != start.length - 1) {
+        throw new IllegalStateException("Expected " + (start.length - 1)
+            + " groups, got " + group);
+      }
+      return new SKOSBatchResult(values.toArray(new String[values.size()]),
+          start, numGroups, groups);
+    }
+  }
+  
+  /**
+   * Looks up the concepts of several labels through the single-key method of
+   * the given engine. Meant for engines without a faster batch lookup.
+   */
+  public static SKOSBatchResult getConcepts(SKOSEngine engine, String[] labels)
+      throws IOException {
+    Builder builder = new Builder(labels.length, null);
+    for (String label : labels) {
+      builder.addAll(engine.getConcepts(label));
+      builder.next();
+    }
+    return builder.build();
+  }
+  
+  /**
+   * Looks up the labels of several concepts through the per-type accessors of
+   * the given engine. Meant for engines without a faster batch lookup.
+   */
+  public static SKOSBatchResult getLabels(SKOSEngine engine,
+      String[] conceptURIs, EnumSet<SKOSType> types) throws IOException {
+    Builder builder = new Builder(conceptURIs.length, types);
+    for (String conceptURI : conceptURIs) {
+      for (SKOSType type : types) {
+        builder.addAll(SKOSExpansion.getLabels(engine, conceptURI, type));
+        builder.next();
+      }
+    }
+    return builder.build();
+  }
+}
@@ -16,13 +16,20 @@ package at.ac.univie.mminf.luceneSKOS.skos;
  * limitations under the License.
  */
 
+import java.io.Closeable;
 import java.io.IOException;
+import java.util.EnumSet;
+
+import at.ac.univie.mminf.luceneSKOS.analysis.tokenattributes.SKOSTypeAttribute.SKOSType;
 
 /**
  * An interface to the used SKOS model. It provides accessors to all the data
  * needed for the expansion process.
+ * 
+ * Engines hold resources (e.g. an index reader) that are released by
+ * {@link #close()}; the engine must not be used afterwards.
  */
-public interface SKOSEngine {
+public interface SKOSEngine extends Closeable {
   
   /**
    * Returns the preferred labels (prefLabel) for a given concept URI
@@ -146,6 +153,16 @@ public interface SKOSEngine {
    */
   String[] getNarrowerTransitiveLabels(String conceptURI) throws IOException;
   
+  /**
+   * Returns true if the vocabulary holds a given concept, by a lookup of its
+   * URI only
+   * 
+   * @param conceptURI
+   * @return boolean
+   * @throws IOException
+   */
+  boolean hasConcept(String conceptURI) throws IOException;
+  
   /**
    * Returns all concepts (URIs) matching a given label
    * 
@@ -155,6 +172,112 @@ public interface SKOSEngine {
    */
   String[] getConcepts(String label) throws IOException;
   
+  /**
+   * Returns the concepts (URIs) matching each of the given labels
+   * 
+   * @param labels
+   * @return the concepts by label index
+   * @throws IOException
+   */
+  SKOSBatchResult getConcepts(String[] labels) throws IOException;
+  
+  /**
+   * Returns the labels of the given types for each of the given concept URIs.
+   * For relation types these are the labels of the related concepts, as
+   * returned by e.g. {@link #getBroaderLabels(String)}.
+   * 
+   * @param conceptURIs
+   * @param types
+   * @return the labels by concept index and type
+   * @throws IOException
+   */
+  SKOSBatchResult getLabels(String[] conceptURIs, EnumSet<SKOSType> types)
+      throws IOException;
+  
+  /**
+   * Passes the labels of the given types for a given concept URI to a sink,
+   * grouped by type (in ordinal order). For relation types these are the
+   * labels of the related concepts, as returned by e.g.
+   * {@link #getBroaderLabels(String)}. Unknown concepts add no labels.
+   * 
+   * @param conceptURI
+   * @param types
+   * @param sink
+   * @throws IOException
+   */
+  void expand(String conceptURI, EnumSet<SKOSType> types, ExpansionSink sink)
+      throws IOException;
+  
+  /**
+   * Passes the labels of the given types in the given languages for a given
+   * concept URI to a sink, like {@link #expand(String, EnumSet, ExpansionSink)}
+   * 
+   * @param conceptURI
+   * @param types
+   * @param languages
+   *          the language mask, see {@link SKOSLanguages}
+   * @param sink
+   * @throws IOException
+   */
+  void expand(String conceptURI, EnumSet<SKOSType> types, long languages,
+      ExpansionSink sink) throws IOException;
+  
+  /**
+   * Returns the expansion of a given label: the labels of all concepts
+   * matching it, deduplicated and grouped by SKOSType
+   * 
+   * @param label
+   * @return SKOSExpansion, or null if no concept matches the label
+   * @throws IOException
+   */
+  SKOSExpansion getExpansion(String label) throws IOException;
+  
+  /**
+   * Returns the expansion of a given label restricted to the given languages:
+   * the labels in these languages of all concepts carrying the label in one
+   * of them
+   * 
+   * @param label
+   * @param languages
+   *          the language mask, see {@link SKOSLanguages}
+   * @return SKOSExpansion, or null if no concept matches the label in these
+   *         languages
+   * @throws IOException
+   */
+  SKOSExpansion getExpansion(String label, long languages) throws IOException;
+  
+  /**
+   * Returns a trie over the token sequences of all labels matched by
+   * {@link #getConcepts(String)}, so that callers can find multi-word labels
+   * token by token
+   * 
+   * @return LabelTrie
+   * @throws IOException
+   */
+  LabelTrie getLabelTrie() throws IOException;
+  
+  /**
+   * Returns the expansions of the labels of {@link #getLabelTrie()} to the
+   * given types, restricted to the given languages, by label id
+   * 
+   * @param types
+   * @param languages
+   *          the language mask, see {@link SKOSLanguages}
+   * @return LabelExpansions
+   * @throws IOException
+   */
+  LabelExpansions getLabelExpansions(EnumSet<SKOSType> types, long languages)
+      throws IOException;
+  
+  /**
+   * Returns the statistics of the vocabulary computed when the engine was
+   * built
+   * 
+   * @return SKOSVocabularyProfile
+   * @throws IOException
+   */
+  SKOSVocabularyProfile getProfile() throws IOException;
+  
   /**
    * Returns all alternative terms for a given label
    * 
@@ -16,18 +16,31 @@ package at.ac.univie.mminf.luceneSKOS.skos;
  * limitations under the License.
  */
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 
 import org.apache.lucene.util.Version;
 
 import at.ac.univie.mminf.luceneSKOS.skos.impl.SKOSEngineImpl;
+import at.ac.univie.mminf.luceneSKOS.skos.impl.SKOSGraphEngineImpl;
 
 /**
  * This factory instantiates the various kinds of SKOSEngine implementations
  */
 public class SKOSEngineFactory {
   
+  /** The supported engine implementations */
+  public enum EngineType {
+    /** Concepts are stored as documents of a Lucene index */
+    LUCENE,
+    /** Concepts are compiled into in-memory int arrays */
+    GRAPH
+  }
+  
+  /** Default engine implementation */
+  public static final EngineType DEFAULT_ENGINE_TYPE = EngineType.LUCENE;
+  
   /**
    * Sets up a SKOS Engine from a local rdf file (serialized in any rdf
    * serialization format) or a remote rdf serialization identified by a URI and
@@ -62,7 +75,8 @@ public class SKOSEngineFactory {
   /**
    * Sets up a SKOS Engine from a given rdf file (serialized in any rdf
    * serialization format) and considers only those concept labels that are
-   * defined in the language parameter
+   * defined in the language parameter. The engine restricts the engine of all
+   * languages, see {@link LanguageRestrictedSKOSEngine}.
    * 
    * @param filenameOrURI
    *          the skos file
@@ -73,6 +87,120 @@ public class SKOSEngineFactory {
    */
   public static SKOSEngine getSKOSEngine(final Version version,
       String filenameOrURI, String... languages) throws IOException {
-    return new SKOSEngineImpl(version, filenameOrURI, languages);
+    return getSKOSEngine(version, DEFAULT_ENGINE_TYPE, null, filenameOrURI,
+        languages);
+  }
+  
+  /**
+   * Sets up a SKOS Engine of the given implementation from a given InputStream.
+   * The inputstream must deliver data in a valid RDF serialization format.
+   * 
+   * @param engineType
+   *          the engine implementation
+   * @param inputStream
+   *          the input stream
+   * @param lang
+   *          the serialization format (N3, RDF/XML, TURTLE)
+   * @return a new SKOSEngine instance
+   * @throws IOException
+   */
+  public static SKOSEngine getSKOSEngine(final Version version,
+      EngineType engineType, InputStream inputStream, String lang)
+      throws IOException {
+    return getSKOSEngine(version, engineType, null, inputStream, lang);
+  }
+  
+  /**
+   * Sets up a SKOS Engine of the given implementation from a given InputStream
+   * and keeps the data built from it in the given directory, where it is
+   * reused for the same content.
+   * 
+   * @param engineType
+   *          the engine implementation
+   * @param dataDir
+   *          the directory holding the data built from SKOS files, null to
+   *          keep the data in memory only
+   * @param inputStream
+   *          the input stream
+   * @param lang
+   *          the serialization format (N3, RDF/XML, TURTLE)
+   * @return a new SKOSEngine instance
+   * @throws IOException
+   */
+  public static SKOSEngine getSKOSEngine(final Version version,
+      EngineType engineType, File dataDir, InputStream inputStream, String lang)
+      throws IOException {
+    if (dataDir == null) {
+      if (engineType == EngineType.GRAPH) {
+        return new SKOSGraphEngineImpl(version, inputStream, lang);
+      }
+      return new SKOSEngineImpl(version, inputStream, lang);
+    }
+    if (engineType == EngineType.GRAPH) {
+      return new SKOSGraphEngineImpl(version, dataDir, inputStream, lang);
+    }
+    return new SKOSEngineImpl(version, dataDir, inputStream, lang);
+  }
+  
+  /**
+   * Sets up a SKOS Engine of the given implementation from a given rdf file
+   * and considers only those concept labels that are defined in the language
+   * parameter. If no languages are given, all labels are considered.
+   * 
+   * @param engineType
+   *          the engine implementation
+   * @param filenameOrURI
+   *          the skos file
+   * @param languages
+   *          the languages to be considered
+   * @return SKOSEngine
+   * @throws IOException
+   */
+  public static SKOSEngine getSKOSEngine(final Version version,
+      EngineType engineType, String filenameOrURI, String... languages)
+      throws IOException {
+    return getSKOSEngine(version, engineType, null, filenameOrURI, languages);
+  }
+  
+  /**
+   * Sets up a SKOS Engine of the given implementation from a given rdf file
+   * and keeps the data built from it in the given directory. Engines sharing
+   * a directory (also in other processes) build the data of a file only once.
+   * 
+   * The data always holds the labels of all languages; given languages are
+   * selected by a {@link LanguageRestrictedSKOSEngine}, so the data is not
+   * built again per language set.
+   * 
+   * @param engineType
+   *          the engine implementation
+   * @param dataDir
+   *          the directory holding the data built from SKOS files, null for
+   *          the default location
+   * @param filenameOrURI
+   *          the skos file
+   * @param languages
+   *          the languages to be considered
+   * @return SKOSEngine
+   * @throws IOException
+   */
+  public static SKOSEngine getSKOSEngine(final Version version,
+      EngineType engineType, File dataDir, String filenameOrURI,
+      String... languages) throws IOException {
+    if (languages != null && languages.length == 0) {
+      languages = null;
+    }
+    if (dataDir == null) {
+      dataDir = new File(SKOSEngineImpl.DEFAULT_SKOSDATA_DIR);
+    }
+    SKOSEngine engine;
+    if (engineType == EngineType.GRAPH) {
+      engine = new SKOSGraphEngineImpl(version, dataDir, filenameOrURI);
+    } else {
+      engine = new SKOSEngineImpl(version, dataDir, filenameOrURI);
+    }
+    if (languages != null) {
+      engine = new LanguageRestrictedSKOSEngine(engine, languages);
+    }
+    return engine;
   }
-}
\ No newline at end of file
+}
@@ -0,0 +1,446 @@
+package at.ac.univie.mminf.luceneSKOS.skos;
+
+/**
+ * Copyright 2010 Bernhard Haslhofer 
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.PhantomReference;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.util.Version;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import at.ac.univie.mminf.luceneSKOS.analysis.AnalyzedLabels;
+import at.ac.univie.mminf.luceneSKOS.skos.SKOSEngineFactory.EngineType;
+
+/**
+ * A process-wide registry of shared SKOSEngines.
+ *
+ * Engines are keyed by match version, engine type, canonical file path and
+ * the MD5 hash of the file content, so that all filters using the same
+ * vocabulary (in the index and query analyzers, across field types and cores)
+ * share one engine.
+ * Engines hold the labels of all languages, so that filters considering
+ * different languages share it as well (see {@link SKOSLanguages}). Engines
+ * are reference counted and closed when their last owner releases them or is
+ * garbage collected.
+ *
+ * Engines are built on a bounded pool of background threads (the number of
+ * processors, or the system property skos.buildThreads), so that the
+ * vocabularies of several filters are built in parallel. The labels of an
+ * engine are analyzed for the filters on the same thread once it is built
+ * (see {@link AnalyzedLabels}), and shared with the engine.
+ */
+public final class SKOSEngineRegistry {
+  
+  private static final Logger log = LoggerFactory
+      .getLogger(SKOSEngineRegistry.class);
+  
+  /**
+   * A shared engine and its owners
+   */
+  private static class Entry {
+    private final String key;
+    private FutureSKOSEngine engine;
+    /* set once the engine is built */
+    private volatile AnalyzedLabels analyzedLabels;
+    private int refCount;
+    /* the references to the owners holding the engine, see owners */
+    private final List<Reference<Object>> ownerRefs = new ArrayList<Reference<Object>>();
+    /* the number of acquisitions without owner */
+    private int unowned;
+    
+    private Entry(String key) {
+      this.key = key;
+    }
+  }
+  
+  /**
+   * Builds the engine of an entry and analyzes its labels, forgetting the
+   * entry if that fails so that the next owner tries again
+   */
+  private static class Build implements Callable<SKOSEngine> {
+    private final Entry entry;
+    private final Version version;
+    private final EngineType engineType;
+    private final File dataDir;
+    private final String filenameOrURI;
+    private final Analyzer labelAnalyzer;
+    
+    private Build(Entry entry, Version version, EngineType engineType,
+        File dataDir, String filenameOrURI, Analyzer labelAnalyzer) {
+      this.entry = entry;
+      this.version = version;
+      this.engineType = engineType;
+      this.dataDir = dataDir;
+      this.filenameOrURI = filenameOrURI;
+      this.labelAnalyzer = labelAnalyzer;
+    }
+    
+    @Override
+    public SKOSEngine call() throws IOException {
+      boolean built = false;
+      try {
+        SKOSEngine engine = SKOSEngineFactory.getSKOSEngine(version,
+            engineType, dataDir, filenameOrURI);
+        entry.analyzedLabels = analyzeLabels(labelAnalyzer, engine);
+        built = true;
+        return engine;
+      } finally {
+        if (!built) {
+          synchronized (SKOSEngineRegistry.class) {
+            if (entries.get(entry.key) == entry) {
+              entries.remove(entry.key);
+            }
+          }
+        }
+      }
+    }
+  }
+  
+  /** The number of engines built concurrently */
+  private static final int BUILD_THREADS = Integer.getInteger(
+      "skos.buildThreads", Runtime.getRuntime().availableProcessors());
+  
+  private static final ThreadPoolExecutor executor = new ThreadPoolExecutor(
+      BUILD_THREADS, BUILD_THREADS, 60, TimeUnit.SECONDS,
+      new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+        private final AtomicInteger count = new AtomicInteger();
+        
+        @Override
+        public Thread newThread(Runnable runnable) {
+          Thread thread = new Thread(runnable, "skos-engine-builder-"
+              + count.incrementAndGet());
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+  
+  static {
+    executor.allowCoreThreadTimeOut(true);
+  }
+  
+  private static final Map<String,Entry> entries = new HashMap<String,Entry>();
+  
+  private static final Map<SKOSEngine,Entry> byEngine = new IdentityHashMap<SKOSEngine,Entry>();
+  
+  /* tracks owners that went away without releasing their engine */
+  private static final ReferenceQueue<Object> ownerQueue = new ReferenceQueue<Object>();
+  
+  /*
+   * the entries by the weak references to their owners, one per acquisition;
+   * weak rather than phantom references, so that release() can find the
+   * reference of an owner
+   */
+  private static final Map<Reference<?>,Entry> owners = new HashMap<Reference<?>,Entry>();
+  
+  /* resources to be closed once their owner went away */
+  private static final Map<Reference<?>,Closeable> closeables = new HashMap<Reference<?>,Closeable>();
+  
+  private SKOSEngineRegistry() {}
+  
+  /**
+   * Returns the shared engine for the given vocabulary, building it in the
+   * background if no other owner holds it. The engine is released
+   * automatically once the owner is garbage collected;
+   * {@link #release(Object, SKOSEngine)} releases it explicitly.
+   * 
+   * Build errors are thrown by the first call to the engine (or by
+   * {@link FutureSKOSEngine#get()}).
+   * 
+   * @param owner
+   *          the object using the engine (e.g. a filter factory)
+   * @param engineType
+   *          the engine implementation
+   * @param filenameOrURI
+   *          the skos file
+   * @return a shared SKOSEngine instance
+   * @throws IOException
+   */
+  public static FutureSKOSEngine acquire(Object owner, Version version,
+      EngineType engineType, String filenameOrURI) throws IOException {
+    return acquire(owner, version, engineType, null, filenameOrURI);
+  }
+  
+  /**
+   * Returns the shared engine for the given vocabulary, keeping the data built
+   * from it in the given directory (null for the default location).
+   * 
+   * @see #acquire(Object, Version, EngineType, String)
+   */
+  public static FutureSKOSEngine acquire(Object owner, Version version,
+      EngineType engineType, File dataDir, String filenameOrURI)
+      throws IOException {
+    return acquire(owner, version, engineType, dataDir, filenameOrURI,
+        new StandardAnalyzer(version));
+  }
+  
+  /**
+   * Returns the shared engine for the given vocabulary, with its labels
+   * analyzed by the given analyzer, the one the filters analyze their input
+   * with. Engines are shared by owners whose label analyzers are of the same
+   * class.
+   * 
+   * @see #acquire(Object, Version, EngineType, File, String)
+   */
+  public static FutureSKOSEngine acquire(Object owner, Version version,
+      EngineType engineType, File dataDir, String filenameOrURI,
+      Analyzer labelAnalyzer) throws IOException {
+    expungeStaleOwners();
+    
+    String key = key(version, engineType, dataDir, filenameOrURI) + "|"
+        + labelAnalyzer.getClass().getName();
+    
+    Entry entry;
+    synchronized (SKOSEngineRegistry.class) {
+      entry = entries.get(key);
+      if (entry == null) {
+        entry = new Entry(key);
+        entry.engine = new FutureSKOSEngine(executor.submit(new Build(entry,
+            version, engineType, dataDir, filenameOrURI, labelAnalyzer)));
+        entries.put(key, entry);
+        byEngine.put(entry.engine, entry);
+      }
+      entry.refCount++;
+      if (owner == null) {
+        entry.unowned++;
+      } else {
+        Reference<Object> ref = new WeakReference<Object>(owner, ownerQueue);
+        entry.ownerRefs.add(ref);
+        owners.put(ref, entry);
+      }
+    }
+    
+    return entry.engine;
+  }
+  
+  /**
+   * Releases an engine obtained from {@link #acquire} without owner. The
+   * engine is closed when its last owner released it.
+   */
+  public static void release(SKOSEngine engine) throws IOException {
+    release(null, engine);
+  }
+  
+  /**
+   * Releases an engine obtained from {@link #acquire} by the given owner (null
+   * for none), which is then no longer tracked for garbage collection. The
+   * engine is closed when its last owner released it.
+   */
+  public static void release(Object owner, SKOSEngine engine)
+      throws IOException {
+    Entry entry;
+    synchronized (SKOSEngineRegistry.class) {
+      entry = byEngine.get(engine);
+      if (entry == null) {
+        return;
+      }
+      Reference<Object> ref = null;
+      for (Reference<Object> ownerRef : entry.ownerRefs) {
+        if (owner != null && ownerRef.get() == owner) {
+          ref = ownerRef;
+          break;
+        }
+      }
+      if (ref == null) {
+        if (entry.unowned > 0) {
+          entry.unowned--;
+        } else if (!entry.ownerRefs.isEmpty()) {
+          /* released without its owner, so that owner is no longer tracked */
+          ref = entry.ownerRefs.get(0);
+        }
+      }
+      if (ref != null) {
+        entry.ownerRefs.remove(ref);
+        owners.remove(ref);
+        ref.clear();
+      }
+      if (!decRef(entry)) {
+        return;
+      }
+    }
+    entry.engine.close();
+  }
+  
+  /**
+   * Closes a resource once its owner is garbage collected, for resources (such
+   * as a {@link ReloadableSKOSEngine}) that release the engines they acquired
+   * themselves
+   */
+  public static void closeWhenUnreachable(Object owner, Closeable resource) {
+    synchronized (SKOSEngineRegistry.class) {
+      closeables.put(new PhantomReference<Object>(owner, ownerQueue), resource);
+    }
+  }
+  
+  /**
+   * Runs a task on the build threads, e.g. to hash a source off the calling
+   * thread
+   */
+  static <T> Future<T> submit(Callable<T> task) {
+    return executor.submit(task);
+  }
+  
+  /**
+   * Returns the analyzed labels of a shared engine, waiting for it to be
+   * built; null if the engine was not acquired from the registry
+   * 
+   * @throws IOException
+   *           if the engine could not be built
+   */
+  static AnalyzedLabels getAnalyzedLabels(FutureSKOSEngine engine)
+      throws IOException {
+    engine.get();
+    Entry entry;
+    synchronized (SKOSEngineRegistry.class) {
+      entry = byEngine.get(engine);
+    }
+    return entry == null ? null : entry.analyzedLabels;
+  }
+  
+  /**
+   * Analyzes the labels of a newly built engine for the filters, by the
+   * analyzer the filters analyze their input with
+   * 
+   * @return the analyzed labels, or null if they could not be analyzed (the
+   *         filters then analyze the labels they emit)
+   */
+  static AnalyzedLabels analyzeLabels(Analyzer labelAnalyzer,
+      SKOSEngine engine) {
+    try {
+      return AnalyzedLabels.analyze(labelAnalyzer, engine.getLabelTrie());
+    } catch (IOException e) {
+      log.warn("Could not analyze the labels of a SKOS vocabulary", e);
+      return null;
+    }
+  }
+  
+  /** Returns the number of engines currently shared */
+  public static synchronized int size() {
+    return entries.size();
+  }
+  
+  /* returns true if the entry was removed */
+  private static boolean decRef(Entry entry) {
+    if (--entry.refCount > 0) {
+      return false;
+    }
+    /* a failed build was already replaced by a new entry */
+    if (entries.get(entry.key) == entry) {
+      entries.remove(entry.key);
+    }
+    byEngine.remove(entry.engine);
+    return true;
+  }
+  
+  /**
+   * Releases the engines and closes the resources of all owners that were
+   * garbage collected
+   */
+  private static void expungeStaleOwners() throws IOException {
+    Reference<?> ref;
+    while ((ref = ownerQueue.poll()) != null) {
+      Entry entry;
+      Closeable resource;
+      synchronized (SKOSEngineRegistry.class) {
+        resource = closeables.remove(ref);
+        entry = owners.remove(ref);
+        if (entry != null) {
+          entry.ownerRefs.remove(ref);
+          if (!decRef(entry)) {
+            entry = null;
+          }
+        }
+      }
+      if (resource != null) {
+        resource.close();
+      }
+      if (entry != null) {
+        entry.engine.close();
+      }
+    }
+  }
+  
+  private static String key(Version version, EngineType engineType,
+      File dataDir, String filenameOrURI) throws IOException {
+    File file = new File(filenameOrURI);
+    String path = file.isFile() ? file.getCanonicalPath() : filenameOrURI;
+    String hash = file.isFile() ? contentHash(file) : "";
+    String data = dataDir == null ? "" : dataDir.getCanonicalPath();
+    return version + "|" + engineType + "|" + data + "|" + path + "|" + hash;
+  }
+  
+  /**
+   * Returns the hex encoded MD5 hash of a file's content
+   */
+  public static String contentHash(File file) throws IOException {
+    InputStream in = new FileInputStream(file);
+    try {
+      return contentHash(in);
+    } finally {
+      in.close();
+    }
+  }
+  
+  /**
+   * Returns the hex encoded MD5 hash of the remaining content of a stream.
+   * The stream is not closed.
+   */
+  public static String contentHash(InputStream in) throws IOException {
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("MD5");
+    } catch (NoSuchAlgorithmException e) {
+      throw new RuntimeException(e);
+    }
+    
+    byte[] buffer = new byte[1 << 16];
+    int n;
+    while ((n = in.read(buffer)) != -1) {
+      digest.update(buffer, 0, n);
+    }
+    
+    StringBuilder hex = new StringBuilder();
+    for (byte b : digest.digest()) {
+      hex.append(Character.forDigit((b >> 4) & 0xF, 16));
+      hex.append(Character.forDigit(b & 0xF, 16));
+    }
+    return hex.toString();
+  }
+}
@@ -0,0 +1,270 @@
+package at.ac.univie.mminf.luceneSKOS.skos;
+
+/**
+ * Copyright 2010 Bernhard Haslhofer 
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import at.ac.univie.mminf.luceneSKOS.analysis.tokenattributes.SKOSTypeAttribute.SKOSType;
+import at.ac.univie.mminf.luceneSKOS.skos.impl.ConceptGraph;
+
+/**
+ * The complete expansion of a label: the labels of all concepts carrying it,
+ * deduplicated per SKOSType and grouped by SKOSType (in ordinal order).
+ *
+ * Instances are immutable and may be shared between threads.
+ */
+public final class SKOSExpansion {
+  
+  private static final SKOSType[] TYPES = SKOSType.values();
+  
+  private static final EnumSet<SKOSType> ALL_TYPES = EnumSet
+      .allOf(SKOSType.class);
+  
+  private static final EnumSet<SKOSType> LABEL_TYPES = EnumSet
+      .copyOf(Arrays.asList(ConceptGraph.LABEL_TYPES));
+  
+  /** The expanded labels, grouped by type */
+  private final String[] labels;
+  
+  /** Offsets into labels, one per SKOSType ordinal plus the end offset */
+  private final int[] start;
+  
+  /** Per label the mask of the sources expanding to it, null for one source */
+  private final long[] sources;
+  
+  /**
+   * @param labels
+   *          the expanded labels, grouped by SKOSType
+   * @param start
+   *          for each SKOSType ordinal the offset of its first label, followed
+   *          by labels.length
+   */
+  public SKOSExpansion(String[] labels, int[] start) {
+    this(labels, start, null);
+  }
+  
+  /**
+   * @param labels
+   *          the expanded labels, grouped by SKOSType
+   * @param start
+   *          for each SKOSType ordinal the offset of its first label, followed
+   *          by labels.length
+   * @param sources
+   *          for each label the mask of the sources expanding to it, bit i for
+   *          source i (e.g. the vocabularies of a {@link MergedSKOSEngine}),
+   *          null if the expansion has a single source
+   */
+  public SKOSExpansion(String[] labels, int[] start, long[] sources) {
+    if (start.length != TYPES.length + 1) {
+      throw new IllegalArgumentException("Expected " + (TYPES.length + 1)
+          + " offsets, got " + start.length);
+    }
+    if (sources != null && sources.length != labels.length) {
+      throw new IllegalArgumentException("Expected " + labels.length
+          + " source masks, got " + sources.length);
+    }
+    this.labels = labels;
+    this.start = start;
+    this.sources = sources;
+  }
+  
+  /** Returns the total number of expanded labels */
+  public int size() {
+    return labels.length;
+  }
+  
+  public String getLabel(int i) {
+    return labels[i];
+  }
+  
+  /**
+   * Returns true if the labels were merged from several sources, see
+   * {@link #getSources(int)}
+   */
+  public boolean isMerged() {
+    return sources != null;
+  }
+  
+  /**
+   * Returns the mask of the sources expanding to the i-th label, 1 if the
+   * expansion has a single source
+   */
+  public long getSources(int i) {
+    return sources == null ? 1L : sources[i];
+  }
+  
+  /** Returns the offset of the first label of the given type */
+  public int getStart(SKOSType type) {
+    return start[type.ordinal()];
+  }
+  
+  /** Returns the end offset (exclusive) of the labels of the given type */
+  public int getEnd(SKOSType type) {
+    return start[type.ordinal() + 1];
+  }
+  
+  /**
+   * Computes the expansion of a label through
+   * {@link SKOSEngine#expand(String, EnumSet, ExpansionSink)} of the given
+   * engine. Meant for engines without direct access to their label data.
+   * 
+   * @return the expansion, or null if no concept carries the label
+   */
+  public static SKOSExpansion expand(SKOSEngine engine, String label)
+      throws IOException {
+    return expand(engine, label, SKOSLanguages.ALL);
+  }
+  
+  /**
+   * Computes the expansion of a label restricted to the given languages
+   * through {@link SKOSEngine#expand(String, EnumSet, long, ExpansionSink)} of
+   * the given engine: only the concepts carrying the label in one of the
+   * languages are expanded.
+   * 
+   * @return the expansion, or null if no concept carries the label in these
+   *         languages
+   */
+  public static SKOSExpansion expand(SKOSEngine engine, String label,
+      long languages) throws IOException {
+    return expand(engine, label, ALL_TYPES, languages);
+  }
+  
+  /**
+   * Computes the expansion of a label to the given types, restricted to the
+   * given languages, see {@link #expand(SKOSEngine, String, long)}
+   * 
+   * @return the expansion, or null if no concept carries the label in these
+   *         languages
+   */
+  public static SKOSExpansion expand(SKOSEngine engine, String label,
+      EnumSet<SKOSType> types, long languages) throws IOException {
+    String[] conceptURIs = engine.getConcepts(label);
+    if (conceptURIs == null || conceptURIs.length == 0) {
+      return null;
+    }
+    
+    /* collects the labels of all concepts, deduplicated per type */
+    final List<Set<String>> typeLabels = new ArrayList<Set<String>>();
+    for (int i = 0; i < TYPES.length; i++) {
+      typeLabels.add(new LinkedHashSet<String>());
+    }
+    ExpansionSink sink = new ExpansionSink() {
+      @Override
+      public void add(String label, SKOSType type) {
+        typeLabels.get(type.ordinal()).add(label);
+      }
+    };
+    boolean found = false;
+    for (String conceptURI : conceptURIs) {
+      if (languages == SKOSLanguages.ALL
+          || hasLabel(engine, conceptURI, label.toLowerCase(), languages)) {
+        engine.expand(conceptURI, types, languages, sink);
+        found = true;
+      }
+    }
+    if (!found) {
+      return null;
+    }
+    
+    List<String> labels = new ArrayList<String>();
+    int[] start = new int[TYPES.length + 1];
+    for (SKOSType type : TYPES) {
+      start[type.ordinal()] = labels.size();
+      labels.addAll(typeLabels.get(type.ordinal()));
+    }
+    start[TYPES.length] = labels.size();
+    
+    return new SKOSExpansion(labels.toArray(new String[labels.size()]), start);
+  }
+  
+  /**
+   * Returns true if a concept carries a (lower-cased) label in one of the
+   * given languages
+   */
+  static boolean hasLabel(SKOSEngine engine, String conceptURI,
+      final String label, long languages) throws IOException {
+    final boolean[] found = new boolean[1];
+    engine.expand(conceptURI, LABEL_TYPES, languages, new ExpansionSink() {
+      @Override
+      public void add(String value, SKOSType type) {
+        found[0] |= value.equals(label);
+      }
+    });
+    return found[0];
+  }
+  
+  /**
+   * Passes the labels of the given types for a concept to a sink through the
+   * per-type accessors of the given engine. Meant for engines that have no
+   * cheaper way to implement
+   * {@link SKOSEngine#expand(String, EnumSet, ExpansionSink)}.
+   */
+  public static void expand(SKOSEngine engine, String conceptURI,
+      EnumSet<SKOSType> types, ExpansionSink sink) throws IOException {
+    for (SKOSType type : types) {
+      String[] values = getLabels(engine, conceptURI, type);
+      if (values != null) {
+        for (String value : values) {
+          sink.add(value, type);
+        }
+      }
+    }
+  }
+  
+  /** Returns the labels of the given type for a concept */
+  public static String[] getLabels(SKOSEngine engine, String conceptURI,
+      SKOSType type) throws IOException {
+    switch (type) {
+      case PREF:
+        return engine.getPrefLabels(conceptURI);
+      case ALT:
+        return engine.getAltLabels(conceptURI);
+      case HIDDEN:
+        return engine.getHiddenLabels(conceptURI);
+      case BROADER:
+        return engine.getBroaderLabels(conceptURI);
+      case NARROWER:
+        return engine.getNarrowerLabels(conceptURI);
+      case BROADERTRANSITIVE:
+        return engine.getBroaderTransitiveLabels(conceptURI);
+      case NARROWERTRANSITIVE:
+        return engine.getNarrowerTransitiveLabels(conceptURI);
+      case RELATED:
+        return engine.getRelatedLabels(conceptURI);
+      case PREFMALE:
+        return engine.getPrefMaleLabels(conceptURI);
+      case PREFFEMALE:
+        return engine.getPrefFemaleLabels(conceptURI);
+      case PREFNEUTER:
+        return engine.getPrefNeuterLabels(conceptURI);
+      case ALTMALE:
+        return engine.getAltMaleLabels(conceptURI);
+      case ALTFEMALE:
+        return engine.getAltFemaleLabels(conceptURI);
+      case ALTNEUTER:
+        return engine.getAltNeuterLabels(conceptURI);
+      default:
+        return null;
+    }
+  }
+}
@@ -0,0 +1,89 @@
+package at.ac.univie.mminf.luceneSKOS.skos;
+
+/**
+ * Copyright 2010 Bernhard Haslhofer 
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Maps the language tags of labels to the bits of a language mask, which
+ * selects the languages of the labels looked up and expanded by
+ * {@link SKOSEngine#getExpansion(String, long)} and
+ * {@link SKOSEngine#expand(String, java.util.EnumSet, long, ExpansionSink)}.
+ *
+ * Each tag gets its bit when it is first seen, so masks are valid for all
+ * engines of a process. Tags are compared ignoring case; labels without a
+ * language tag have the tag "". Once 63 tags are registered, the remaining
+ * tags share the last bit, so a mask selecting one of them selects all of
+ * them; each tag folded onto the last bit is logged as a warning.
+ */
+public final class SKOSLanguages {
+  
+  private static final Logger log = LoggerFactory
+      .getLogger(SKOSLanguages.class);
+  
+  /** The mask selecting all languages */
+  public static final long ALL = -1L;
+  
+  private static final int MAX_BITS = 64;
+  
+  private static final ConcurrentMap<String,Long> BITS = new ConcurrentHashMap<String,Long>();
+  
+  private SKOSLanguages() {}
+  
+  /**
+   * Returns the bit of a language tag, "" (or null) for labels without a tag
+   */
+  public static long getBit(String language) {
+    String tag = language == null ? "" : language.toLowerCase(Locale.ENGLISH);
+    Long bit = BITS.get(tag);
+    if (bit == null) {
+      synchronized (BITS) {
+        bit = BITS.get(tag);
+        if (bit == null) {
+          if (BITS.size() >= MAX_BITS) {
+            log.warn("More than {} language tags, the tag \"{}\" shares a "
+                + "language bit with other tags and cannot be selected on "
+                + "its own", MAX_BITS, tag);
+          }
+          bit = 1L << Math.min(BITS.size(), MAX_BITS - 1);
+          BITS.put(tag, bit);
+        }
+      }
+    }
+    return bit;
+  }
+  
+  /**
+   * Returns the mask selecting the given language tags, {@link #ALL} if there
+   * are none
+   */
+  public static long getMask(String... languages) {
+    if (languages == null || languages.length == 0) {
+      return ALL;
+    }
+    long mask = 0;
+    for (String language : languages) {
+      mask |= getBit(language);
+    }
+    return mask;
+  }
+}
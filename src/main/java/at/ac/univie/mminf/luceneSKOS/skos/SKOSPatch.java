@@ -0,0 +1,163 @@
+package at.ac.univie.mminf.luceneSKOS.skos;
+
+/**
+ * Copyright 2010 Bernhard Haslhofer 
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.riot.RiotException;
+import org.apache.jena.riot.system.StreamRDF;
+
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.sparql.core.Quad;
+
+/**
+ * A change to a SKOS vocabulary: an ordered list of triples to be added or
+ * deleted.
+ *
+ * Patches are read from a line based format modelled on RDF Patch: each line
+ * holds an operation, A (add) or D (delete), followed by a triple in
+ * N-Triples syntax. Empty lines and lines starting with # are ignored.
+ *
+ * <pre>
+ * D &lt;http://example.org/c1&gt; &lt;http://www.w3.org/2004/02/skos/core#altLabel&gt; "Arms"@en .
+ * A &lt;http://example.org/c1&gt; &lt;http://www.w3.org/2004/02/skos/core#altLabel&gt; "Weaponry"@en .
+ * </pre>
+ */
+public final class SKOSPatch {
+  
+  private final boolean[] additions;
+  
+  private final Triple[] triples;
+  
+  private SKOSPatch(boolean[] additions, Triple[] triples) {
+    this.additions = additions;
+    this.triples = triples;
+  }
+  
+  /** Returns the number of operations */
+  public int size() {
+    return triples.length;
+  }
+  
+  /** Returns true if the i-th operation adds its triple, false if it deletes */
+  public boolean isAddition(int i) {
+    return additions[i];
+  }
+  
+  public Triple getTriple(int i) {
+    return triples[i];
+  }
+  
+  public static SKOSPatch read(File file) throws IOException {
+    InputStream in = new FileInputStream(file);
+    try {
+      return read(in);
+    } finally {
+      in.close();
+    }
+  }
+  
+  /**
+   * Reads a patch from a UTF-8 encoded stream. The stream is not closed.
+   * 
+   * @throws IOException
+   *           if the patch is malformed
+   */
+  public static SKOSPatch read(InputStream in) throws IOException {
+    BufferedReader reader = new BufferedReader(new InputStreamReader(in,
+        "UTF-8"));
+    List<Boolean> operations = new ArrayList<Boolean>();
+    StringBuilder ntriples = new StringBuilder();
+    
+    String line;
+    int lineNumber = 0;
+    while ((line = reader.readLine()) != null) {
+      lineNumber++;
+      line = line.trim();
+      if (line.length() == 0 || line.startsWith("#")) {
+        /* keeps the line numbers of parse errors */
+        ntriples.append('\n');
+        continue;
+      }
+      if (line.length() < 2 || !Character.isWhitespace(line.charAt(1))) {
+        throw new IOException("Invalid patch operation in line " + lineNumber);
+      }
+      switch (line.charAt(0)) {
+        case 'A':
+          operations.add(Boolean.TRUE);
+          break;
+        case 'D':
+          operations.add(Boolean.FALSE);
+          break;
+        default:
+          throw new IOException("Invalid patch operation in line "
+              + lineNumber);
+      }
+      ntriples.append(line.substring(2)).append('\n');
+    }
+    
+    /* one triple per operation, in the order of the operations */
+    final List<Triple> triples = new ArrayList<Triple>();
+    try {
+      RDFDataMgr.parse(new StreamRDF() {
+        @Override
+        public void triple(Triple triple) {
+          triples.add(triple);
+        }
+        
+        @Override
+        public void quad(Quad quad) {
+          triples.add(quad.asTriple());
+        }
+        
+        @Override
+        public void start() {}
+        
+        @Override
+        public void base(String base) {}
+        
+        @Override
+        public void prefix(String prefix, String iri) {}
+        
+        @Override
+        public void finish() {}
+      }, new ByteArrayInputStream(ntriples.toString().getBytes("UTF-8")),
+          Lang.NTRIPLES);
+    } catch (RiotException e) {
+      throw new IOException("Invalid triple in patch: " + e.getMessage(), e);
+    }
+    if (triples.size() != operations.size()) {
+      throw new IOException("Expected one triple per patch operation");
+    }
+    
+    boolean[] additions = new boolean[operations.size()];
+    for (int i = 0; i < additions.length; i++) {
+      additions[i] = operations.get(i);
+    }
+    return new SKOSPatch(additions, triples.toArray(new Triple[triples.size()]));
+  }
+}
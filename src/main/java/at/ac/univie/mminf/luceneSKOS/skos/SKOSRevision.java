@@ -0,0 +1,47 @@
+package at.ac.univie.mminf.luceneSKOS.skos;
+
+/**
+ * Copyright 2010 Bernhard Haslhofer 
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+
+import at.ac.univie.mminf.luceneSKOS.analysis.AnalyzedLabels;
+
+/**
+ * A version of a vocabulary pinned by a reader, see
+ * {@link VersionedSKOSEngine#acquire()}
+ */
+public interface SKOSRevision {
+  
+  /** Returns the engine serving this version of the vocabulary */
+  SKOSEngine getEngine();
+  
+  /**
+   * Returns the labels of this revision analyzed by a StandardAnalyzer of the
+   * vocabulary's match version, which were analyzed when the revision was
+   * built; null if they were not
+   * 
+   * @throws IOException
+   */
+  AnalyzedLabels getAnalyzedLabels() throws IOException;
+  
+  /**
+   * Unpins the revision; its engine must not be used afterwards
+   * 
+   * @throws IOException
+   */
+  void release() throws IOException;
+}
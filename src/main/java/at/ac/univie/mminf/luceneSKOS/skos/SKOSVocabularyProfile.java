@@ -0,0 +1,341 @@
+package at.ac.univie.mminf.luceneSKOS.skos;
+
+/**
+ * Copyright 2010 Bernhard Haslhofer 
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+import at.ac.univie.mminf.luceneSKOS.analysis.tokenattributes.SKOSTypeAttribute.SKOSType;
+
+/**
+ * Statistics of a vocabulary computed when an engine is built: the number of
+ * concepts, the number of values per SKOSType and of labels per language, the
+ * length of the labels in tokens and the shape of the broader/narrower
+ * hierarchy.
+ *
+ * Label lengths are counted in tokens split at spaces, the way the label
+ * filters join the tokens they look up, so {@link #getMaxLabelTokens()} is the
+ * smallest token window that still matches every label.
+ *
+ * Profiles are persisted with the data of an engine as a map of strings, see
+ * {@link #toMap()}. Instances are immutable.
+ */
+public final class SKOSVocabularyProfile {
+  
+  /** The prefix of the keys of {@link #toMap()} */
+  public static final String KEY_PREFIX = "skos.profile.";
+  
+  private final int numConcepts;
+  
+  /* the number of values by SKOSType ordinal */
+  private final int[] counts;
+  
+  private final Map<String,Integer> languageCounts;
+  
+  /* the number of distinct labels by their number of tokens */
+  private final int[] labelTokens;
+  
+  private final int numLabels;
+  
+  private final int hierarchyDepth;
+  
+  private final int maxFanOut;
+  
+  private final double averageFanOut;
+  
+  private SKOSVocabularyProfile(int numConcepts, int[] counts,
+      Map<String,Integer> languageCounts, int[] labelTokens,
+      int hierarchyDepth, int maxFanOut, double averageFanOut) {
+    this.numConcepts = numConcepts;
+    this.counts = counts;
+    this.languageCounts = Collections.unmodifiableMap(languageCounts);
+    this.labelTokens = labelTokens;
+    int n = 0;
+    for (int count : labelTokens) {
+      n += count;
+    }
+    this.numLabels = n;
+    this.hierarchyDepth = hierarchyDepth;
+    this.maxFanOut = maxFanOut;
+    this.averageFanOut = averageFanOut;
+  }
+  
+  /** Returns the number of concepts */
+  public int getNumConcepts() {
+    return numConcepts;
+  }
+  
+  /**
+   * Returns the number of labels of a label type, or of relations of a
+   * relation type (including the inferred ones)
+   */
+  public int getCount(SKOSType type) {
+    return counts[type.ordinal()];
+  }
+  
+  /**
+   * Returns the number of labels (of all label types) by language tag; labels
+   * without a language tag are counted under ""
+   */
+  public Map<String,Integer> getLanguageCounts() {
+    return languageCounts;
+  }
+  
+  /** Returns the number of distinct labels */
+  public int getNumLabels() {
+    return numLabels;
+  }
+  
+  /** Returns the number of tokens of the longest label, 0 if there is none */
+  public int getMaxLabelTokens() {
+    return labelTokens.length == 0 ? 0 : labelTokens.length - 1;
+  }
+  
+  /**
+   * Returns the smallest number of tokens that the given percentage of the
+   * distinct labels does not exceed
+   * 
+   * @param percent
+   *          between 0 and 100
+   */
+  public int getLabelTokensPercentile(double percent) {
+    if (percent < 0 || percent > 100) {
+      throw new IllegalArgumentException("Invalid percentile " + percent);
+    }
+    long needed = (long) Math.ceil(numLabels * percent / 100);
+    long seen = 0;
+    for (int tokens = 0; tokens < labelTokens.length; tokens++) {
+      seen += labelTokens[tokens];
+      if (seen >= needed) {
+        return tokens;
+      }
+    }
+    return getMaxLabelTokens();
+  }
+  
+  /**
+   * Returns the number of concepts on the longest broader chain, 0 for a
+   * vocabulary without concepts. Concepts on broader cycles are not counted.
+   */
+  public int getHierarchyDepth() {
+    return hierarchyDepth;
+  }
+  
+  /** Returns the largest number of narrower concepts of a concept */
+  public int getMaxFanOut() {
+    return maxFanOut;
+  }
+  
+  /**
+   * Returns the average number of narrower concepts of the concepts that have
+   * any
+   */
+  public double getAverageFanOut() {
+    return averageFanOut;
+  }
+  
+  /**
+   * Returns the profile as a map of strings, e.g. to be stored in the commit
+   * data of an index. All keys start with {@link #KEY_PREFIX}.
+   */
+  public Map<String,String> toMap() {
+    Map<String,String> map = new TreeMap<String,String>();
+    map.put(KEY_PREFIX + "concepts", Integer.toString(numConcepts));
+    for (SKOSType type : SKOSType.values()) {
+      map.put(KEY_PREFIX + "count." + type, Integer.toString(getCount(type)));
+    }
+    for (Map.Entry<String,Integer> entry : languageCounts.entrySet()) {
+      map.put(KEY_PREFIX + "language." + entry.getKey(),
+          entry.getValue().toString());
+    }
+    StringBuilder tokens = new StringBuilder();
+    for (int count : labelTokens) {
+      if (tokens.length() > 0) {
+        tokens.append(',');
+      }
+      tokens.append(count);
+    }
+    map.put(KEY_PREFIX + "labelTokens", tokens.toString());
+    map.put(KEY_PREFIX + "hierarchyDepth", Integer.toString(hierarchyDepth));
+    map.put(KEY_PREFIX + "maxFanOut", Integer.toString(maxFanOut));
+    map.put(KEY_PREFIX + "averageFanOut", Double.toString(averageFanOut));
+    return map;
+  }
+  
+  /**
+   * Restores a profile from the map returned by {@link #toMap()}. Keys without
+   * {@link #KEY_PREFIX} are ignored.
+   * 
+   * @return the profile, or null if the map holds none
+   */
+  public static SKOSVocabularyProfile fromMap(Map<String,String> map) {
+    String concepts = map.get(KEY_PREFIX + "concepts");
+    if (concepts == null) {
+      return null;
+    }
+    
+    int[] counts = new int[SKOSType.values().length];
+    for (SKOSType type : SKOSType.values()) {
+      String count = map.get(KEY_PREFIX + "count." + type);
+      counts[type.ordinal()] = count == null ? 0 : Integer.parseInt(count);
+    }
+    
+    String languagePrefix = KEY_PREFIX + "language.";
+    Map<String,Integer> languageCounts = new TreeMap<String,Integer>();
+    for (Map.Entry<String,String> entry : map.entrySet()) {
+      if (entry.getKey().startsWith(languagePrefix)) {
+        languageCounts.put(entry.getKey().substring(languagePrefix.length()),
+            Integer.valueOf(entry.getValue()));
+      }
+    }
+    
+    String tokens = map.get(KEY_PREFIX + "labelTokens");
+    int[] labelTokens = new int[0];
+    if (tokens != null && tokens.length() > 0) {
+      String[] split = tokens.split(",");
+      labelTokens = new int[split.length];
+      for (int i = 0; i < split.length; i++) {
+        labelTokens[i] = Integer.parseInt(split[i]);
+      }
+    }
+    
+    return new SKOSVocabularyProfile(Integer.parseInt(concepts), counts,
+        languageCounts, labelTokens, Integer.parseInt(map.get(KEY_PREFIX
+            + "hierarchyDepth")), Integer.parseInt(map.get(KEY_PREFIX
+            + "maxFanOut")), Double.parseDouble(map.get(KEY_PREFIX
+            + "averageFanOut")));
+  }
+  
+  @Override
+  public String toString() {
+    return "concepts=" + numConcepts + ", labels=" + numLabels
+        + ", languages=" + languageCounts + ", maxLabelTokens="
+        + getMaxLabelTokens() + ", hierarchyDepth=" + hierarchyDepth
+        + ", maxFanOut=" + maxFanOut;
+  }
+  
+  /**
+   * Collects the statistics of a vocabulary and compiles them into a
+   * {@link SKOSVocabularyProfile}
+   */
+  public static final class Builder {
+    
+    private int numConcepts;
+    
+    private final int[] counts = new int[SKOSType.values().length];
+    
+    private final Map<String,Integer> languageCounts = new TreeMap<String,Integer>();
+    
+    private int[] labelTokens = new int[8];
+    
+    private int maxLabelTokens = -1;
+    
+    private int hierarchyDepth;
+    
+    private int maxFanOut;
+    
+    private double averageFanOut;
+    
+    public void setNumConcepts(int numConcepts) {
+      this.numConcepts = numConcepts;
+    }
+    
+    /** Adds to the number of values of a SKOSType */
+    public void addCount(SKOSType type, int count) {
+      counts[type.ordinal()] += count;
+    }
+    
+    /** Adds to the number of labels of a language tag ("" for none) */
+    public void addLanguageCount(String language, int count) {
+      Integer n = languageCounts.get(language);
+      languageCounts.put(language, n == null ? count : n + count);
+    }
+    
+    /** Adds a distinct (lower-cased) label */
+    public void addLabel(String label) {
+      int tokens = 0;
+      boolean inToken = false;
+      for (int i = 0; i < label.length(); i++) {
+        boolean space = label.charAt(i) == ' ';
+        if (!space && !inToken) {
+          tokens++;
+        }
+        inToken = !space;
+      }
+      if (tokens >= labelTokens.length) {
+        labelTokens = Arrays.copyOf(labelTokens, Math.max(tokens + 1,
+            2 * labelTokens.length));
+      }
+      labelTokens[tokens]++;
+      maxLabelTokens = Math.max(maxLabelTokens, tokens);
+    }
+    
+    public void setHierarchyDepth(int hierarchyDepth) {
+      this.hierarchyDepth = hierarchyDepth;
+    }
+    
+    public void setFanOut(int maxFanOut, double averageFanOut) {
+      this.maxFanOut = maxFanOut;
+      this.averageFanOut = averageFanOut;
+    }
+    
+    /**
+     * Adds the statistics of another vocabulary, e.g. to profile several
+     * vocabularies served by one engine. Labels shared by the vocabularies
+     * are counted once per vocabulary.
+     */
+    public void add(SKOSVocabularyProfile profile) {
+      int narrower = SKOSType.NARROWER.ordinal();
+      double parents = parents(counts[narrower], averageFanOut)
+          + parents(profile.counts[narrower], profile.averageFanOut);
+      
+      numConcepts += profile.numConcepts;
+      for (int t = 0; t < counts.length; t++) {
+        counts[t] += profile.counts[t];
+      }
+      for (Map.Entry<String,Integer> entry : profile.languageCounts.entrySet()) {
+        addLanguageCount(entry.getKey(), entry.getValue());
+      }
+      if (profile.labelTokens.length > labelTokens.length) {
+        labelTokens = Arrays.copyOf(labelTokens, profile.labelTokens.length);
+      }
+      for (int tokens = 0; tokens < profile.labelTokens.length; tokens++) {
+        labelTokens[tokens] += profile.labelTokens[tokens];
+      }
+      maxLabelTokens = Math.max(maxLabelTokens,
+          profile.labelTokens.length - 1);
+      
+      hierarchyDepth = Math.max(hierarchyDepth, profile.hierarchyDepth);
+      maxFanOut = Math.max(maxFanOut, profile.maxFanOut);
+      averageFanOut = parents == 0 ? 0 : counts[narrower] / parents;
+    }
+    
+    /* the number of concepts with narrower concepts */
+    private static double parents(int narrower, double averageFanOut) {
+      return averageFanOut == 0 ? 0 : narrower / averageFanOut;
+    }
+    
+    public SKOSVocabularyProfile build() {
+      return new SKOSVocabularyProfile(numConcepts, counts.clone(),
+          new TreeMap<String,Integer>(languageCounts), Arrays.copyOf(
+              labelTokens, maxLabelTokens + 1), hierarchyDepth, maxFanOut,
+          averageFanOut);
+    }
+  }
+}
@@ -0,0 +1,48 @@
+package at.ac.univie.mminf.luceneSKOS.skos;
+
+/**
+ * Copyright 2010 Bernhard Haslhofer 
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+
+/**
+ * A SKOSEngine whose vocabulary may change while it is in use (e.g. by a
+ * reload). Readers that make several lookups, such as a TokenFilter for the
+ * lifetime of a token stream, pin the current version and look it up
+ * directly instead of going through this engine for every lookup.
+ */
+public interface VersionedSKOSEngine extends SKOSEngine {
+  
+  /**
+   * Pins the current version of the vocabulary. The revision must be released
+   * when done.
+   * 
+   * @return SKOSRevision
+   * @throws IOException
+   */
+  SKOSRevision acquire() throws IOException;
+  
+  /**
+   * Returns the version of the current revision, publishing a newer revision
+   * first where {@link #acquire()} would. Versions differ between the
+   * revisions of an engine; unlike acquire() this pins nothing, so a reader
+   * can cheaply check whether the vocabulary changed.
+   * 
+   * @return the version of the revision acquire() would pin
+   * @throws IOException
+   */
+  long getVersion() throws IOException;
+}
@@ -0,0 +1,144 @@
+package at.ac.univie.mminf.luceneSKOS.skos.impl;
+
+/**
+ * Copyright 2010 Bernhard Haslhofer 
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileLock;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An exclusive lock on building an index or snapshot under skosdata, held
+ * across threads (by a per-target lock) and processes (by a lock file next to
+ * the target).
+ *
+ * Builders write into {@link #getTempFile()} and {@link #publish(File)} the
+ * result, so that the target never holds a partial build. A builder that had
+ * to wait should check the target again: it was most likely built meanwhile.
+ */
+final class BuildLock {
+  
+  private static final Logger log = LoggerFactory
+      .getLogger(BuildLock.class);
+  
+  /* FileChannel locks are held by the whole JVM, so threads lock here first */
+  private static final Map<String,ReentrantLock> localLocks = new HashMap<String,ReentrantLock>();
+  
+  private final File target;
+  
+  private final ReentrantLock localLock;
+  
+  private final RandomAccessFile lockFile;
+  
+  private final FileLock fileLock;
+  
+  private BuildLock(File target, ReentrantLock localLock,
+      RandomAccessFile lockFile, FileLock fileLock) {
+    this.target = target;
+    this.localLock = localLock;
+    this.lockFile = lockFile;
+    this.fileLock = fileLock;
+  }
+  
+  /**
+   * Obtains the build lock of the given index directory or snapshot file,
+   * waiting for a concurrent build to finish
+   */
+  static BuildLock obtain(File target) throws IOException {
+    target = target.getCanonicalFile();
+    File parent = target.getParentFile();
+    if (!parent.isDirectory() && !parent.mkdirs()) {
+      throw new IOException("Could not create directory " + parent);
+    }
+    
+    ReentrantLock localLock;
+    synchronized (localLocks) {
+      localLock = localLocks.get(target.getPath());
+      if (localLock == null) {
+        localLock = new ReentrantLock();
+        localLocks.put(target.getPath(), localLock);
+      }
+    }
+    
+    if (!localLock.tryLock()) {
+      log.info("Waiting for concurrent build of {}", target);
+      localLock.lock();
+    }
+    
+    RandomAccessFile lockFile = null;
+    try {
+      lockFile = new RandomAccessFile(new File(parent, target.getName()
+          + ".lock"), "rw");
+      FileLock fileLock = lockFile.getChannel().tryLock();
+      if (fileLock == null) {
+        log.info("Waiting for concurrent build of {}", target);
+        fileLock = lockFile.getChannel().lock();
+      }
+      return new BuildLock(target, localLock, lockFile, fileLock);
+    } catch (IOException e) {
+      if (lockFile != null) {
+        lockFile.close();
+      }
+      localLock.unlock();
+      throw e;
+    }
+  }
+  
+  /**
+   * Returns an empty location to build into, next to the target
+   */
+  File getTempFile() {
+    File tmp = new File(target.getParentFile(), target.getName() + ".tmp");
+    /* left over by a build that was killed */
+    FileUtils.deleteQuietly(tmp);
+    return tmp;
+  }
+  
+  /**
+   * Moves a finished build into place, replacing the previous one
+   */
+  void publish(File build) throws IOException {
+    File old = new File(target.getParentFile(), target.getName() + ".old");
+    FileUtils.deleteQuietly(old);
+    
+    if (target.exists() && !target.renameTo(old)) {
+      throw new IOException("Could not replace " + target);
+    }
+    if (!build.renameTo(target)) {
+      throw new IOException("Could not rename " + build + " to " + target);
+    }
+    
+    /* may fail while readers of the old build are open, e.g. on Windows */
+    FileUtils.deleteQuietly(old);
+  }
+  
+  void release() throws IOException {
+    try {
+      fileLock.release();
+      lockFile.close();
+    } finally {
+      localLock.unlock();
+    }
+  }
+}
@@ -0,0 +1,260 @@
+package at.ac.univie.mminf.luceneSKOS.skos.impl;
+
+/**
+ * Copyright 2010 Bernhard Haslhofer 
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+import at.ac.univie.mminf.luceneSKOS.analysis.tokenattributes.SKOSTypeAttribute.SKOSType;
+
+/**
+ * An immutable, array-backed representation of a SKOS vocabulary.
+ * 
+ * Concepts are identified by dense int ids (their position in the sorted array
+ * of concept URIs) and labels by their position in the sorted label pool. For
+ * every SKOSType the values of a concept are kept in CSR layout: label ids for
+ * the label types, concept ids for the relation types. The values of concept c
+ * for type t are values[t][start[t][c]] .. values[t][start[t][c + 1] - 1].
+ * 
+ * The label values carry the id of their language tag in a parallel array;
+ * a label held in several languages is a value per language.
+ * 
+ * The broaderTransitive relations authored in the vocabulary (and the inverse
+ * of the authored narrowerTransitive ones) are kept apart from their closure,
+ * so that the graph can be rebuilt from itself.
+ * 
+ * The arrays are held as IntBuffers and the URIs and labels as
+ * {@link StringPool}s, so that a graph read from a snapshot is served from
+ * the mapping rather than copied onto the heap.
+ */
+public final class ConceptGraph {
+  
+  /** The SKOSTypes that hold lexical labels */
+  public static final SKOSType[] LABEL_TYPES = new SKOSType[] {SKOSType.PREF,
+      SKOSType.ALT, SKOSType.HIDDEN, SKOSType.PREFMALE, SKOSType.PREFFEMALE,
+      SKOSType.PREFNEUTER, SKOSType.ALTMALE, SKOSType.ALTFEMALE,
+      SKOSType.ALTNEUTER};
+  
+  /** The SKOSTypes that hold relations to other concepts */
+  public static final SKOSType[] RELATION_TYPES = new SKOSType[] {
+      SKOSType.BROADER, SKOSType.NARROWER, SKOSType.BROADERTRANSITIVE,
+      SKOSType.NARROWERTRANSITIVE, SKOSType.RELATED};
+  
+  /**
+   * The label types returned for the concepts reached through a relation
+   * (prefLabel + altLabel and the EHRI extension, but no hiddenLabel)
+   */
+  public static final SKOSType[] EXPANSION_LABEL_TYPES = new SKOSType[] {
+      SKOSType.PREF, SKOSType.ALT, SKOSType.PREFMALE, SKOSType.PREFFEMALE,
+      SKOSType.PREFNEUTER, SKOSType.ALTMALE, SKOSType.ALTFEMALE,
+      SKOSType.ALTNEUTER};
+  
+  /** Returns true if the given type holds relations to other concepts */
+  public static boolean isRelationType(SKOSType type) {
+    return Arrays.asList(RELATION_TYPES).contains(type);
+  }
+  
+  /** The concept URIs, sorted; the index is the concept id */
+  final StringPool uris;
+  
+  /** The (lower-cased) labels, sorted; the index is the label id */
+  final StringPool labels;
+  
+  /** Per SKOSType offsets into values, numConcepts + 1 entries each */
+  final IntBuffer[] start;
+  
+  /** Per SKOSType label ids or concept ids */
+  final IntBuffer[] values;
+  
+  /** Offsets into labelConcepts, numLabels + 1 entries */
+  final IntBuffer labelConceptStart;
+  
+  /** The ids of the concepts carrying a label, sorted per label */
+  final IntBuffer labelConcepts;
+  
+  /**
+   * The language tags of the labels, sorted; the index is the language id.
+   * Labels without a language tag have the tag "".
+   */
+  final String[] languages;
+  
+  /**
+   * Per SKOSType the language ids of the values, parallel to values; empty
+   * for the relation types
+   */
+  final IntBuffer[] valueLanguages;
+  
+  /** Offsets into authoredValues, numConcepts + 1 entries */
+  final IntBuffer authoredStart;
+  
+  /** The concept ids of the authored broaderTransitive relations */
+  final IntBuffer authoredValues;
+  
+  ConceptGraph(String[] uris, String[] labels, int[][] start, int[][] values,
+      int[] labelConceptStart, int[] labelConcepts, String[] languages,
+      int[][] valueLanguages, int[] authoredStart, int[] authoredValues) {
+    this(new StringPool(uris), new StringPool(labels), wrap(start),
+        wrap(values), IntBuffer.wrap(labelConceptStart), IntBuffer
+            .wrap(labelConcepts), languages, wrap(valueLanguages), IntBuffer
+            .wrap(authoredStart), IntBuffer.wrap(authoredValues));
+  }
+  
+  /**
+   * The buffers are shared by all readers and only read by absolute index;
+   * their capacity is their length.
+   */
+  ConceptGraph(StringPool uris, StringPool labels, IntBuffer[] start,
+      IntBuffer[] values, IntBuffer labelConceptStart,
+      IntBuffer labelConcepts, String[] languages, IntBuffer[] valueLanguages,
+      IntBuffer authoredStart, IntBuffer authoredValues) {
+    this.uris = uris;
+    this.labels = labels;
+    this.start = start;
+    this.values = values;
+    this.labelConceptStart = labelConceptStart;
+    this.labelConcepts = labelConcepts;
+    this.languages = languages;
+    this.valueLanguages = valueLanguages;
+    this.authoredStart = authoredStart;
+    this.authoredValues = authoredValues;
+  }
+  
+  private static IntBuffer[] wrap(int[][] arrays) {
+    IntBuffer[] buffers = new IntBuffer[arrays.length];
+    for (int i = 0; i < arrays.length; i++) {
+      buffers[i] = IntBuffer.wrap(arrays[i]);
+    }
+    return buffers;
+  }
+  
+  /** Returns the number of concepts */
+  public int getNumConcepts() {
+    return uris.size();
+  }
+  
+  /** Returns the number of distinct labels */
+  public int getNumLabels() {
+    return labels.size();
+  }
+  
+  /**
+   * Returns the id of the given concept URI, or -1 if the concept is unknown
+   */
+  public int getConceptId(String uri) {
+    return uris.indexOf(uri);
+  }
+  
+  public String getURI(int concept) {
+    return uris.get(concept);
+  }
+  
+  /**
+   * Returns the id of the given (lower-cased) label, or -1 if no concept
+   * carries it
+   */
+  public int getLabelId(String label) {
+    return labels.indexOf(label);
+  }
+  
+  public String getLabel(int label) {
+    return labels.get(label);
+  }
+  
+  /** Returns the first offset of the given concept's values for a type */
+  public int getStart(SKOSType type, int concept) {
+    return start[type.ordinal()].get(concept);
+  }
+  
+  /** Returns the end offset (exclusive) of the given concept's values */
+  public int getEnd(SKOSType type, int concept) {
+    return start[type.ordinal()].get(concept + 1);
+  }
+  
+  /** Returns the number of values stored for a type */
+  public int getNumValues(SKOSType type) {
+    return values[type.ordinal()].capacity();
+  }
+  
+  /** Returns the label or concept id at the given offset of a type */
+  public int getValue(SKOSType type, int i) {
+    return values[type.ordinal()].get(i);
+  }
+  
+  /**
+   * Returns the language id of the label at the given offset of a label type,
+   * 0 for the relation types
+   */
+  public int getValueLanguage(SKOSType type, int i) {
+    IntBuffer languages = valueLanguages[type.ordinal()];
+    return languages.capacity() == 0 ? 0 : languages.get(i);
+  }
+  
+  /** Returns the first offset of the concepts carrying a label */
+  public int getLabelConceptsStart(int label) {
+    return labelConceptStart.get(label);
+  }
+  
+  /** Returns the end offset (exclusive) of the concepts carrying a label */
+  public int getLabelConceptsEnd(int label) {
+    return labelConceptStart.get(label + 1);
+  }
+  
+  /** Returns the concept id at the given offset of the label concepts */
+  public int getLabelConcept(int i) {
+    return labelConcepts.get(i);
+  }
+  
+  /** Returns the number of distinct language tags of the labels */
+  public int getNumLanguages() {
+    return languages.length;
+  }
+  
+  /** Returns the language tag of a language id, "" for no language */
+  public String getLanguage(int language) {
+    return languages[language];
+  }
+  
+  /**
+   * Returns the first offset of the given concept's authored broaderTransitive
+   * relations
+   */
+  public int getAuthoredTransitiveStart(int concept) {
+    return authoredStart.get(concept);
+  }
+  
+  /**
+   * Returns the end offset (exclusive) of the given concept's authored
+   * broaderTransitive relations
+   */
+  public int getAuthoredTransitiveEnd(int concept) {
+    return authoredStart.get(concept + 1);
+  }
+  
+  /**
+   * Returns the concept id at the given offset of the authored
+   * broaderTransitive relations, as opposed to their closure in
+   * {@link #getValue(SKOSType, int)}
+   */
+  public int getAuthoredTransitive(int i) {
+    return authoredValues.get(i);
+  }
+  
+  /** Returns the number of authored broaderTransitive relations */
+  public int getNumAuthoredTransitive() {
+    return authoredValues.capacity();
+  }
+}
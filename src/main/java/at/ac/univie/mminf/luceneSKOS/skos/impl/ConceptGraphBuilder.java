@@ -0,0 +1,729 @@
+package at.ac.univie.mminf.luceneSKOS.skos.impl;
+
+/**
+ * Copyright 2010 Bernhard Haslhofer 
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import at.ac.univie.mminf.luceneSKOS.analysis.tokenattributes.SKOSTypeAttribute.SKOSType;
+
+/**
+ * Collects concepts, labels and relations and compiles them into a
+ * {@link ConceptGraph}.
+ * 
+ * Ids are handed out in arrival order while collecting and are remapped to
+ * the sorted order of URIs and labels when the graph is built. The order in
+ * which the values of a concept were added is preserved.
+ * 
+ * Data may arrive in any order (e.g. streamed from an RDF parser): relations
+ * are kept only for resources that turn out to be concepts, i.e. were
+ * registered by {@link #addConcept(String)} or carry a label.
+ * 
+ * Building the graph completes the relations authored in the vocabulary:
+ * broader and narrower (and their transitive variants) are inverses of each
+ * other and related is symmetric, so each pair is also added in the other
+ * direction. Duplicate relations are removed. The transitive relations are
+ * completed to the full closure of broader.
+ */
+public class ConceptGraphBuilder {
+  
+  private static final Logger log = LoggerFactory
+      .getLogger(ConceptGraphBuilder.class);
+  
+  private final Map<String,Integer> conceptIds = new HashMap<String,Integer>();
+  
+  private final List<String> uris = new ArrayList<String>();
+  
+  /* the resources known to be concepts, by temporary id */
+  private final BitSet concepts = new BitSet();
+  
+  private final Map<String,Integer> labelIds = new HashMap<String,Integer>();
+  
+  private final List<String> labels = new ArrayList<String>();
+  
+  /* per SKOSType (concept, value) pairs, stored flat */
+  private final int[][] pairs = new int[SKOSType.values().length][];
+  
+  private final int[] numPairs = new int[SKOSType.values().length];
+  
+  private final Map<String,Integer> languageIds = new HashMap<String,Integer>();
+  
+  private final List<String> languages = new ArrayList<String>();
+  
+  /* per label type the language ids of the pairs, parallel to pairs */
+  private final int[][] pairLanguages = new int[SKOSType.values().length][];
+  
+  /* the removed (type, concept, target) relation pairs, see key() */
+  private final Set<Long> removed = new HashSet<Long>();
+  
+  /* the language ids of the removed labels, by (type, concept, label) key */
+  private final Map<Long,Set<Integer>> removedLabels = new HashMap<Long,Set<Integer>>();
+  
+  /** The number of threads computing the transitive closure */
+  private static final int CLOSURE_THREADS = Integer.getInteger(
+      "skos.buildThreads", Runtime.getRuntime().availableProcessors());
+  
+  /* the number of concepts whose ancestors are collected at a time */
+  private static final int CLOSURE_CHUNK = 1024;
+  
+  private static final ThreadPoolExecutor executor = new ThreadPoolExecutor(
+      CLOSURE_THREADS, CLOSURE_THREADS, 60, TimeUnit.SECONDS,
+      new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+        private final AtomicInteger count = new AtomicInteger();
+        
+        @Override
+        public Thread newThread(Runnable runnable) {
+          Thread thread = new Thread(runnable, "skos-closure-"
+              + count.incrementAndGet());
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+  
+  static {
+    executor.allowCoreThreadTimeOut(true);
+  }
+  
+  /* the inverse of each relation type, by ordinal */
+  private static final SKOSType[] INVERSES = new SKOSType[SKOSType.values().length];
+  
+  static {
+    INVERSES[SKOSType.BROADER.ordinal()] = SKOSType.NARROWER;
+    INVERSES[SKOSType.NARROWER.ordinal()] = SKOSType.BROADER;
+    INVERSES[SKOSType.BROADERTRANSITIVE.ordinal()] = SKOSType.NARROWERTRANSITIVE;
+    INVERSES[SKOSType.NARROWERTRANSITIVE.ordinal()] = SKOSType.BROADERTRANSITIVE;
+    INVERSES[SKOSType.RELATED.ordinal()] = SKOSType.RELATED;
+  }
+  
+  public ConceptGraphBuilder() {}
+  
+  /**
+   * Creates a builder holding the concepts, labels and authored relations of
+   * a built graph, e.g. to apply changes to it without parsing the vocabulary
+   * again. The transitive relations are recomputed from broader and the
+   * authored transitive relations when the new graph is built.
+   */
+  public ConceptGraphBuilder(ConceptGraph graph) {
+    /* ids are handed out in order, so the graph's ids can be used as is */
+    for (int c = 0; c < graph.getNumConcepts(); c++) {
+      addResource(graph.getURI(c));
+    }
+    for (int l = 0; l < graph.getNumLabels(); l++) {
+      String label = graph.getLabel(l);
+      labelIds.put(label, l);
+      labels.add(label);
+    }
+    for (int l = 0; l < graph.getNumLanguages(); l++) {
+      addLanguage(graph.getLanguage(l));
+    }
+    
+    List<SKOSType> seeded = new ArrayList<SKOSType>(
+        Arrays.asList(ConceptGraph.LABEL_TYPES));
+    seeded.add(SKOSType.BROADER);
+    seeded.add(SKOSType.NARROWER);
+    seeded.add(SKOSType.RELATED);
+    for (SKOSType type : seeded) {
+      for (int c = 0; c < graph.getNumConcepts(); c++) {
+        for (int i = graph.getStart(type, c); i < graph.getEnd(type, c); i++) {
+          /* only concepts have values */
+          concepts.set(c);
+          addPair(type, c, graph.getValue(type, i), graph.getValueLanguage(
+              type, i));
+        }
+      }
+    }
+    
+    /* the authored transitive relations, not their closure */
+    for (int c = 0; c < graph.getNumConcepts(); c++) {
+      for (int i = graph.getAuthoredTransitiveStart(c); i < graph
+          .getAuthoredTransitiveEnd(c); i++) {
+        concepts.set(c);
+        addPair(SKOSType.BROADERTRANSITIVE, c, graph.getAuthoredTransitive(i),
+            0);
+      }
+    }
+  }
+  
+  /**
+   * Registers a concept and returns its (temporary) id
+   */
+  public int addConcept(String uri) {
+    int id = addResource(uri);
+    concepts.set(id);
+    return id;
+  }
+  
+  /**
+   * Registers a resource that is not known to be a concept (yet)
+   */
+  private int addResource(String uri) {
+    Integer id = conceptIds.get(uri);
+    if (id == null) {
+      id = uris.size();
+      conceptIds.put(uri, id);
+      uris.add(uri);
+    }
+    return id;
+  }
+  
+  private int addLanguage(String language) {
+    Integer id = languageIds.get(language);
+    if (id == null) {
+      id = languages.size();
+      languageIds.put(language, id);
+      languages.add(language);
+    }
+    return id;
+  }
+  
+  /**
+   * Adds a label without language tag of the given label type to a concept.
+   * Labels are expected to be lower-cased already.
+   */
+  public void addLabel(String conceptURI, SKOSType type, String label) {
+    addLabel(conceptURI, type, label, "");
+  }
+  
+  /**
+   * Adds a label of the given label type and language ("" for none) to a
+   * concept. Labels are expected to be lower-cased already.
+   */
+  public void addLabel(String conceptURI, SKOSType type, String label,
+      String language) {
+    Integer id = labelIds.get(label);
+    if (id == null) {
+      id = labels.size();
+      labelIds.put(label, id);
+      labels.add(label);
+    }
+    int concept = addConcept(conceptURI);
+    int languageId = addLanguage(language);
+    Set<Integer> removedLanguages = removedLabels.get(key(type, concept, id));
+    if (removedLanguages != null) {
+      removedLanguages.remove(languageId);
+    }
+    addPair(type, concept, id, languageId);
+  }
+  
+  /**
+   * Removes a label of the given language ("" for none) added before (or held
+   * by the seeding graph). The label is kept in its other languages.
+   */
+  public void removeLabel(String conceptURI, SKOSType type, String label,
+      String language) {
+    Integer concept = conceptIds.get(conceptURI);
+    Integer id = labelIds.get(label);
+    Integer languageId = languageIds.get(language);
+    if (concept != null && id != null && languageId != null) {
+      long key = key(type, concept, id);
+      Set<Integer> removedLanguages = removedLabels.get(key);
+      if (removedLanguages == null) {
+        removedLanguages = new HashSet<Integer>();
+        removedLabels.put(key, removedLanguages);
+      }
+      removedLanguages.add(languageId);
+    }
+  }
+  
+  /**
+   * Adds a relation of the given relation type between two resources. The
+   * relation is dropped when the graph is built unless its source is a
+   * concept.
+   */
+  public void addRelation(String conceptURI, SKOSType type, String targetURI) {
+    int concept = addResource(conceptURI);
+    int target = addResource(targetURI);
+    removed.remove(key(type, concept, target));
+    removed.remove(key(INVERSES[type.ordinal()], target, concept));
+    addPair(type, concept, target, 0);
+  }
+  
+  /**
+   * Removes a relation added before (or held by the seeding graph). As the
+   * inverse relation is inferred, it is removed as well.
+   */
+  public void removeRelation(String conceptURI, SKOSType type,
+      String targetURI) {
+    Integer concept = conceptIds.get(conceptURI);
+    Integer target = conceptIds.get(targetURI);
+    if (concept != null && target != null) {
+      removed.add(key(type, concept, target));
+      removed.add(key(INVERSES[type.ordinal()], target, concept));
+    }
+  }
+  
+  /* packs a pair of a type into a single key */
+  private static long key(SKOSType type, int concept, int value) {
+    return ((long) type.ordinal() << 58) | ((long) concept << 29) | value;
+  }
+  
+  /* the language is kept for the label types only */
+  private void addPair(SKOSType type, int concept, int value, int language) {
+    int t = type.ordinal();
+    int[] p = pairs[t];
+    if (p == null) {
+      p = pairs[t] = new int[16];
+    } else if (numPairs[t] * 2 + 2 > p.length) {
+      p = pairs[t] = Arrays.copyOf(p, p.length * 2);
+    }
+    p[numPairs[t] * 2] = concept;
+    p[numPairs[t] * 2 + 1] = value;
+    /* relation types have an inverse, label types don't */
+    if (INVERSES[t] == null) {
+      int[] l = pairLanguages[t];
+      if (l == null) {
+        l = pairLanguages[t] = new int[8];
+      } else if (numPairs[t] == l.length) {
+        l = pairLanguages[t] = Arrays.copyOf(l, l.length * 2);
+      }
+      l[numPairs[t]] = language;
+    }
+    numPairs[t]++;
+  }
+  
+  /**
+   * Compiles the collected data into an immutable graph
+   */
+  public ConceptGraph build() {
+    addInverses();
+    
+    String[] sortedURIs = uris.toArray(new String[uris.size()]);
+    int[] conceptMap = sortAndMap(sortedURIs);
+    
+    String[] sortedLabels = labels.toArray(new String[labels.size()]);
+    int[] labelMap = sortAndMap(sortedLabels);
+    
+    String[] sortedLanguages = languages.toArray(new String[languages.size()]);
+    int[] languageMap = sortAndMap(sortedLanguages);
+    
+    int numTypes = SKOSType.values().length;
+    int[][] start = new int[numTypes][];
+    int[][] values = new int[numTypes][];
+    int[][] valueLanguages = new int[numTypes][];
+    
+    for (SKOSType type : ConceptGraph.LABEL_TYPES) {
+      toCSR(type.ordinal(), conceptMap, labelMap, languageMap,
+          sortedURIs.length, start, values, valueLanguages);
+    }
+    for (SKOSType type : ConceptGraph.RELATION_TYPES) {
+      toCSR(type.ordinal(), conceptMap, conceptMap, languageMap,
+          sortedURIs.length, start, values, valueLanguages);
+    }
+    for (int t = 0; t < numTypes; t++) {
+      if (start[t] == null) {
+        start[t] = new int[sortedURIs.length + 1];
+        values[t] = new int[0];
+      }
+      if (valueLanguages[t] == null) {
+        valueLanguages[t] = new int[0];
+      }
+    }
+    
+    /* the closure replaces the authored arrays, which are kept */
+    int bt = SKOSType.BROADERTRANSITIVE.ordinal();
+    int[] authoredStart = start[bt];
+    int[] authoredValues = values[bt];
+    closeTransitive(sortedURIs, start, values);
+    
+    /* invert the label types into label -> concepts */
+    int[] labelConceptStart = new int[sortedLabels.length + 1];
+    for (SKOSType type : ConceptGraph.LABEL_TYPES) {
+      int[] v = values[type.ordinal()];
+      for (int i = 0; i < v.length; i++) {
+        labelConceptStart[v[i] + 1]++;
+      }
+    }
+    for (int l = 0; l < sortedLabels.length; l++) {
+      labelConceptStart[l + 1] += labelConceptStart[l];
+    }
+    int[] labelConcepts = new int[labelConceptStart[sortedLabels.length]];
+    int[] fill = Arrays.copyOf(labelConceptStart, sortedLabels.length);
+    for (SKOSType type : ConceptGraph.LABEL_TYPES) {
+      int[] s = start[type.ordinal()];
+      int[] v = values[type.ordinal()];
+      for (int c = 0; c < sortedURIs.length; c++) {
+        for (int i = s[c]; i < s[c + 1]; i++) {
+          labelConcepts[fill[v[i]]++] = c;
+        }
+      }
+    }
+    
+    /* sort and deduplicate the concepts of each label */
+    int[] compactStart = new int[sortedLabels.length + 1];
+    int upto = 0;
+    for (int l = 0; l < sortedLabels.length; l++) {
+      int from = labelConceptStart[l];
+      int to = labelConceptStart[l + 1];
+      Arrays.sort(labelConcepts, from, to);
+      compactStart[l] = upto;
+      for (int i = from; i < to; i++) {
+        if (i == from || labelConcepts[i] != labelConcepts[i - 1]) {
+          labelConcepts[upto++] = labelConcepts[i];
+        }
+      }
+    }
+    compactStart[sortedLabels.length] = upto;
+    
+    return new ConceptGraph(sortedURIs, sortedLabels, start, values,
+        compactStart, Arrays.copyOf(labelConcepts, upto), sortedLanguages,
+        valueLanguages, authoredStart, authoredValues);
+  }
+  
+  /**
+   * Adds the inverse of every authored relation pair, in a single pass over
+   * the pairs
+   */
+  private void addInverses() {
+    /* the inverses added here must not be inverted again */
+    int[] authored = numPairs.clone();
+    for (SKOSType type : ConceptGraph.RELATION_TYPES) {
+      int t = type.ordinal();
+      SKOSType inverse = INVERSES[t];
+      for (int i = 0; i < authored[t]; i++) {
+        /* adding related pairs may grow the array being read */
+        int[] p = pairs[t];
+        addPair(inverse, p[i * 2 + 1], p[i * 2], 0);
+      }
+    }
+  }
+  
+  /**
+   * Replaces broaderTransitive by the transitive closure of broader and the
+   * authored broaderTransitive, and narrowerTransitive by its inverse. Each
+   * concept's ancestors are collected by a depth-first traversal that visits
+   * every ancestor once, so cycles terminate; concepts on a cycle are
+   * reported and not listed as their own ancestor.
+   * 
+   * The traversals are independent, so chunks of concepts are closed in
+   * parallel (see {@link ClosureWorker}) and concatenated in concept order.
+   * 
+   * The closure is stored as plain sorted ancestor and descendant lists
+   * rather than as pre-order intervals or bitsets: both lists hold one entry
+   * per (concept, ancestor) pair, i.e. concepts times average depth. For the
+   * shallow thesauri this engine serves (UKAT, EHRI terms: depth below 10)
+   * that is a few times the size of broader itself - e.g. 3.2M entries
+   * (25 MB for both directions) for a tree of 500K concepts with fan-out 8,
+   * 3.5M with every tenth concept given a second broader one - while
+   * intervals would need a pre-order renumbering of the concepts that
+   * polyhierarchies and the sorted-by-URI ids do not have. The flat lists
+   * keep the query-time reads O(k) and the snapshot layout unchanged.
+   */
+  private static void closeTransitive(String[] sortedURIs, int[][] start,
+      int[][] values) {
+    int numConcepts = sortedURIs.length;
+    int bt = SKOSType.BROADERTRANSITIVE.ordinal();
+    int nt = SKOSType.NARROWERTRANSITIVE.ordinal();
+    
+    int numChunks = (numConcepts + CLOSURE_CHUNK - 1) / CLOSURE_CHUNK;
+    int[][] chunkStart = new int[numChunks][];
+    int[][] chunkValues = new int[numChunks][];
+    AtomicInteger nextChunk = new AtomicInteger();
+    int numWorkers = Math.min(CLOSURE_THREADS, numChunks);
+    if (numWorkers <= 1) {
+      new ClosureWorker(sortedURIs, start, values, nextChunk, chunkStart,
+          chunkValues).call();
+    } else {
+      List<Future<Void>> futures = new ArrayList<Future<Void>>(numWorkers);
+      for (int w = 0; w < numWorkers; w++) {
+        futures.add(executor.submit(new ClosureWorker(sortedURIs, start,
+            values, nextChunk, chunkStart, chunkValues)));
+      }
+      try {
+        for (Future<Void> future : futures) {
+          future.get();
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new RuntimeException(
+            "Interrupted while computing the transitive closure", e);
+      } catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof RuntimeException) {
+          throw (RuntimeException) cause;
+        }
+        if (cause instanceof Error) {
+          throw (Error) cause;
+        }
+        throw new RuntimeException(cause);
+      } finally {
+        /* stop the remaining workers of a failed closure */
+        nextChunk.set(numChunks);
+      }
+    }
+    
+    /* concatenate the chunks */
+    int upto = 0;
+    for (int k = 0; k < numChunks; k++) {
+      upto += chunkValues[k].length;
+    }
+    int[] s = new int[numConcepts + 1];
+    int[] v = new int[upto];
+    upto = 0;
+    for (int k = 0; k < numChunks; k++) {
+      int from = k * CLOSURE_CHUNK;
+      for (int c = 0; c < chunkStart[k].length - 1; c++) {
+        s[from + c] = upto + chunkStart[k][c];
+      }
+      System.arraycopy(chunkValues[k], 0, v, upto, chunkValues[k].length);
+      upto += chunkValues[k].length;
+    }
+    s[numConcepts] = upto;
+    start[bt] = s;
+    values[bt] = v;
+    
+    /* invert into narrowerTransitive, sorted by the ascending concept ids */
+    int[] ns = new int[numConcepts + 1];
+    for (int i = 0; i < upto; i++) {
+      ns[v[i] + 1]++;
+    }
+    for (int c = 0; c < numConcepts; c++) {
+      ns[c + 1] += ns[c];
+    }
+    int[] nv = new int[upto];
+    int[] fill = Arrays.copyOf(ns, numConcepts);
+    for (int c = 0; c < numConcepts; c++) {
+      for (int i = s[c]; i < s[c + 1]; i++) {
+        nv[fill[v[i]]++] = c;
+      }
+    }
+    start[nt] = ns;
+    values[nt] = nv;
+  }
+  
+  /**
+   * Collects the ancestors of the concepts of the chunks it takes, as sorted
+   * lists in CSR layout per chunk. Workers take the next chunk when they are
+   * done with one, so that they are kept busy when the depth of the chunks
+   * differs.
+   */
+  private static class ClosureWorker implements Callable<Void> {
+    
+    private final String[] sortedURIs;
+    
+    private final int[][] start;
+    
+    private final int[][] values;
+    
+    private final AtomicInteger nextChunk;
+    
+    private final int[][] chunkStart;
+    
+    private final int[][] chunkValues;
+    
+    ClosureWorker(String[] sortedURIs, int[][] start, int[][] values,
+        AtomicInteger nextChunk, int[][] chunkStart, int[][] chunkValues) {
+      this.sortedURIs = sortedURIs;
+      this.start = start;
+      this.values = values;
+      this.nextChunk = nextChunk;
+      this.chunkStart = chunkStart;
+      this.chunkValues = chunkValues;
+    }
+    
+    @Override
+    public Void call() {
+      int numConcepts = sortedURIs.length;
+      int bt = SKOSType.BROADERTRANSITIVE.ordinal();
+      int[] edges = new int[] {SKOSType.BROADER.ordinal(), bt};
+      
+      /* the concept whose ancestors were collected when it was visited */
+      int[] seen = new int[numConcepts];
+      Arrays.fill(seen, -1);
+      int[] stack = new int[16];
+      int[] v = new int[16];
+      
+      int k;
+      while ((k = nextChunk.getAndIncrement()) < chunkStart.length) {
+        int from = k * CLOSURE_CHUNK;
+        int to = Math.min(from + CLOSURE_CHUNK, numConcepts);
+        int[] s = new int[to - from + 1];
+        int upto = 0;
+        for (int c = from; c < to; c++) {
+          s[c - from] = upto;
+          seen[c] = c;
+          boolean cyclic = false;
+          int depth = 0;
+          stack[depth++] = c;
+          while (depth > 0) {
+            int concept = stack[--depth];
+            for (int t : edges) {
+              for (int i = start[t][concept]; i < start[t][concept + 1]; i++) {
+                int ancestor = values[t][i];
+                if (ancestor == c) {
+                  cyclic = true;
+                }
+                if (seen[ancestor] == c) {
+                  continue;
+                }
+                seen[ancestor] = c;
+                if (upto == v.length) {
+                  v = Arrays.copyOf(v, v.length * 2);
+                }
+                v[upto++] = ancestor;
+                if (depth == stack.length) {
+                  stack = Arrays.copyOf(stack, stack.length * 2);
+                }
+                stack[depth++] = ancestor;
+              }
+            }
+          }
+          if (cyclic) {
+            log.warn("Concept {} is its own broader concept.", sortedURIs[c]);
+          }
+          Arrays.sort(v, s[c - from], upto);
+        }
+        s[to - from] = upto;
+        chunkStart[k] = s;
+        chunkValues[k] = Arrays.copyOf(v, upto);
+      }
+      return null;
+    }
+    
+  }
+  
+  /**
+   * Sorts the given keys in place and returns the mapping from arrival order
+   * to sorted order
+   */
+  private static int[] sortAndMap(String[] keys) {
+    String[] arrival = keys.clone();
+    Arrays.sort(keys);
+    int[] map = new int[keys.length];
+    for (int i = 0; i < arrival.length; i++) {
+      map[i] = Arrays.binarySearch(keys, arrival[i]);
+    }
+    return map;
+  }
+  
+  /**
+   * Converts the (concept, value) pairs of a type into CSR layout with a stable
+   * counting sort on the concept id, keeping only the first of equal values
+   * (in the same language) of a concept. The languages of label values are
+   * moved along.
+   */
+  private void toCSR(int t, int[] conceptMap, int[] valueMap,
+      int[] languageMap, int numConcepts, int[][] start, int[][] values,
+      int[][] valueLanguages) {
+    int[] p = pairs[t];
+    int[] l = pairLanguages[t];
+    
+    /* drop removed pairs and relations of resources that are not concepts */
+    SKOSType type = SKOSType.values()[t];
+    int n = 0;
+    for (int i = 0; i < numPairs[t]; i++) {
+      if (concepts.get(p[i * 2]) && !isRemoved(type, p, l, i)) {
+        p[n * 2] = p[i * 2];
+        p[n * 2 + 1] = p[i * 2 + 1];
+        if (l != null) {
+          l[n] = l[i];
+        }
+        n++;
+      }
+    }
+    numPairs[t] = n;
+    
+    int[] s = new int[numConcepts + 1];
+    for (int i = 0; i < n; i++) {
+      s[conceptMap[p[i * 2]] + 1]++;
+    }
+    for (int c = 0; c < numConcepts; c++) {
+      s[c + 1] += s[c];
+    }
+    int[] v = new int[n];
+    int[] vl = l == null ? null : new int[n];
+    int[] fill = Arrays.copyOf(s, numConcepts);
+    for (int i = 0; i < n; i++) {
+      int pos = fill[conceptMap[p[i * 2]]]++;
+      v[pos] = valueMap[p[i * 2 + 1]];
+      if (vl != null) {
+        vl[pos] = languageMap[l[i]];
+      }
+    }
+    
+    /* the last concept each value was seen for */
+    int[] seen = new int[valueMap.length];
+    Arrays.fill(seen, -1);
+    int upto = 0;
+    for (int c = 0; c < numConcepts; c++) {
+      int from = s[c];
+      s[c] = upto;
+      for (int i = from; i < s[c + 1]; i++) {
+        /* a label is kept once per language */
+        if (seen[v[i]] == c
+            && (vl == null || contains(v, vl, s[c], upto, v[i], vl[i]))) {
+          continue;
+        }
+        seen[v[i]] = c;
+        v[upto] = v[i];
+        if (vl != null) {
+          vl[upto] = vl[i];
+        }
+        upto++;
+      }
+    }
+    s[numConcepts] = upto;
+    v = Arrays.copyOf(v, upto);
+    if (vl != null) {
+      vl = Arrays.copyOf(vl, upto);
+    }
+    start[t] = s;
+    values[t] = v;
+    valueLanguages[t] = vl;
+  }
+  
+  /* whether the i-th pair of a type was removed */
+  private boolean isRemoved(SKOSType type, int[] p, int[] l, int i) {
+    if (l == null) {
+      return !removed.isEmpty()
+          && removed.contains(key(type, p[i * 2], p[i * 2 + 1]));
+    }
+    if (removedLabels.isEmpty()) {
+      return false;
+    }
+    Set<Integer> removedLanguages = removedLabels.get(key(type, p[i * 2],
+        p[i * 2 + 1]));
+    return removedLanguages != null && removedLanguages.contains(l[i]);
+  }
+  
+  /* whether a value in a language is held in the given range */
+  private static boolean contains(int[] v, int[] vl, int from, int to,
+      int value, int language) {
+    for (int i = from; i < to; i++) {
+      if (v[i] == value && vl[i] == language) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
@@ -0,0 +1,114 @@
+package at.ac.univie.mminf.luceneSKOS.skos.impl;
+
+/**
+ * Copyright 2010 Bernhard Haslhofer 
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import at.ac.univie.mminf.luceneSKOS.analysis.tokenattributes.SKOSTypeAttribute.SKOSType;
+import at.ac.univie.mminf.luceneSKOS.skos.SKOSVocabularyProfile;
+
+/**
+ * Computes the {@link SKOSVocabularyProfile} of a {@link ConceptGraph}
+ */
+final class ConceptGraphProfiler {
+  
+  private ConceptGraphProfiler() {}
+  
+  static SKOSVocabularyProfile profile(ConceptGraph graph) {
+    SKOSVocabularyProfile.Builder profile = new SKOSVocabularyProfile.Builder();
+    int numConcepts = graph.getNumConcepts();
+    profile.setNumConcepts(numConcepts);
+    
+    for (SKOSType type : SKOSType.values()) {
+      profile.addCount(type, graph.getNumValues(type));
+    }
+    
+    int[] languageCounts = new int[graph.getNumLanguages()];
+    for (SKOSType type : ConceptGraph.LABEL_TYPES) {
+      for (int i = 0; i < graph.getNumValues(type); i++) {
+        languageCounts[graph.getValueLanguage(type, i)]++;
+      }
+    }
+    for (int l = 0; l < languageCounts.length; l++) {
+      /* the languages of removed labels are kept by a patched graph */
+      if (languageCounts[l] > 0) {
+        profile.addLanguageCount(graph.getLanguage(l), languageCounts[l]);
+      }
+    }
+    
+    /* the label pool may hold labels removed by a patch */
+    for (int l = 0; l < graph.getNumLabels(); l++) {
+      if (graph.getLabelConceptsStart(l) != graph.getLabelConceptsEnd(l)) {
+        profile.addLabel(graph.getLabel(l));
+      }
+    }
+    
+    profile.setHierarchyDepth(hierarchyDepth(graph));
+    
+    int maxFanOut = 0;
+    int parents = 0;
+    for (int c = 0; c < numConcepts; c++) {
+      int fanOut = graph.getEnd(SKOSType.NARROWER, c)
+          - graph.getStart(SKOSType.NARROWER, c);
+      if (fanOut > 0) {
+        parents++;
+        maxFanOut = Math.max(maxFanOut, fanOut);
+      }
+    }
+    profile.setFanOut(maxFanOut, parents == 0 ? 0 : (double) graph
+        .getNumValues(SKOSType.NARROWER) / parents);
+    
+    return profile.build();
+  }
+  
+  /**
+   * Returns the number of concepts on the longest broader chain, by a
+   * topological traversal from the top concepts down the narrower relations.
+   * Concepts on a broader cycle (and below it) are never reached.
+   */
+  private static int hierarchyDepth(ConceptGraph graph) {
+    int numConcepts = graph.getNumConcepts();
+    
+    /* the number of broader concepts not visited yet */
+    int[] pending = new int[numConcepts];
+    int[] depth = new int[numConcepts];
+    int[] queue = new int[numConcepts];
+    int head = 0;
+    int tail = 0;
+    for (int c = 0; c < numConcepts; c++) {
+      pending[c] = graph.getEnd(SKOSType.BROADER, c)
+          - graph.getStart(SKOSType.BROADER, c);
+      if (pending[c] == 0) {
+        depth[c] = 1;
+        queue[tail++] = c;
+      }
+    }
+    
+    int maxDepth = 0;
+    while (head < tail) {
+      int c = queue[head++];
+      maxDepth = Math.max(maxDepth, depth[c]);
+      for (int i = graph.getStart(SKOSType.NARROWER, c); i < graph.getEnd(
+          SKOSType.NARROWER, c); i++) {
+        int child = graph.getValue(SKOSType.NARROWER, i);
+        depth[child] = Math.max(depth[child], depth[c] + 1);
+        if (--pending[child] == 0) {
+          queue[tail++] = child;
+        }
+      }
+    }
+    return maxDepth;
+  }
+}
@@ -0,0 +1,181 @@
+package at.ac.univie.mminf.luceneSKOS.skos.impl;
+
+/**
+ * Copyright 2010 Bernhard Haslhofer 
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.jena.riot.system.StreamRDF;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import at.ac.univie.mminf.luceneSKOS.analysis.tokenattributes.SKOSTypeAttribute.SKOSType;
+import at.ac.univie.mminf.luceneSKOS.skos.SKOS;
+
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.sparql.core.Quad;
+import com.hp.hpl.jena.vocabulary.RDF;
+
+/**
+ * Receives the triples of a SKOS source from the RDF parser and passes the
+ * ones the engines index straight on to a {@link ConceptGraphBuilder}; all
+ * other triples are dropped as they arrive.
+ *
+ * Resources typed as skos:Concept or carrying any label (including the EHRI
+ * extension labels) are concepts.
+ */
+class ConceptGraphSink implements StreamRDF {
+  
+  private static final Logger log = LoggerFactory
+      .getLogger(ConceptGraphSink.class);
+  
+  /** The indexed properties by URI */
+  private static final Map<String,SKOSType> PROPERTIES = new HashMap<String,SKOSType>();
+  
+  static {
+    PROPERTIES.put(SKOS.prefLabel.getURI(), SKOSType.PREF);
+    PROPERTIES.put(SKOS.altLabel.getURI(), SKOSType.ALT);
+    PROPERTIES.put(SKOS.hiddenLabel.getURI(), SKOSType.HIDDEN);
+    PROPERTIES.put(SKOS.prefMaleLabel.getURI(), SKOSType.PREFMALE);
+    PROPERTIES.put(SKOS.prefFemaleLabel.getURI(), SKOSType.PREFFEMALE);
+    PROPERTIES.put(SKOS.prefNeuterLabel.getURI(), SKOSType.PREFNEUTER);
+    PROPERTIES.put(SKOS.altMaleLabel.getURI(), SKOSType.ALTMALE);
+    PROPERTIES.put(SKOS.altFemaleLabel.getURI(), SKOSType.ALTFEMALE);
+    PROPERTIES.put(SKOS.altNeuterLabel.getURI(), SKOSType.ALTNEUTER);
+    PROPERTIES.put(SKOS.broader.getURI(), SKOSType.BROADER);
+    PROPERTIES.put(SKOS.narrower.getURI(), SKOSType.NARROWER);
+    PROPERTIES.put(SKOS.broaderTransitive.getURI(),
+        SKOSType.BROADERTRANSITIVE);
+    PROPERTIES.put(SKOS.narrowerTransitive.getURI(),
+        SKOSType.NARROWERTRANSITIVE);
+    PROPERTIES.put(SKOS.related.getURI(), SKOSType.RELATED);
+  }
+  
+  private static final String TYPE = RDF.type.getURI();
+  
+  private static final String CONCEPT = SKOS.Concept.getURI();
+  
+  private final ConceptGraphBuilder builder;
+  
+  /**
+   * The languages of the labels to be kept, null for all
+   */
+  private final Set<String> languages;
+  
+  /* whether triples are removed from the builder instead of added */
+  private boolean removing;
+  
+  ConceptGraphSink(ConceptGraphBuilder builder, Set<String> languages) {
+    this.builder = builder;
+    this.languages = languages;
+  }
+  
+  /**
+   * Switches between adding the triples received to the builder and removing
+   * them. Removing concept types is not supported: concepts stay concepts.
+   */
+  void setRemoving(boolean removing) {
+    this.removing = removing;
+  }
+  
+  @Override
+  public void triple(Triple triple) {
+    Node predicate = triple.getPredicate();
+    if (!predicate.isURI()) {
+      return;
+    }
+    
+    Node subject = triple.getSubject();
+    Node object = triple.getObject();
+    
+    if (TYPE.equals(predicate.getURI())) {
+      if (!removing && subject.isURI() && object.isURI()
+          && CONCEPT.equals(object.getURI())) {
+        builder.addConcept(subject.getURI());
+      }
+      return;
+    }
+    
+    SKOSType type = PROPERTIES.get(predicate.getURI());
+    if (type == null) {
+      return;
+    }
+    
+    if (!subject.isURI()) {
+      log.warn("Error when indexing concept NO_URI.");
+      return;
+    }
+    String conceptURI = subject.getURI();
+    
+    if (ConceptGraph.isRelationType(type)) {
+      if (!object.isURI()) {
+        log.warn("Error when indexing relationship of concept {}.",
+            conceptURI);
+        return;
+      }
+      if (removing) {
+        builder.removeRelation(conceptURI, type, object.getURI());
+      } else {
+        builder.addRelation(conceptURI, type, object.getURI());
+      }
+      return;
+    }
+    
+    if (!object.isLiteral()) {
+      log.warn("Error when indexing label of concept {}.", conceptURI);
+      return;
+    }
+    
+    /* labels in any language make their subject a concept */
+    if (!removing) {
+      builder.addConcept(conceptURI);
+    }
+    
+    if (languages != null
+        && !languages.contains(object.getLiteralLanguage())) {
+      return;
+    }
+    
+    // converting label to lower-case
+    String label = object.getLiteralLexicalForm().toLowerCase();
+    if (removing) {
+      builder.removeLabel(conceptURI, type, label,
+          object.getLiteralLanguage());
+    } else {
+      builder.addLabel(conceptURI, type, label, object.getLiteralLanguage());
+    }
+  }
+  
+  @Override
+  public void quad(Quad quad) {
+    triple(quad.asTriple());
+  }
+  
+  @Override
+  public void start() {}
+  
+  @Override
+  public void base(String base) {}
+  
+  @Override
+  public void prefix(String prefix, String iri) {}
+  
+  @Override
+  public void finish() {}
+}
@@ -0,0 +1,292 @@
+package at.ac.univie.mminf.luceneSKOS.skos.impl;
+
+/**
+ * Copyright 2010 Bernhard Haslhofer 
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+import org.apache.commons.io.FileUtils;
+
+/**
+ * Reads and writes {@link ConceptGraph}s in a versioned, checksummed binary
+ * format, so that a vocabulary can be opened without parsing RDF.
+ * 
+ * Layout (big-endian): magic, format version, number of concepts, labels and
+ * SKOSTypes, the hash of the SKOS source, the concept URIs and the labels
+ * (each as offsets + UTF-8 bytes), the number of language tags and the tags,
+ * per SKOSType the CSR start, value and value language arrays, the CSR
+ * arrays of the authored broaderTransitive relations, the label -> concepts
+ * arrays and finally the CRC32 of everything before it.
+ * 
+ * Snapshots are read through a MappedByteBuffer, which the graph keeps
+ * serving its arrays and strings from (see {@link StringPool}); the file is
+ * written to a temporary file first and renamed over the previous one.
+ */
+public final class ConceptGraphSnapshot {
+  
+  /** "SKOS" */
+  private static final int MAGIC = 0x534B4F53;
+  
+  /** Incremented on every incompatible change of the layout or content */
+  public static final int FORMAT_VERSION = 6;
+  
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+  
+  private ConceptGraphSnapshot() {}
+  
+  /**
+   * Writes the given graph to a snapshot file
+   */
+  public static void write(ConceptGraph graph, File file) throws IOException {
+    write(graph, file, null);
+  }
+  
+  /**
+   * Writes the given graph to a snapshot file
+   * 
+   * @param sourceHash
+   *          the hash of the SKOS source the graph was built from, or null
+   */
+  public static void write(ConceptGraph graph, File file, String sourceHash)
+      throws IOException {
+    File tmp = new File(file.getPath() + ".tmp");
+    CRC32 crc = new CRC32();
+    FileOutputStream fos = new FileOutputStream(tmp);
+    try {
+      DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+          new CheckedOutputStream(fos, crc), 1 << 16));
+      out.writeInt(MAGIC);
+      out.writeInt(FORMAT_VERSION);
+      out.writeInt(graph.getNumConcepts());
+      out.writeInt(graph.getNumLabels());
+      out.writeInt(graph.start.length);
+      
+      writeStrings(out, new StringPool(new String[] {sourceHash == null ? ""
+          : sourceHash}));
+      writeStrings(out, graph.uris);
+      writeStrings(out, graph.labels);
+      out.writeInt(graph.languages.length);
+      writeStrings(out, new StringPool(graph.languages));
+      
+      for (int t = 0; t < graph.start.length; t++) {
+        writeInts(out, graph.start[t]);
+        out.writeInt(graph.values[t].capacity());
+        writeInts(out, graph.values[t]);
+        out.writeInt(graph.valueLanguages[t].capacity());
+        writeInts(out, graph.valueLanguages[t]);
+      }
+      
+      writeInts(out, graph.authoredStart);
+      out.writeInt(graph.authoredValues.capacity());
+      writeInts(out, graph.authoredValues);
+      
+      writeInts(out, graph.labelConceptStart);
+      out.writeInt(graph.labelConcepts.capacity());
+      writeInts(out, graph.labelConcepts);
+      out.flush();
+      
+      /* the checksum itself is not part of the checksum */
+      new DataOutputStream(fos).writeLong(crc.getValue());
+      fos.getFD().sync();
+    } finally {
+      fos.close();
+    }
+    
+    /* replaces the previous snapshot atomically where renaming can (POSIX) */
+    if (tmp.renameTo(file)) {
+      return;
+    }
+    
+    /* elsewhere, the previous snapshot is kept until the new one is in place */
+    File old = new File(file.getPath() + ".old");
+    FileUtils.deleteQuietly(old);
+    if (file.exists() && !file.renameTo(old)) {
+      throw new IOException("Could not replace snapshot " + file);
+    }
+    if (!tmp.renameTo(file)) {
+      old.renameTo(file);
+      throw new IOException("Could not rename snapshot " + tmp + " to " + file);
+    }
+    FileUtils.deleteQuietly(old);
+  }
+  
+  /**
+   * Opens a snapshot file. The graph is served from the mapping: its arrays
+   * are views of the mapped file and its strings are decoded on access.
+   * 
+   * @param file
+   *          the snapshot
+   * @param preTouch
+   *          whether to load the whole mapping into physical memory before
+   *          decoding it
+   * @throws IOException
+   *           if the file is not a snapshot of the current format version or
+   *           its checksum does not match
+   */
+  public static ConceptGraph read(File file, boolean preTouch)
+      throws IOException {
+    return read(file, preTouch, null);
+  }
+  
+  /**
+   * Opens a snapshot file built from the given SKOS source
+   * 
+   * @param sourceHash
+   *          the expected hash of the SKOS source, or null to accept any
+   * @throws IOException
+   *           if the file is not a snapshot of the current format version, its
+   *           checksum does not match or it was built from another source
+   */
+  public static ConceptGraph read(File file, boolean preTouch,
+      String sourceHash) throws IOException {
+    RandomAccessFile raf = new RandomAccessFile(file, "r");
+    try {
+      FileChannel channel = raf.getChannel();
+      long size = channel.size();
+      if (size < 28 || size > Integer.MAX_VALUE) {
+        throw new IOException("Invalid snapshot size " + size + ": " + file);
+      }
+      
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+          size);
+      if (preTouch) {
+        buffer.load();
+      }
+      
+      if (buffer.getInt(0) != MAGIC) {
+        throw new IOException("Not a SKOS snapshot: " + file);
+      }
+      int version = buffer.getInt(4);
+      if (version != FORMAT_VERSION) {
+        throw new IOException("Unsupported snapshot version " + version
+            + " (expected " + FORMAT_VERSION + "): " + file);
+      }
+      
+      int end = (int) size - 8;
+      if (checksum(buffer, end) != buffer.getLong(end)) {
+        throw new IOException("Snapshot checksum mismatch: " + file);
+      }
+      
+      buffer.position(8);
+      int numConcepts = buffer.getInt();
+      int numLabels = buffer.getInt();
+      int numTypes = buffer.getInt();
+      
+      String snapshotHash = readStrings(buffer, 1).get(0);
+      if (sourceHash != null && !sourceHash.equals(snapshotHash)) {
+        throw new IOException("SKOS source modified: " + file);
+      }
+      
+      StringPool uris = readStrings(buffer, numConcepts);
+      StringPool labels = readStrings(buffer, numLabels);
+      
+      /* the few language tags are decoded right away */
+      StringPool tags = readStrings(buffer, buffer.getInt());
+      String[] languages = new String[tags.size()];
+      for (int l = 0; l < languages.length; l++) {
+        languages[l] = tags.get(l);
+      }
+      
+      IntBuffer[] start = new IntBuffer[numTypes];
+      IntBuffer[] values = new IntBuffer[numTypes];
+      IntBuffer[] valueLanguages = new IntBuffer[numTypes];
+      for (int t = 0; t < numTypes; t++) {
+        start[t] = readInts(buffer, numConcepts + 1);
+        values[t] = readInts(buffer, buffer.getInt());
+        valueLanguages[t] = readInts(buffer, buffer.getInt());
+      }
+      
+      IntBuffer authoredStart = readInts(buffer, numConcepts + 1);
+      IntBuffer authoredValues = readInts(buffer, buffer.getInt());
+      
+      IntBuffer labelConceptStart = readInts(buffer, numLabels + 1);
+      IntBuffer labelConcepts = readInts(buffer, buffer.getInt());
+      
+      return new ConceptGraph(uris, labels, start, values, labelConceptStart,
+          labelConcepts, languages, valueLanguages, authoredStart,
+          authoredValues);
+    } finally {
+      raf.close();
+    }
+  }
+  
+  private static long checksum(ByteBuffer buffer, int end) {
+    CRC32 crc = new CRC32();
+    ByteBuffer slice = buffer.duplicate();
+    slice.position(0);
+    byte[] chunk = new byte[1 << 16];
+    int remaining = end;
+    while (remaining > 0) {
+      int n = Math.min(chunk.length, remaining);
+      slice.get(chunk, 0, n);
+      crc.update(chunk, 0, n);
+      remaining -= n;
+    }
+    return crc.getValue();
+  }
+  
+  private static void writeInts(DataOutputStream out, IntBuffer ints)
+      throws IOException {
+    for (int i = 0; i < ints.capacity(); i++) {
+      out.writeInt(ints.get(i));
+    }
+  }
+  
+  /* returns a view of the next ints of the buffer and skips them */
+  private static IntBuffer readInts(ByteBuffer buffer, int length) {
+    return slice(buffer, length * 4).asIntBuffer();
+  }
+  
+  /* returns a view of the next bytes of the buffer and skips them */
+  private static ByteBuffer slice(ByteBuffer buffer, int length) {
+    ByteBuffer slice = buffer.slice();
+    slice.limit(length);
+    buffer.position(buffer.position() + length);
+    return slice;
+  }
+  
+  private static void writeStrings(DataOutputStream out, StringPool strings)
+      throws IOException {
+    byte[][] encoded = new byte[strings.size()][];
+    int offset = 0;
+    out.writeInt(offset);
+    for (int i = 0; i < encoded.length; i++) {
+      encoded[i] = strings.get(i).getBytes(UTF_8);
+      offset += encoded[i].length;
+      out.writeInt(offset);
+    }
+    for (byte[] bytes : encoded) {
+      out.write(bytes);
+    }
+  }
+  
+  private static StringPool readStrings(ByteBuffer buffer, int count) {
+    IntBuffer offsets = readInts(buffer, count + 1);
+    return new StringPool(offsets, slice(buffer, offsets.get(count)));
+  }
+}
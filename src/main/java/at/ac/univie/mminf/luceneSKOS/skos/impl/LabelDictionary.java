@@ -0,0 +1,144 @@
+package at.ac.univie.mminf.luceneSKOS.skos.impl;
+
+/**
+ * Copyright 2010 Bernhard Haslhofer 
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.lucene.store.ByteArrayDataInput;
+import org.apache.lucene.store.ByteArrayDataOutput;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.IntsRef;
+import org.apache.lucene.util.fst.Builder;
+import org.apache.lucene.util.fst.ByteSequenceOutputs;
+import org.apache.lucene.util.fst.FST;
+import org.apache.lucene.util.fst.Util;
+
+/**
+ * A compiled label -> concept dictionary.
+ * 
+ * Each (lower-cased) label is mapped by an FST to the delta-coded list of the
+ * ordinals of the concepts carrying it, so that a lookup is a single FST
+ * traversal without any Query, Collector or stored-field access.
+ */
+public final class LabelDictionary {
+  
+  private final FST<BytesRef> fst;
+  
+  private LabelDictionary(FST<BytesRef> fst) {
+    this.fst = fst;
+  }
+  
+  /**
+   * Returns the ordinals (ascending) of the concepts carrying the given label,
+   * or null if there are none
+   */
+  public int[] getOrdinals(String label) throws IOException {
+    if (fst == null) {
+      return null;
+    }
+    
+    BytesRef output = Util.get(fst, new BytesRef(label));
+    if (output == null) {
+      return null;
+    }
+    
+    ByteArrayDataInput in = new ByteArrayDataInput(output.bytes,
+        output.offset, output.length);
+    int count = in.readVInt();
+    int[] ordinals = new int[count];
+    int ordinal = 0;
+    for (int i = 0; i < count; i++) {
+      ordinal += in.readVInt();
+      ordinals[i] = ordinal;
+    }
+    return ordinals;
+  }
+  
+  /**
+   * Returns the size of the compiled dictionary in bytes
+   */
+  public long sizeInBytes() {
+    return fst == null ? 0 : fst.sizeInBytes();
+  }
+  
+  /**
+   * Collects (label, ordinal) pairs in any order and compiles them into a
+   * {@link LabelDictionary}
+   */
+  public static class DictionaryBuilder {
+    
+    /* BytesRef sorts in UTF-8 byte order, as required by the FST */
+    private final Map<BytesRef,List<Integer>> entries = new TreeMap<BytesRef,List<Integer>>();
+    
+    public void add(String label, int ordinal) {
+      BytesRef key = new BytesRef(label);
+      List<Integer> ordinals = entries.get(key);
+      if (ordinals == null) {
+        ordinals = new ArrayList<Integer>(1);
+        entries.put(key, ordinals);
+      }
+      ordinals.add(ordinal);
+    }
+    
+    public LabelDictionary finish() throws IOException {
+      if (entries.isEmpty()) {
+        return new LabelDictionary(null);
+      }
+      
+      Builder<BytesRef> builder = new Builder<BytesRef>(FST.INPUT_TYPE.BYTE1,
+          ByteSequenceOutputs.getSingleton());
+      IntsRef scratch = new IntsRef();
+      byte[] buffer = new byte[64];
+      
+      for (Map.Entry<BytesRef,List<Integer>> entry : entries.entrySet()) {
+        List<Integer> ordinals = entry.getValue();
+        Collections.sort(ordinals);
+        
+        int[] unique = new int[ordinals.size()];
+        int count = 0;
+        for (int ordinal : ordinals) {
+          if (count == 0 || unique[count - 1] != ordinal) {
+            unique[count++] = ordinal;
+          }
+        }
+        
+        /* count + deltas, each at most 5 bytes */
+        if (buffer.length < 5 * (count + 1)) {
+          buffer = new byte[5 * (count + 1)];
+        }
+        ByteArrayDataOutput out = new ByteArrayDataOutput(buffer);
+        out.writeVInt(count);
+        int last = 0;
+        for (int i = 0; i < count; i++) {
+          out.writeVInt(unique[i] - last);
+          last = unique[i];
+        }
+        
+        builder.add(Util.toIntsRef(entry.getKey(), scratch), new BytesRef(
+            Arrays.copyOf(buffer, out.getPosition())));
+      }
+      
+      return new LabelDictionary(builder.finish());
+    }
+  }
+}
@@ -16,98 +16,91 @@ package at.ac.univie.mminf.luceneSKOS.skos.impl;
  * limitations under the License.
  */
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
 
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringUtils;
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.core.SimpleAnalyzer;
+import org.apache.lucene.document.BinaryDocValuesField;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
+import org.apache.lucene.document.SortedDocValuesField;
+import org.apache.lucene.document.SortedSetDocValuesField;
 import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.AtomicReader;
 import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.lucene.index.BinaryDocValues;
 import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.DocsEnum;
+import org.apache.lucene.index.IndexCommit;
+import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
-import org.apache.lucene.index.Term;
-import org.apache.lucene.search.Collector;
-import org.apache.lucene.search.DisjunctionMaxQuery;
+import org.apache.lucene.index.IndexWriterConfig.OpenMode;
+import org.apache.lucene.index.LogByteSizeMergePolicy;
+import org.apache.lucene.index.SortedDocValues;
+import org.apache.lucene.index.SortedSetDocValues;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.search.DocIdSetIterator;
 import org.apache.lucene.search.IndexSearcher;
-import org.apache.lucene.search.Query;
-import org.apache.lucene.search.ScoreDoc;
-import org.apache.lucene.search.Scorer;
-import org.apache.lucene.search.TermQuery;
-import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.store.ByteArrayDataInput;
+import org.apache.lucene.store.ByteArrayDataOutput;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.FSDirectory;
 import org.apache.lucene.store.RAMDirectory;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.Version;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
-import at.ac.univie.mminf.luceneSKOS.skos.SKOS;
+import at.ac.univie.mminf.luceneSKOS.analysis.tokenattributes.SKOSTypeAttribute.SKOSType;
+import at.ac.univie.mminf.luceneSKOS.skos.ExpansionSink;
+import at.ac.univie.mminf.luceneSKOS.skos.LabelExpansions;
+import at.ac.univie.mminf.luceneSKOS.skos.LabelTrie;
+import at.ac.univie.mminf.luceneSKOS.skos.SKOSBatchResult;
 import at.ac.univie.mminf.luceneSKOS.skos.SKOSEngine;
-
-import com.hp.hpl.jena.ontology.AnnotationProperty;
-import com.hp.hpl.jena.ontology.ObjectProperty;
-import com.hp.hpl.jena.rdf.model.Literal;
-import com.hp.hpl.jena.rdf.model.Model;
-import com.hp.hpl.jena.rdf.model.ModelFactory;
-import com.hp.hpl.jena.rdf.model.RDFNode;
-import com.hp.hpl.jena.rdf.model.ResIterator;
-import com.hp.hpl.jena.rdf.model.Resource;
-import com.hp.hpl.jena.rdf.model.StmtIterator;
-import com.hp.hpl.jena.update.GraphStore;
-import com.hp.hpl.jena.update.GraphStoreFactory;
-import com.hp.hpl.jena.update.UpdateAction;
-import com.hp.hpl.jena.update.UpdateFactory;
-import com.hp.hpl.jena.update.UpdateRequest;
-import com.hp.hpl.jena.util.FileManager;
-import com.hp.hpl.jena.vocabulary.RDF;
+import at.ac.univie.mminf.luceneSKOS.skos.SKOSEngineFactory;
+import at.ac.univie.mminf.luceneSKOS.skos.SKOSEngineRegistry;
+import at.ac.univie.mminf.luceneSKOS.skos.SKOSExpansion;
+import at.ac.univie.mminf.luceneSKOS.skos.SKOSLanguages;
+import at.ac.univie.mminf.luceneSKOS.skos.SKOSVocabularyProfile;
 
 /**
  * A Lucene-backed SKOSEngine Implementation.
  * 
- * Each SKOS concept is stored/indexed as a Lucene document.
+ * Each SKOS concept is indexed as a Lucene document. Its labels are kept in
+ * SortedSetDocValues and its relations in BinaryDocValues, as the docIDs of
+ * the related concepts, so that reading a concept does not decompress stored
+ * fields. The index is merged into a single segment in concept order.
  * 
  * All labels are converted to lowercase
  */
 public class SKOSEngineImpl implements SKOSEngine {
   
-  /** Records the total number of matches */
-  public static class AllDocCollector extends Collector {
-    private final List<Integer> docs = new ArrayList<Integer>();
-    private int base;
-    
-    @Override
-    public boolean acceptsDocsOutOfOrder() {
-      return true;
-    }
-    
-    @Override
-    public void collect(int doc) throws IOException {
-      docs.add(doc + base);
-    }
-    
-    public List<Integer> getDocs() {
-      return docs;
-    }
-    
-    @Override
-    public void setNextReader(AtomicReaderContext context) throws IOException {
-      base = context.docBase;
-    }
-    
-    @Override
-    public void setScorer(Scorer scorer) throws IOException {
-      // not needed
-    }
-  }
+  private static final Logger log = LoggerFactory
+      .getLogger(SKOSEngineImpl.class);
+  
+  /**
+   * The default directory holding the indexes built from SKOS files
+   */
+  public static final String DEFAULT_SKOSDATA_DIR = "/opt/webapps/solr4/ehri/portal/data/skosdata/";
   
   protected final Version matchVersion;
   
@@ -115,6 +108,7 @@ public class SKOSEngineImpl implements SKOSEngine {
    * Static fields used in the Lucene Index
    */
   private static final String FIELD_URI = "uri";
+  private static final String FIELD_LABEL = "label";
   private static final String FIELD_PREF_LABEL = "pref";
   private static final String FIELD_ALT_LABEL = "alt";
   private static final String FIELD_HIDDEN_LABEL = "hidden";
@@ -131,10 +125,20 @@ public class SKOSEngineImpl implements SKOSEngine {
   private static final String FIELD_ALTFEMALE_LABEL = "altFemale";
   private static final String FIELD_ALTNEUTER_LABEL = "altNeuter";
   
+  /** Commit user data key of the hash of the indexed SKOS source */
+  static final String COMMIT_SOURCE_HASH = "skos.sourceHash";
+  
+  /** Commit user data key of the index format version */
+  static final String COMMIT_FORMAT_VERSION = "skos.formatVersion";
+  
+  /** Incremented on every incompatible change of the indexed fields or data */
+  static final String INDEX_FORMAT_VERSION = "8";
+  
   /**
-   * The input SKOS model
+   * Separates a label from its language tag in the label doc values, so that
+   * the values of a label in several languages sort next to each other
    */
-  private Model skosModel;
+  private static final char LANGUAGE_SEPARATOR = '\u0000';
   
   /**
    * The location of the concept index
@@ -146,6 +150,43 @@ public class SKOSEngineImpl implements SKOSEngine {
    */
   private IndexSearcher searcher;
   
+  /**
+   * The single segment of the index holding the concepts' doc values, null if
+   * the index is empty
+   */
+  private AtomicReader conceptReader;
+  
+  /**
+   * Maps each label to the docIDs of the concepts carrying it
+   */
+  private LabelDictionary labelDictionary;
+  
+  /**
+   * The token sequences of the labels matched by getConcepts()
+   */
+  private LabelTrie labelTrie;
+  
+  /**
+   * The statistics of the vocabulary, from the commit user data
+   */
+  private SKOSVocabularyProfile profile;
+  
+  /**
+   * The concept URIs by docID
+   */
+  private String[] conceptURIs;
+  
+  /**
+   * The docIDs of the concepts by the ordinal of their URI in the URI doc
+   * values
+   */
+  private int[] docsByURIOrd;
+  
+  /**
+   * The expansions of the labels of the trie looked up so far
+   */
+  private LabelExpansions.Cache labelExpansions;
+  
   /**
    * The languages to be considered when returning labels.
    * 
@@ -165,6 +206,9 @@ public class SKOSEngineImpl implements SKOSEngine {
    * given serialization language parameter, which must be either N3, RDF/XML,
    * or TURTLE.
    * 
+   * The index is kept in memory; see the constructor taking a data directory
+   * to reuse the index of the same content.
+   * 
    * @param inputStream
    *          the input stream
    * @param lang
@@ -175,25 +219,73 @@ public class SKOSEngineImpl implements SKOSEngine {
   public SKOSEngineImpl(final Version version, InputStream inputStream,
       String lang) throws IOException {
     
-    if (!("N3".equals(lang) || "RDF/XML".equals(lang) || "TURTLE".equals(lang))) {
-      throw new IOException("Invalid RDF serialization format");
-    }
-    
     matchVersion = version;
     
     analyzer = new SimpleAnalyzer(matchVersion);
     
-    skosModel = ModelFactory.createDefaultModel();
-    
-    skosModel.read(inputStream, null, lang);
+    ConceptGraphBuilder builder = new ConceptGraphBuilder();
+    SKOSSources.read(inputStream, lang, builder, null);
     
     indexDir = new RAMDirectory();
     
-    entailSKOSModel();
+    writeIndex(builder.build(), indexDir, null);
+    
+    searcher = new IndexSearcher(DirectoryReader.open(indexDir));
+    
+    loadLabelDictionary();
+  }
+  
+  /**
+   * This constructor loads the SKOS model from a given InputStream using the
+   * given serialization language parameter, which must be either N3, RDF/XML,
+   * or TURTLE, and indexes it in the given data directory. The index is
+   * addressed by the hash of the stream's content and reused by later engines
+   * reading the same content.
+   * 
+   * @param dataDir
+   *          the directory holding the indexes built from SKOS files
+   * @param inputStream
+   *          the input stream
+   * @param lang
+   *          the serialization language
+   * @throws IOException
+   *           if the model cannot be loaded
+   */
+  public SKOSEngineImpl(final Version version, File dataDir,
+      InputStream inputStream, String lang) throws IOException {
+    
+    matchVersion = version;
+    
+    analyzer = new SimpleAnalyzer(matchVersion);
+    
+    /* the index is addressed by the content it was built from */
+    byte[] content = IOUtils.toByteArray(inputStream);
+    String sourceHash = SKOSEngineRegistry.contentHash(new ByteArrayInputStream(
+        content));
+    
+    File dir = new File(dataDir, "stream-" + sourceHash);
+    
+    if (!isCurrent(dir, sourceHash)) {
+      BuildLock lock = BuildLock.obtain(dir);
+      try {
+        /* a concurrent build may have finished while waiting */
+        if (!isCurrent(dir, sourceHash)) {
+          ConceptGraphBuilder builder = new ConceptGraphBuilder();
+          SKOSSources.read(new ByteArrayInputStream(content), lang, builder,
+              null);
+          
+          indexConceptGraph(builder.build(), lock, sourceHash);
+        }
+      } finally {
+        lock.release();
+      }
+    }
     
-    indexSKOSModel();
+    indexDir = FSDirectory.open(dir);
     
     searcher = new IndexSearcher(DirectoryReader.open(indexDir));
+    
+    loadLabelDictionary();
   }
   
   /**
@@ -205,20 +297,66 @@ public class SKOSEngineImpl implements SKOSEngine {
    */
   public SKOSEngineImpl(final Version version, String filenameOrURI)
       throws IOException {
-    this(version, filenameOrURI, (String[]) null);
+    this(version, new File(DEFAULT_SKOSDATA_DIR), filenameOrURI);
   }
   
   /**
    * This constructor loads the SKOS model from a given filename or URI, starts
    * the indexing process and sets up the index searcher.
    * 
+   * An existing index is reused unless the SKOS file was modified or the index
+   * format has changed since it was built.
+   * 
    * @param languages
    *          the languages to be considered
    * @param filenameOrURI
    * @throws IOException
+   * @deprecated builds a separate index per language set; use
+   *             {@link SKOSEngineFactory}, which restricts the engine of all
+   *             languages
    */
+  @Deprecated
   public SKOSEngineImpl(final Version version, String filenameOrURI,
       String... languages) throws IOException {
+    this(version, new File(DEFAULT_SKOSDATA_DIR), filenameOrURI, languages);
+  }
+  
+  /**
+   * This constructor loads the SKOS model from a given filename or URI and
+   * indexes the labels of all languages in the given data directory, unless a
+   * current index exists.
+   * 
+   * Concurrent engines (in this and other processes) build an index only
+   * once: the index is built in a temporary directory under a lock and then
+   * renamed into place.
+   * 
+   * @param dataDir
+   *          the directory holding the indexes built from SKOS files
+   * @param filenameOrURI
+   * @throws IOException
+   */
+  public SKOSEngineImpl(final Version version, File dataDir,
+      String filenameOrURI) throws IOException {
+    this(version, dataDir, filenameOrURI, (String[]) null);
+  }
+  
+  /**
+   * This constructor indexes only the labels of the given languages, in a
+   * directory of its own.
+   * 
+   * @param dataDir
+   *          the directory holding the indexes built from SKOS files
+   * @param filenameOrURI
+   * @param languages
+   *          the languages to be considered
+   * @throws IOException
+   * @deprecated builds a separate index per language set; use
+   *             {@link SKOSEngineFactory}, which restricts the engine of all
+   *             languages
+   */
+  @Deprecated
+  public SKOSEngineImpl(final Version version, File dataDir,
+      String filenameOrURI, String... languages) throws IOException {
     matchVersion = version;
     analyzer = new SimpleAnalyzer(matchVersion);
     
@@ -228,131 +366,180 @@ public class SKOSEngineImpl implements SKOSEngine {
       langSig = "-" + StringUtils.join(this.languages, ".");
     }
     
-    String name = FilenameUtils.getName(filenameOrURI);
-    //File dir = new File("skosdata/" + name + langSig);
+    String name = FilenameUtils.getName(filenameOrURI) + langSig;
     
-    File dir = new File("/opt/webapps/solr4/ehri/portal/data/skosdata/" + name + langSig);
+    String sourceHash = SKOSSources.sourceHash(filenameOrURI);
     
-    indexDir = FSDirectory.open(dir);
+    /*
+     * each version of a local file is indexed in a directory of its own, so
+     * that a rebuild never replaces an index that engines still have open
+     */
+    File dir = new File(dataDir, sourceHash == null ? name : name + "-"
+        + sourceHash);
     
-    // TODO: Generate also if source file is modified
-    if (!dir.isDirectory()) {
-      // load the skos model from the given file
-      FileManager fileManager = new FileManager();
-      fileManager.addLocatorFile();
-      fileManager.addLocatorURL();
-      fileManager.addLocatorClassLoader(SKOSEngineImpl.class.getClassLoader());
-      
-      if (FilenameUtils.getExtension(filenameOrURI).equals("zip")) {
-        fileManager.addLocatorZip(filenameOrURI);
-        filenameOrURI = FilenameUtils.getBaseName(filenameOrURI);
+    if (!isCurrent(dir, sourceHash)) {
+      BuildLock lock = BuildLock.obtain(dir);
+      try {
+        /* a concurrent build may have finished while waiting */
+        if (!isCurrent(dir, sourceHash)) {
+          // stream the skos data from the given file
+          ConceptGraphBuilder builder = new ConceptGraphBuilder();
+          SKOSSources.load(filenameOrURI, builder, this.languages);
+          
+          indexConceptGraph(builder.build(), lock, sourceHash);
+          
+          if (sourceHash != null) {
+            deleteOutdatedIndexes(dataDir, name, dir);
+          }
+        }
+      } finally {
+        lock.release();
       }
-      
-      skosModel = fileManager.loadModel(filenameOrURI);
-      
-      entailSKOSModel();
-      
-      indexSKOSModel();
     }
     
+    indexDir = FSDirectory.open(dir);
+    
     searcher = new IndexSearcher(DirectoryReader.open(indexDir));
+    
+    loadLabelDictionary();
   }
   
-  //extended to include EHRI extension
-  private void entailSKOSModel() {
-    GraphStore graphStore = GraphStoreFactory.create(skosModel) ;
-    String sparqlQuery = StringUtils.join(new String[]{
-        "PREFIX skos: <http://www.w3.org/2004/02/skos/core#>",
-        "PREFIX skos-ehri: <http://data.ehri-project.eu/skos-extension#>",
-        "PREFIX rdf:<http://www.w3.org/1999/02/22-rdf-syntax-ns#>",
-        "INSERT { ?subject rdf:type skos:Concept }",
-        "WHERE {",
-          "{ ?subject skos:prefLabel ?text } UNION",
-          "{ ?subject skos:altLabel ?text } UNION",
-          "{ ?subject skos-ehri:prefMaleLabel ?text } UNION",
-          "{ ?subject skos-ehri:prefFemaleLabel ?text } UNION",
-          "{ ?subject skos-ehri:prefNeuterLabel ?text } UNION",
-          "{ ?subject skos-ehri:altMaleLabel ?text } UNION",
-          "{ ?subject skos-ehri:altFemaleLabel ?text } UNION",
-          "{ ?subject skos-ehri:altNeuterLabel ?text } UNION",
-          "{ ?subject skos:hiddenLabel ?text }",
-         "}",
-        }, "\n");
-    UpdateRequest request = UpdateFactory.create(sparqlQuery);
-    UpdateAction.execute(request, graphStore) ;
-  }
-
   /**
-   * Creates lucene documents from SKOS concept. In order to allow language
-   * restrictions, one document per language is created.
+   * Creates the lucene document of a SKOS concept, or null if the concept has
+   * neither labels nor relations
+   * 
+   * @param docs
+   *          the docIDs of the concepts, -1 for concepts without a document
    */
-  private Document createDocumentsFromConcept(Resource skos_concept) {
-    Document conceptDoc = new Document();
-    
-    String conceptURI = skos_concept.getURI();
-    if (conceptURI == null) {
-      System.err.println("Error when indexing concept NO_URI.");
+  private static Document createDocumentFromConcept(ConceptGraph graph,
+      int concept, int[] docs) {
+    if (docs[concept] == -1) {
       return null;
     }
     
-    Field uriField = new Field(FIELD_URI, conceptURI, StringField.TYPE_STORED);
-    conceptDoc.add(uriField);
-    
-    // store the preferred lexical labels
-    indexAnnotation(skos_concept, conceptDoc, SKOS.prefLabel, FIELD_PREF_LABEL);
-    
-    // store the alternative lexical labels
-    indexAnnotation(skos_concept, conceptDoc, SKOS.altLabel, FIELD_ALT_LABEL);
-    
-    // store the hidden lexical labels
-    indexAnnotation(skos_concept, conceptDoc, SKOS.hiddenLabel,
-        FIELD_HIDDEN_LABEL);
-    
-    // store lexical labels for EHRI extension
-    indexAnnotation(skos_concept, conceptDoc, SKOS.prefMaleLabel, FIELD_PREFMALE_LABEL);
-    indexAnnotation(skos_concept, conceptDoc, SKOS.prefFemaleLabel, FIELD_PREFFEMALE_LABEL);
-    indexAnnotation(skos_concept, conceptDoc, SKOS.prefNeuterLabel, FIELD_PREFNEUTER_LABEL);
-    indexAnnotation(skos_concept, conceptDoc, SKOS.altMaleLabel, FIELD_ALTMALE_LABEL);
-    indexAnnotation(skos_concept, conceptDoc, SKOS.altFemaleLabel, FIELD_ALTFEMALE_LABEL);
-    indexAnnotation(skos_concept, conceptDoc, SKOS.altNeuterLabel, FIELD_ALTNEUTER_LABEL);
-    
-    // store the URIs of the broader concepts
-    indexObject(skos_concept, conceptDoc, SKOS.broader, FIELD_BROADER);
-    
-    // store the URIs of the broader transitive concepts
-    indexObject(skos_concept, conceptDoc, SKOS.broaderTransitive,
-        FIELD_BROADER_TRANSITIVE);
+    Document conceptDoc = new Document();
+    String uri = graph.getURI(concept);
+    conceptDoc.add(new StringField(FIELD_URI, uri, Field.Store.NO));
+    conceptDoc.add(new SortedDocValuesField(FIELD_URI, new BytesRef(uri)));
     
-    // store the URIs of the narrower concepts
-    indexObject(skos_concept, conceptDoc, SKOS.narrower, FIELD_NARROWER);
+    /* the distinct labels of the concept, of any type */
+    Set<String> labels = new TreeSet<String>();
     
-    // store the URIs of the narrower transitive concepts
-    indexObject(skos_concept, conceptDoc, SKOS.narrowerTransitive,
-        FIELD_NARROWER_TRANSITIVE);
+    for (SKOSType type : SKOSType.values()) {
+      int start = graph.getStart(type, concept);
+      int end = graph.getEnd(type, concept);
+      if (start == end) {
+        continue;
+      }
+      
+      String field = getField(type);
+      
+      // relations are stored as the docIDs of the related concepts
+      if (ConceptGraph.isRelationType(type)) {
+        byte[] buffer = new byte[5 * (end - start)];
+        ByteArrayDataOutput out = new ByteArrayDataOutput(buffer);
+        for (int i = start; i < end; i++) {
+          int doc = docs[graph.getValue(type, i)];
+          if (doc != -1) {
+            out.writeVInt(doc);
+          }
+        }
+        conceptDoc.add(new BinaryDocValuesField(field, new BytesRef(buffer, 0,
+            out.getPosition())));
+        continue;
+      }
+      
+      /* each label is stored with its language tag */
+      for (int i = start; i < end; i++) {
+        String label = graph.getLabel(graph.getValue(type, i));
+        String language = graph.getLanguage(graph.getValueLanguage(type, i));
+        conceptDoc.add(new SortedSetDocValuesField(field, new BytesRef(label
+            + LANGUAGE_SEPARATOR + language.toLowerCase(Locale.ENGLISH))));
+        labels.add(label);
+      }
+    }
     
-    // store the URIs of the related concepts
-    indexObject(skos_concept, conceptDoc, SKOS.related, FIELD_RELATED);
+    // labels are indexed lower-cased for the label dictionary, their types
+    // are read from the doc values
+    for (String label : labels) {
+      conceptDoc.add(new StringField(FIELD_LABEL, label, Field.Store.NO));
+    }
     
     return conceptDoc;
   }
   
+  /**
+   * Returns the docIDs the concepts of a graph will have in the index: the
+   * concepts with labels or relations are indexed in concept order
+   */
+  private static int[] assignDocs(ConceptGraph graph) {
+    int[] docs = new int[graph.getNumConcepts()];
+    int doc = 0;
+    for (int concept = 0; concept < docs.length; concept++) {
+      docs[concept] = -1;
+      for (SKOSType type : SKOSType.values()) {
+        if (graph.getStart(type, concept) != graph.getEnd(type, concept)) {
+          docs[concept] = doc++;
+          break;
+        }
+      }
+    }
+    return docs;
+  }
+  
+  /** Returns the index field of a SKOSType */
+  private static String getField(SKOSType type) {
+    switch (type) {
+      case PREF:
+        return FIELD_PREF_LABEL;
+      case ALT:
+        return FIELD_ALT_LABEL;
+      case HIDDEN:
+        return FIELD_HIDDEN_LABEL;
+      case BROADER:
+        return FIELD_BROADER;
+      case NARROWER:
+        return FIELD_NARROWER;
+      case BROADERTRANSITIVE:
+        return FIELD_BROADER_TRANSITIVE;
+      case NARROWERTRANSITIVE:
+        return FIELD_NARROWER_TRANSITIVE;
+      case RELATED:
+        return FIELD_RELATED;
+      case PREFMALE:
+        return FIELD_PREFMALE_LABEL;
+      case PREFFEMALE:
+        return FIELD_PREFFEMALE_LABEL;
+      case PREFNEUTER:
+        return FIELD_PREFNEUTER_LABEL;
+      case ALTMALE:
+        return FIELD_ALTMALE_LABEL;
+      case ALTFEMALE:
+        return FIELD_ALTFEMALE_LABEL;
+      case ALTNEUTER:
+        return FIELD_ALTNEUTER_LABEL;
+      default:
+        throw new IllegalArgumentException("Unknown SKOSType " + type);
+    }
+  }
+  
   @Override
   public String[] getAltLabels(String conceptURI) throws IOException {
-    return readConceptFieldValues(conceptURI, FIELD_ALT_LABEL);
+    return readConceptFieldValues(conceptURI, SKOSType.ALT);
   }
   
   //EHRI skos extension
   @Override
   public String[] getAltMaleLabels(String conceptURI) throws IOException {
-    return readConceptFieldValues(conceptURI, FIELD_ALTMALE_LABEL);
+    return readConceptFieldValues(conceptURI, SKOSType.ALTMALE);
   }
     @Override
   public String[] getAltFemaleLabels(String conceptURI) throws IOException {
-    return readConceptFieldValues(conceptURI, FIELD_ALTFEMALE_LABEL);
+    return readConceptFieldValues(conceptURI, SKOSType.ALTFEMALE);
   }
   @Override
   public String[] getAltNeuterLabels(String conceptURI) throws IOException {
-    return readConceptFieldValues(conceptURI, FIELD_ALTNEUTER_LABEL);
+    return readConceptFieldValues(conceptURI, SKOSType.ALTNEUTER);
   }
   
   
@@ -376,8 +563,7 @@ public class SKOSEngineImpl implements SKOSEngine {
         }
       }
     } catch (Exception e) {
-      System.err
-          .println("Error when accessing SKOS Engine.\n" + e.getMessage());
+      log.error("Error when accessing SKOS Engine.", e);
     }
     
     return result.toArray(new String[result.size()]);
@@ -385,235 +571,527 @@ public class SKOSEngineImpl implements SKOSEngine {
   
   @Override
   public String[] getHiddenLabels(String conceptURI) throws IOException {
-    return readConceptFieldValues(conceptURI, FIELD_HIDDEN_LABEL);
+    return readConceptFieldValues(conceptURI, SKOSType.HIDDEN);
   }
   
   @Override
   public String[] getBroaderConcepts(String conceptURI) throws IOException {
-    return readConceptFieldValues(conceptURI, FIELD_BROADER);
+    return readConceptFieldValues(conceptURI, SKOSType.BROADER);
   }
   
   @Override
   public String[] getBroaderLabels(String conceptURI) throws IOException {
-    return getLabels(conceptURI, FIELD_BROADER);
+    return getLabels(conceptURI, SKOSType.BROADER);
   }
   
   @Override
   public String[] getBroaderTransitiveConcepts(String conceptURI)
       throws IOException {
-    return readConceptFieldValues(conceptURI, FIELD_BROADER_TRANSITIVE);
+    return readConceptFieldValues(conceptURI, SKOSType.BROADERTRANSITIVE);
   }
   
   @Override
   public String[] getBroaderTransitiveLabels(String conceptURI)
       throws IOException {
-    return getLabels(conceptURI, FIELD_BROADER_TRANSITIVE);
+    return getLabels(conceptURI, SKOSType.BROADERTRANSITIVE);
+  }
+  
+  @Override
+  public boolean hasConcept(String conceptURI) throws IOException {
+    return getDoc(conceptURI) != -1;
   }
   
   @Override
   public String[] getConcepts(String label) throws IOException {
-    List<String> concepts = new ArrayList<String>();
-    
     // convert the query to lower-case
     String queryString = label.toLowerCase();
     
-    AllDocCollector collector = new AllDocCollector();
+    int[] docs = labelDictionary.getOrdinals(queryString);
     
-    DisjunctionMaxQuery query = new DisjunctionMaxQuery(0.0f);
-    query.add(new TermQuery(new Term(FIELD_PREF_LABEL, queryString)));
-    query.add(new TermQuery(new Term(FIELD_ALT_LABEL, queryString)));
-    query.add(new TermQuery(new Term(FIELD_HIDDEN_LABEL, queryString)));
-    query.add(new TermQuery(new Term(FIELD_PREFMALE_LABEL, queryString)));
-    query.add(new TermQuery(new Term(FIELD_PREFFEMALE_LABEL, queryString)));
-    query.add(new TermQuery(new Term(FIELD_PREFNEUTER_LABEL, queryString)));
-    query.add(new TermQuery(new Term(FIELD_ALTMALE_LABEL, queryString)));
-    query.add(new TermQuery(new Term(FIELD_ALTFEMALE_LABEL, queryString)));
-    query.add(new TermQuery(new Term(FIELD_ALTNEUTER_LABEL, queryString)));
-    searcher.search(query, collector);
+    if (docs == null) {
+      return new String[0];
+    }
     
-    for (Integer hit : collector.getDocs()) {
-      Document doc = searcher.doc(hit);
-      String conceptURI = doc.getValues(FIELD_URI)[0];
-      concepts.add(conceptURI);
+    String[] concepts = new String[docs.length];
+    for (int i = 0; i < docs.length; i++) {
+      concepts[i] = conceptURIs[docs[i]];
     }
     
-    return concepts.toArray(new String[concepts.size()]);
+    return concepts;
   }
   
-  private String[] getLabels(String conceptURI, String field)
-      throws IOException {
-    List<String> labels = new ArrayList<String>();
-    String[] concepts = readConceptFieldValues(conceptURI, field);
+  @Override
+  public SKOSBatchResult getConcepts(String[] labels) throws IOException {
+    SKOSBatchResult.Builder result = new SKOSBatchResult.Builder(
+        labels.length, null);
+    for (String label : labels) {
+      int[] docs = labelDictionary.getOrdinals(label.toLowerCase());
+      if (docs != null) {
+        for (int doc : docs) {
+          result.add(conceptURIs[doc]);
+        }
+      }
+      result.next();
+    }
+    return result.build();
+  }
+  
+  @Override
+  public SKOSBatchResult getLabels(String[] conceptURIs,
+      EnumSet<SKOSType> types) throws IOException {
+    final SKOSBatchResult.Builder result = new SKOSBatchResult.Builder(
+        conceptURIs.length, types);
+    ExpansionSink sink = new ExpansionSink() {
+      @Override
+      public void add(String label, SKOSType type) {
+        result.add(label);
+      }
+    };
+    for (int doc : getDocs(conceptURIs)) {
+      for (SKOSType type : types) {
+        if (doc != -1) {
+          expand(doc, type, SKOSLanguages.ALL, sink);
+        }
+        result.next();
+      }
+    }
+    return result.build();
+  }
+  
+  @Override
+  public void expand(String conceptURI, EnumSet<SKOSType> types,
+      ExpansionSink sink) throws IOException {
+    expand(conceptURI, types, SKOSLanguages.ALL, sink);
+  }
+  
+  @Override
+  public void expand(String conceptURI, EnumSet<SKOSType> types,
+      long languages, ExpansionSink sink) throws IOException {
+    int doc = getDoc(conceptURI);
+    if (doc == -1) {
+      return;
+    }
+    for (SKOSType type : types) {
+      expand(doc, type, languages, sink);
+    }
+  }
+  
+  /**
+   * Passes the labels in the given languages of a given type for a concept to
+   * a sink, reading the labels of the related concepts for relation types
+   */
+  private void expand(int doc, SKOSType type, long languages,
+      ExpansionSink sink) throws IOException {
+    if (!ConceptGraph.isRelationType(type)) {
+      readLabels(doc, type, type, languages, sink);
+      return;
+    }
+    for (int target : readTargets(doc, type)) {
+      for (SKOSType labelType : ConceptGraph.EXPANSION_LABEL_TYPES) {
+        readLabels(target, labelType, type, languages, sink);
+      }
+    }
+  }
+  
+  /**
+   * Passes the labels in the given languages of a given type of a concept to
+   * a sink, as labels of the given sink type. A label carried in several of
+   * the languages is passed once.
+   */
+  private void readLabels(int doc, SKOSType labelType, SKOSType sinkType,
+      long languages, ExpansionSink sink) throws IOException {
+    SortedSetDocValues values = conceptReader
+        .getSortedSetDocValues(getField(labelType));
+    if (values == null) {
+      return;
+    }
+    BytesRef bytes = new BytesRef();
+    String previous = null;
+    values.setDocument(doc);
+    long ord;
+    while ((ord = values.nextOrd()) != SortedSetDocValues.NO_MORE_ORDS) {
+      values.lookupOrd(ord, bytes);
+      String value = bytes.utf8ToString();
+      int separator = value.lastIndexOf(LANGUAGE_SEPARATOR);
+      String label = value.substring(0, separator);
+      if ((SKOSLanguages.getBit(value.substring(separator + 1)) & languages) != 0
+          && !label.equals(previous)) {
+        sink.add(label, sinkType);
+        previous = label;
+      }
+    }
+  }
+  
+  /**
+   * Returns the docIDs of the concepts related to a concept by a relation type
+   */
+  private int[] readTargets(int doc, SKOSType type) throws IOException {
+    BinaryDocValues values = conceptReader.getBinaryDocValues(getField(type));
+    if (values == null) {
+      return new int[0];
+    }
+    BytesRef bytes = new BytesRef();
+    values.get(doc, bytes);
     
-    for (String aConceptURI : concepts) {
-      String[] prefLabels = getPrefLabels(aConceptURI);
-      labels.addAll(Arrays.asList(prefLabels));
-      
-      String[] altLabels = getAltLabels(aConceptURI);
-      labels.addAll(Arrays.asList(altLabels));
-      
-      //EHRI-skos extension
-      String[] prefMaleLabels = getPrefMaleLabels(aConceptURI);
-      labels.addAll(Arrays.asList(prefMaleLabels));
-      String[] prefFemaleLabels = getPrefFemaleLabels(aConceptURI);
-      labels.addAll(Arrays.asList(prefFemaleLabels));
-      String[] prefNeuterLabels = getPrefNeuterLabels(aConceptURI);
-      labels.addAll(Arrays.asList(prefNeuterLabels));
-      String[] altMaleLabels = getAltMaleLabels(aConceptURI);
-      labels.addAll(Arrays.asList(altMaleLabels));
-      String[] altFemaleLabels = getAltFemaleLabels(aConceptURI);
-      labels.addAll(Arrays.asList(altFemaleLabels));
-      String[] altNeuterLabels = getAltNeuterLabels(aConceptURI);
-      labels.addAll(Arrays.asList(altNeuterLabels));
-      
+    /* concepts without the relation have an empty value */
+    ByteArrayDataInput in = new ByteArrayDataInput(bytes.bytes, bytes.offset,
+        bytes.length);
+    int[] targets = new int[bytes.length];
+    int size = 0;
+    while (!in.eof()) {
+      targets[size++] = in.readVInt();
+    }
+    return Arrays.copyOf(targets, size);
+  }
+  
+  /**
+   * Returns the docIDs of the given concepts, -1 for unknown ones
+   */
+  private int[] getDocs(String[] uris) throws IOException {
+    int[] docs = new int[uris.length];
+    for (int i = 0; i < uris.length; i++) {
+      docs[i] = getDoc(uris[i]);
+    }
+    return docs;
+  }
+  
+  /**
+   * Returns the docID of a concept, -1 if it is unknown. The URI is looked up
+   * in the terms of the URI doc values, whose ordinals map to the docIDs.
+   */
+  private int getDoc(String uri) throws IOException {
+    if (conceptReader == null) {
+      return -1;
+    }
+    int ord = conceptReader.getSortedDocValues(FIELD_URI).lookupTerm(
+        new BytesRef(uri));
+    return ord < 0 ? -1 : docsByURIOrd[ord];
+  }
+  
+  /**
+   * Compiles the label field of the index into the label dictionary and
+   * trie, straight from the postings, and maps the URIs of all
+   * concepts to their docIDs and back, from the doc values. The vocabulary
+   * profile is read from the commit user data.
+   */
+  private void loadLabelDictionary() throws IOException {
+    IndexReader reader = searcher.getIndexReader();
+    List<AtomicReaderContext> leaves = reader.leaves();
+    if (leaves.size() > 1) {
+      throw new IOException("The concept index " + indexDir
+          + " must have a single segment");
+    }
+    conceptReader = leaves.isEmpty() ? null : leaves.get(0).reader();
+    profile = SKOSVocabularyProfile.fromMap(((DirectoryReader) reader)
+        .getIndexCommit().getUserData());
+    
+    conceptURIs = new String[reader.maxDoc()];
+    LabelDictionary.DictionaryBuilder builder = new LabelDictionary.DictionaryBuilder();
+    LabelTrie.Builder trie = new LabelTrie.Builder();
+    
+    if (conceptReader == null) {
+      labelDictionary = builder.finish();
+      labelTrie = trie.build();
+      labelExpansions = newLabelExpansions();
+      return;
+    }
+    
+    SortedDocValues uris = conceptReader.getSortedDocValues(FIELD_URI);
+    docsByURIOrd = new int[uris.getValueCount()];
+    BytesRef uri = new BytesRef();
+    for (int doc = 0; doc < conceptURIs.length; doc++) {
+      int ord = uris.getOrd(doc);
+      uris.lookupOrd(ord, uri);
+      conceptURIs[doc] = uri.utf8ToString();
+      docsByURIOrd[ord] = doc;
     }
     
+    Bits liveDocs = conceptReader.getLiveDocs();
+    Terms labels = conceptReader.terms(FIELD_LABEL);
+    if (labels != null) {
+      TermsEnum termsEnum = labels.iterator(null);
+      DocsEnum docsEnum = null;
+      BytesRef term;
+      while ((term = termsEnum.next()) != null) {
+        String label = term.utf8ToString();
+        trie.add(label);
+        docsEnum = termsEnum.docs(liveDocs, docsEnum, DocsEnum.FLAG_NONE);
+        int doc;
+        while ((doc = docsEnum.nextDoc()) != DocIdSetIterator.NO_MORE_DOCS) {
+          builder.add(label, doc);
+        }
+      }
+    }
+    
+    labelDictionary = builder.finish();
+    labelTrie = trie.build();
+    labelExpansions = newLabelExpansions();
+  }
+  
+  /**
+   * Returns a cache of the expansions of the labels of the trie, computed
+   * through the concepts carrying each label
+   */
+  private LabelExpansions.Cache newLabelExpansions() {
+    return new LabelExpansions.Cache(labelTrie, new LabelExpansions.Expander() {
+      @Override
+      public SKOSExpansion expand(String label, EnumSet<SKOSType> types,
+          long languages) throws IOException {
+        return SKOSExpansion.expand(SKOSEngineImpl.this, label, types,
+            languages);
+      }
+    });
+  }
+  
+  @Override
+  public LabelTrie getLabelTrie() {
+    return labelTrie;
+  }
+  
+  @Override
+  public SKOSVocabularyProfile getProfile() {
+    return profile;
+  }
+  
+  @Override
+  public LabelExpansions getLabelExpansions(EnumSet<SKOSType> types,
+      long languages) {
+    return labelExpansions.get(types, languages);
+  }
+  
+  @Override
+  public SKOSExpansion getExpansion(String label) throws IOException {
+    return getExpansion(label, SKOSLanguages.ALL);
+  }
+  
+  @Override
+  public SKOSExpansion getExpansion(String label, long languages)
+      throws IOException {
+    return labelExpansions.getExpansion(label.toLowerCase(), languages);
+  }
+  
+  /**
+   * Returns the labels (pref, alt and EHRI labels) of the concepts related to
+   * a given concept by a relation type
+   */
+  private String[] getLabels(String conceptURI, SKOSType type)
+      throws IOException {
+    final List<String> labels = new ArrayList<String>();
+    expand(conceptURI, EnumSet.of(type), new ExpansionSink() {
+      @Override
+      public void add(String label, SKOSType labelType) {
+        labels.add(label);
+      }
+    });
     return labels.toArray(new String[labels.size()]);
   }
   
   @Override
   public String[] getNarrowerConcepts(String conceptURI) throws IOException {
-    return readConceptFieldValues(conceptURI, FIELD_NARROWER);
+    return readConceptFieldValues(conceptURI, SKOSType.NARROWER);
   }
   
   @Override
   public String[] getNarrowerLabels(String conceptURI) throws IOException {
-    return getLabels(conceptURI, FIELD_NARROWER);
+    return getLabels(conceptURI, SKOSType.NARROWER);
   }
   
   @Override
   public String[] getNarrowerTransitiveConcepts(String conceptURI)
       throws IOException {
-    return readConceptFieldValues(conceptURI, FIELD_NARROWER_TRANSITIVE);
+    return readConceptFieldValues(conceptURI, SKOSType.NARROWERTRANSITIVE);
   }
   
   @Override
   public String[] getNarrowerTransitiveLabels(String conceptURI)
       throws IOException {
-    return getLabels(conceptURI, FIELD_NARROWER_TRANSITIVE);
+    return getLabels(conceptURI, SKOSType.NARROWERTRANSITIVE);
   }
   
   @Override
   public String[] getPrefLabels(String conceptURI) throws IOException {
-    return readConceptFieldValues(conceptURI, FIELD_PREF_LABEL);
+    return readConceptFieldValues(conceptURI, SKOSType.PREF);
   }
   
   @Override
   public String[] getRelatedConcepts(String conceptURI) throws IOException {
-    return readConceptFieldValues(conceptURI, FIELD_RELATED);
+    return readConceptFieldValues(conceptURI, SKOSType.RELATED);
   }
   
   @Override
   public String[] getRelatedLabels(String conceptURI) throws IOException {
-    return getLabels(conceptURI, FIELD_RELATED);
+    return getLabels(conceptURI, SKOSType.RELATED);
   }
   
   @Override
   public String[] getPrefMaleLabels(String conceptURI) throws IOException {
-    return readConceptFieldValues(conceptURI, FIELD_PREFMALE_LABEL);
+    return readConceptFieldValues(conceptURI, SKOSType.PREFMALE);
   }
   
   @Override
   public String[] getPrefFemaleLabels(String conceptURI) throws IOException {
-    return readConceptFieldValues(conceptURI, FIELD_PREFFEMALE_LABEL);
+    return readConceptFieldValues(conceptURI, SKOSType.PREFFEMALE);
   }
   
   @Override
   public String[] getPrefNeuterLabels(String conceptURI) throws IOException {
-    return readConceptFieldValues(conceptURI, FIELD_PREFNEUTER_LABEL);
+    return readConceptFieldValues(conceptURI, SKOSType.PREFNEUTER);
   }
   
-  private void indexAnnotation(Resource skos_concept, Document conceptDoc,
-      AnnotationProperty property, String field) {
-    StmtIterator stmt_iter = skos_concept.listProperties(property);
-    while (stmt_iter.hasNext()) {
-      Literal labelLiteral = stmt_iter.nextStatement().getObject()
-          .as(Literal.class);
-      String label = labelLiteral.getLexicalForm();
-      String labelLang = labelLiteral.getLanguage();
-      
-      if (this.languages != null && !this.languages.contains(labelLang)) {
-        continue;
+  /**
+   * Returns true if the given directory holds an index of the current format
+   * version built from the given source. A null source hash matches any
+   * source.
+   */
+  private static boolean isCurrent(File dir, String sourceHash)
+      throws IOException {
+    if (!dir.isDirectory()) {
+      return false;
+    }
+    
+    Map<String,String> userData;
+    Directory directory = FSDirectory.open(dir);
+    try {
+      if (!DirectoryReader.indexExists(directory)) {
+        return false;
       }
-      
-      // converting label to lower-case
-      label = label.toLowerCase();
-      
-      Field labelField = new Field(field, label, StringField.TYPE_STORED);
-      
-      conceptDoc.add(labelField);
+      List<IndexCommit> commits = DirectoryReader.listCommits(directory);
+      userData = commits.get(commits.size() - 1).getUserData();
+    } finally {
+      directory.close();
     }
+    
+    if (!INDEX_FORMAT_VERSION.equals(userData.get(COMMIT_FORMAT_VERSION))) {
+      log.info("Rebuilding SKOS index {}: outdated index format", dir);
+      return false;
+    }
+    if (sourceHash != null
+        && !sourceHash.equals(userData.get(COMMIT_SOURCE_HASH))) {
+      log.info("Rebuilding SKOS index {}: SKOS source modified", dir);
+      return false;
+    }
+    return true;
   }
   
-  private void indexObject(Resource skos_concept, Document conceptDoc,
-      ObjectProperty property, String field) {
-    StmtIterator stmt_iter = skos_concept.listProperties(property);
-    while (stmt_iter.hasNext()) {
-      RDFNode concept = stmt_iter.nextStatement().getObject();
-      
-      if (!concept.canAs(Resource.class)) {
-        System.err.println("Error when indexing relationship of concept "
-            + skos_concept.getURI() + ".");
-        continue;
-      }
-      
-      Resource resource = concept.as(Resource.class);
-      
-      String uri = resource.getURI();
-      if (uri == null) {
-        System.err.println("Error when indexing relationship of concept "
-            + skos_concept.getURI() + ".");
-        continue;
+  /**
+   * Deletes the indexes built from other versions of a SKOS file than the
+   * current one. Engines that still have them open keep reading them, except
+   * on Windows, where they are left behind.
+   */
+  private static void deleteOutdatedIndexes(File dataDir, String name,
+      File current) {
+    File[] files = dataDir.listFiles();
+    if (files == null) {
+      return;
+    }
+    for (File file : files) {
+      String fileName = file.getName();
+      if (file.isDirectory() && !fileName.equals(current.getName())
+          && fileName.startsWith(name + "-")
+          && fileName.substring(name.length() + 1).matches("[0-9a-f]{32}")) {
+        FileUtils.deleteQuietly(file);
       }
-      
-      Field conceptField = new Field(field, uri, StringField.TYPE_STORED);
-      
-      conceptDoc.add(conceptField);
     }
   }
   
   /**
-   * Creates the synonym index
+   * Creates the synonym index in a temporary directory and publishes it,
+   * replacing any existing one
    * 
+   * @param graph
+   *          the concepts streamed from the SKOS source
+   * @param lock
+   *          the build lock of the index
+   * @param sourceHash
+   *          the hash of the SKOS source, recorded with the index
    * @throws IOException
    */
-  private void indexSKOSModel() throws IOException {
+  private void indexConceptGraph(ConceptGraph graph, BuildLock lock,
+      String sourceHash) throws IOException {
+    File tmp = lock.getTempFile();
+    Directory buildDir = FSDirectory.open(tmp);
+    writeIndex(graph, buildDir, sourceHash);
+    buildDir.close();
+    
+    lock.publish(tmp);
+  }
+  
+  /**
+   * Writes the synonym index of a concept graph to an empty directory
+   * 
+   * @param sourceHash
+   *          the hash of the SKOS source, recorded with the index; may be
+   *          null
+   */
+  private void writeIndex(ConceptGraph graph, Directory buildDir,
+      String sourceHash) throws IOException {
     IndexWriterConfig cfg = new IndexWriterConfig(matchVersion, analyzer);
-    IndexWriter writer = new IndexWriter(indexDir, cfg);
+    cfg.setOpenMode(OpenMode.CREATE);
+    /* merges keep the documents in concept order, see assignDocs() */
+    cfg.setMergePolicy(new LogByteSizeMergePolicy());
+    IndexWriter writer = new IndexWriter(buildDir, cfg);
     writer.getConfig().setRAMBufferSizeMB(48);
     
     /* iterate SKOS concepts, create Lucene docs and add them to the index */
-    ResIterator concept_iter = skosModel.listResourcesWithProperty(RDF.type,
-        SKOS.Concept);
-    while (concept_iter.hasNext()) {
-      Resource skos_concept = concept_iter.next();
-      
-      Document concept_doc = createDocumentsFromConcept(skos_concept);
+    int[] docs = assignDocs(graph);
+    for (int concept = 0; concept < graph.getNumConcepts(); concept++) {
+      Document concept_doc = createDocumentFromConcept(graph, concept, docs);
       if (concept_doc != null) {
         writer.addDocument(concept_doc);
       }
     }
     
+    Map<String,String> userData = new HashMap<String,String>(
+        ConceptGraphProfiler.profile(graph).toMap());
+    userData.put(COMMIT_FORMAT_VERSION, INDEX_FORMAT_VERSION);
+    if (sourceHash != null) {
+      userData.put(COMMIT_SOURCE_HASH, sourceHash);
+    }
+    writer.setCommitData(userData);
+    
+    /* the relations refer to the docIDs of a single segment */
+    writer.forceMerge(1);
     writer.close();
   }
   
-  /** Returns the values of a given field for a given concept */
-  private String[] readConceptFieldValues(String conceptURI, String field)
+  /**
+   * Returns the labels of a given label type, or the URIs of the related
+   * concepts of a given relation type, for a given concept
+   */
+  private String[] readConceptFieldValues(String conceptURI, SKOSType type)
       throws IOException {
+    int doc = getDoc(conceptURI);
     
-    Query query = new TermQuery(new Term(FIELD_URI, conceptURI));
-    
-    TopDocs docs = searcher.search(query, 1);
-    
-    ScoreDoc[] results = docs.scoreDocs;
-    
-    if (results.length != 1) {
-      System.out.println("Unknown concept " + conceptURI);
+    if (doc == -1) {
+      log.debug("Unknown concept {}", conceptURI);
       return null;
     }
     
-    Document conceptDoc = searcher.doc(results[0].doc);
+    if (ConceptGraph.isRelationType(type)) {
+      int[] targets = readTargets(doc, type);
+      String[] values = new String[targets.length];
+      for (int i = 0; i < targets.length; i++) {
+        values[i] = conceptURIs[targets[i]];
+      }
+      return values;
+    }
     
-    return conceptDoc.getValues(field);
+    final List<String> values = new ArrayList<String>();
+    readLabels(doc, type, type, SKOSLanguages.ALL, new ExpansionSink() {
+      @Override
+      public void add(String label, SKOSType labelType) {
+        values.add(label);
+      }
+    });
+    return values.toArray(new String[values.size()]);
+  }
+  
+  @Override
+  public void close() throws IOException {
+    try {
+      searcher.getIndexReader().close();
+    } finally {
+      indexDir.close();
+    }
   }
 }
@@ -0,0 +1,787 @@
+package at.ac.univie.mminf.luceneSKOS.skos.impl;
+
+/**
+ * Copyright 2010 Bernhard Haslhofer 
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.StringUtils;
+import org.apache.lucene.util.Version;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import at.ac.univie.mminf.luceneSKOS.analysis.tokenattributes.SKOSTypeAttribute.SKOSType;
+import at.ac.univie.mminf.luceneSKOS.skos.ExpansionSink;
+import at.ac.univie.mminf.luceneSKOS.skos.LabelExpansions;
+import at.ac.univie.mminf.luceneSKOS.skos.LabelTrie;
+import at.ac.univie.mminf.luceneSKOS.skos.SKOSBatchResult;
+import at.ac.univie.mminf.luceneSKOS.skos.SKOSEngine;
+import at.ac.univie.mminf.luceneSKOS.skos.SKOSEngineFactory;
+import at.ac.univie.mminf.luceneSKOS.skos.SKOSEngineRegistry;
+import at.ac.univie.mminf.luceneSKOS.skos.SKOSExpansion;
+import at.ac.univie.mminf.luceneSKOS.skos.SKOSLanguages;
+import at.ac.univie.mminf.luceneSKOS.skos.SKOSPatch;
+import at.ac.univie.mminf.luceneSKOS.skos.SKOSVocabularyProfile;
+
+/**
+ * An in-memory SKOSEngine implementation backed by a {@link ConceptGraph}.
+ * 
+ * Concepts get dense int ids when the vocabulary is loaded; labels and
+ * relations are kept in primitive arrays, so that every lookup is an array
+ * read instead of an index search.
+ * 
+ * All labels are converted to lowercase
+ */
+public class SKOSGraphEngineImpl implements SKOSEngine {
+  
+  private static final Logger log = LoggerFactory
+      .getLogger(SKOSGraphEngineImpl.class);
+  
+  /** The suffix of the snapshot files written under skosdata */
+  public static final String SNAPSHOT_SUFFIX = ".graph";
+  
+  private static final SKOSType[] TYPES = SKOSType.values();
+  
+  protected final Version matchVersion;
+  
+  /**
+   * The compiled vocabulary
+   */
+  private final ConceptGraph graph;
+  
+  
+  /**
+   * The bits of the graph's languages in a language mask, by language id
+   */
+  private final long[] languageBits;
+  
+  /**
+   * The token sequences of the labels matched by getConcepts()
+   */
+  private final LabelTrie labelTrie;
+  
+  /**
+   * The expansions of the labels of the trie looked up so far; each is
+   * computed on its first lookup
+   */
+  private final LabelExpansions.Cache labelExpansions;
+  
+  /**
+   * The statistics of the vocabulary
+   */
+  private final SKOSVocabularyProfile profile;
+  
+  /**
+   * The languages to be considered when returning labels.
+   * 
+   * If NULL, all languages are supported
+   */
+  private Set<String> languages;
+  
+  /**
+   * This constructor loads the SKOS model from a given InputStream using the
+   * given serialization language parameter, which must be either N3, RDF/XML,
+   * or TURTLE.
+   * 
+   * The graph is kept in memory only; see the constructor taking a data
+   * directory to reuse the graph of the same content.
+   * 
+   * @param inputStream
+   *          the input stream
+   * @param lang
+   *          the serialization language
+   * @throws IOException
+   *           if the model cannot be loaded
+   */
+  public SKOSGraphEngineImpl(final Version version, InputStream inputStream,
+      String lang) throws IOException {
+    this(version, read(inputStream, lang), (Set<String>) null);
+  }
+  
+  /**
+   * This constructor loads the SKOS model from a given InputStream and
+   * snapshots the compiled graph in the given data directory, addressed by the
+   * hash of the stream's content and reused by later engines reading the same
+   * content.
+   * 
+   * @param dataDir
+   *          the directory holding the snapshots built from SKOS files
+   * @param inputStream
+   *          the input stream
+   * @param lang
+   *          the serialization language
+   * @throws IOException
+   *           if the model cannot be loaded
+   */
+  public SKOSGraphEngineImpl(final Version version, File dataDir,
+      InputStream inputStream, String lang) throws IOException {
+    matchVersion = version;
+    
+    byte[] content = IOUtils.toByteArray(inputStream);
+    String sourceHash = SKOSEngineRegistry.contentHash(new ByteArrayInputStream(
+        content));
+    File snapshot = new File(dataDir, "stream-" + sourceHash + SNAPSHOT_SUFFIX);
+    
+    ConceptGraph loaded = readSnapshot(snapshot, sourceHash);
+    if (loaded == null) {
+      BuildLock lock = BuildLock.obtain(snapshot);
+      try {
+        /* a concurrent build may have finished while waiting */
+        loaded = readSnapshot(snapshot, sourceHash);
+        if (loaded == null) {
+          ConceptGraphBuilder builder = new ConceptGraphBuilder();
+          SKOSSources.read(new ByteArrayInputStream(content), lang, builder,
+              null);
+          loaded = builder.build();
+          
+          ConceptGraphSnapshot.write(loaded, snapshot, sourceHash);
+        }
+      } finally {
+        lock.release();
+      }
+    }
+    
+    graph = loaded;
+    languageBits = buildLanguageBits(graph);
+    labelTrie = buildLabelTrie(graph);
+    labelExpansions = newLabelExpansions();
+    profile = ConceptGraphProfiler.profile(graph);
+  }
+  
+  /**
+   * Constructor for all label-languages
+   * 
+   * @param filenameOrURI
+   *          the name of the skos file to be loaded
+   * @throws IOException
+   */
+  public SKOSGraphEngineImpl(final Version version, String filenameOrURI)
+      throws IOException {
+    this(version, new File(SKOSEngineImpl.DEFAULT_SKOSDATA_DIR), filenameOrURI);
+  }
+  
+  /**
+   * This constructor loads the SKOS model from a given filename or URI and
+   * compiles it into the concept graph. The graph is written to a snapshot
+   * under skosdata, which is opened instead of the SKOS file until the file is
+   * modified.
+   * 
+   * @param languages
+   *          the languages to be considered
+   * @param filenameOrURI
+   * @throws IOException
+   * @deprecated builds a separate snapshot per language set; use
+   *             {@link SKOSEngineFactory}, which restricts the engine of all
+   *             languages
+   */
+  @Deprecated
+  public SKOSGraphEngineImpl(final Version version, String filenameOrURI,
+      String... languages) throws IOException {
+    this(version, new File(SKOSEngineImpl.DEFAULT_SKOSDATA_DIR), filenameOrURI,
+        languages);
+  }
+  
+  /**
+   * This constructor loads the SKOS model from a given filename or URI and
+   * compiles the labels of all languages into the concept graph, unless a
+   * current snapshot exists in the given data directory. Concurrent engines
+   * (in this and other processes) build a snapshot only once.
+   * 
+   * @param dataDir
+   *          the directory holding the snapshots built from SKOS files
+   * @param filenameOrURI
+   * @throws IOException
+   */
+  public SKOSGraphEngineImpl(final Version version, File dataDir,
+      String filenameOrURI) throws IOException {
+    this(version, dataDir, filenameOrURI, (String[]) null);
+  }
+  
+  /**
+   * This constructor compiles only the labels of the given languages, into a
+   * snapshot of its own.
+   * 
+   * @param dataDir
+   *          the directory holding the snapshots built from SKOS files
+   * @param filenameOrURI
+   * @param languages
+   *          the languages to be considered
+   * @throws IOException
+   * @deprecated builds a separate snapshot per language set; use
+   *             {@link SKOSEngineFactory}, which restricts the engine of all
+   *             languages
+   */
+  @Deprecated
+  public SKOSGraphEngineImpl(final Version version, File dataDir,
+      String filenameOrURI, String... languages) throws IOException {
+    matchVersion = version;
+    
+    String langSig = "";
+    if (languages != null) {
+      this.languages = new TreeSet<String>(Arrays.asList(languages));
+      langSig = "-" + StringUtils.join(this.languages, ".");
+    }
+    
+    String name = FilenameUtils.getName(filenameOrURI);
+    File snapshot = new File(dataDir, name + langSig + SNAPSHOT_SUFFIX);
+    
+    String sourceHash = SKOSSources.sourceHash(filenameOrURI);
+    
+    ConceptGraph loaded = readSnapshot(snapshot, sourceHash);
+    if (loaded == null) {
+      BuildLock lock = BuildLock.obtain(snapshot);
+      try {
+        /* a concurrent build may have finished while waiting */
+        loaded = readSnapshot(snapshot, sourceHash);
+        if (loaded == null) {
+          ConceptGraphBuilder builder = new ConceptGraphBuilder();
+          SKOSSources.load(filenameOrURI, builder, this.languages);
+          loaded = builder.build();
+          
+          ConceptGraphSnapshot.write(loaded, snapshot, sourceHash);
+        }
+      } finally {
+        lock.release();
+      }
+    }
+    
+    graph = loaded;
+    languageBits = buildLanguageBits(graph);
+    labelTrie = buildLabelTrie(graph);
+    labelExpansions = newLabelExpansions();
+    profile = ConceptGraphProfiler.profile(graph);
+  }
+  
+  /**
+   * This constructor opens a snapshot written by {@link ConceptGraphSnapshot}.
+   * 
+   * @param snapshot
+   *          the snapshot file
+   * @param preTouch
+   *          whether to load the mapped snapshot into memory before decoding
+   * @throws IOException
+   *           if the snapshot is invalid
+   */
+  public SKOSGraphEngineImpl(final Version version, File snapshot,
+      boolean preTouch) throws IOException {
+    matchVersion = version;
+    graph = ConceptGraphSnapshot.read(snapshot, preTouch);
+    languageBits = buildLanguageBits(graph);
+    labelTrie = buildLabelTrie(graph);
+    labelExpansions = newLabelExpansions();
+    profile = ConceptGraphProfiler.profile(graph);
+  }
+  
+  private SKOSGraphEngineImpl(Version version, ConceptGraph graph,
+      Set<String> languages) {
+    matchVersion = version;
+    this.graph = graph;
+    this.languages = languages;
+    languageBits = buildLanguageBits(graph);
+    labelTrie = buildLabelTrie(graph);
+    labelExpansions = newLabelExpansions();
+    profile = ConceptGraphProfiler.profile(graph);
+  }
+  
+  /**
+   * Returns an engine for the vocabulary of this engine with the given patch
+   * applied. This engine is not modified.
+   * 
+   * The graph is recompiled from the data of this engine instead of the SKOS
+   * source, so the cost does not depend on parsing the vocabulary. It is not
+   * an incremental update though: the whole graph is copied, sorted and its
+   * transitive closure recomputed, and the label trie and profile are built
+   * again, so applying a patch of a single triple costs about as much as
+   * building the graph. Deleting a broader, narrower or related relation
+   * deletes its inverse as well; the transitive relations are recomputed from
+   * broader and the authored transitive relations.
+   */
+  public SKOSGraphEngineImpl apply(SKOSPatch patch) {
+    ConceptGraphBuilder builder = new ConceptGraphBuilder(graph);
+    ConceptGraphSink sink = new ConceptGraphSink(builder, languages);
+    for (int i = 0; i < patch.size(); i++) {
+      sink.setRemoving(!patch.isAddition(i));
+      sink.triple(patch.getTriple(i));
+    }
+    return new SKOSGraphEngineImpl(matchVersion, builder.build(), languages);
+  }
+  
+  /**
+   * Returns the compiled vocabulary backing this engine
+   */
+  public ConceptGraph getGraph() {
+    return graph;
+  }
+  
+  /**
+   * Compiles the SKOS model read from a stream into a concept graph
+   */
+  private static ConceptGraph read(InputStream inputStream, String lang)
+      throws IOException {
+    ConceptGraphBuilder builder = new ConceptGraphBuilder();
+    SKOSSources.read(inputStream, lang, builder, null);
+    return builder.build();
+  }
+  
+  /**
+   * Returns the graph of an existing, current snapshot, or null if it has to
+   * be rebuilt
+   */
+  private static ConceptGraph readSnapshot(File snapshot, String sourceHash) {
+    if (!snapshot.isFile()) {
+      return null;
+    }
+    try {
+      return ConceptGraphSnapshot.read(snapshot, false, sourceHash);
+    } catch (IOException e) {
+      log.info("Rebuilding SKOS snapshot {}: {}", snapshot, e.getMessage());
+      return null;
+    }
+  }
+  
+  /**
+   * Returns the bits of the languages of a graph, see {@link SKOSLanguages}
+   */
+  private static long[] buildLanguageBits(ConceptGraph graph) {
+    long[] bits = new long[graph.getNumLanguages()];
+    for (int l = 0; l < bits.length; l++) {
+      bits[l] = SKOSLanguages.getBit(graph.getLanguage(l));
+    }
+    return bits;
+  }
+  
+  /**
+   * Compiles the labels of the graph carried by any concept into a trie
+   */
+  private static LabelTrie buildLabelTrie(ConceptGraph graph) {
+    LabelTrie.Builder builder = new LabelTrie.Builder();
+    for (int label = 0; label < graph.getNumLabels(); label++) {
+      if (graph.getLabelConceptsStart(label) != graph
+          .getLabelConceptsEnd(label)) {
+        builder.add(graph.getLabel(label));
+      }
+    }
+    return builder.build();
+  }
+  
+  @Override
+  public boolean hasConcept(String conceptURI) {
+    return graph.getConceptId(conceptURI) != -1;
+  }
+  
+  @Override
+  public String[] getConcepts(String label) throws IOException {
+    int labelId = graph.getLabelId(label.toLowerCase());
+    if (labelId == -1) {
+      return new String[0];
+    }
+    
+    int start = graph.getLabelConceptsStart(labelId);
+    int end = graph.getLabelConceptsEnd(labelId);
+    
+    String[] result = new String[end - start];
+    for (int i = start; i < end; i++) {
+      result[i - start] = graph.getURI(graph.getLabelConcept(i));
+    }
+    return result;
+  }
+  
+  @Override
+  public SKOSBatchResult getConcepts(String[] labels) throws IOException {
+    SKOSBatchResult.Builder result = new SKOSBatchResult.Builder(
+        labels.length, null);
+    for (String label : labels) {
+      int labelId = graph.getLabelId(label.toLowerCase());
+      if (labelId != -1) {
+        for (int i = graph.getLabelConceptsStart(labelId); i < graph
+            .getLabelConceptsEnd(labelId); i++) {
+          result.add(graph.getURI(graph.getLabelConcept(i)));
+        }
+      }
+      result.next();
+    }
+    return result.build();
+  }
+  
+  @Override
+  public SKOSBatchResult getLabels(String[] conceptURIs,
+      EnumSet<SKOSType> types) throws IOException {
+    final SKOSBatchResult.Builder result = new SKOSBatchResult.Builder(
+        conceptURIs.length, types);
+    ExpansionSink sink = new ExpansionSink() {
+      @Override
+      public void add(String label, SKOSType type) {
+        result.add(label);
+      }
+    };
+    for (String conceptURI : conceptURIs) {
+      int concept = graph.getConceptId(conceptURI);
+      for (SKOSType type : types) {
+        if (concept != -1) {
+          expand(concept, type, SKOSLanguages.ALL, sink);
+        }
+        result.next();
+      }
+    }
+    return result.build();
+  }
+  
+  @Override
+  public void expand(String conceptURI, EnumSet<SKOSType> types,
+      ExpansionSink sink) throws IOException {
+    expand(conceptURI, types, SKOSLanguages.ALL, sink);
+  }
+  
+  @Override
+  public void expand(String conceptURI, EnumSet<SKOSType> types,
+      long languages, ExpansionSink sink) throws IOException {
+    int concept = graph.getConceptId(conceptURI);
+    if (concept == -1) {
+      return;
+    }
+    for (SKOSType type : types) {
+      expand(concept, type, languages, sink);
+    }
+  }
+  
+  /**
+   * Passes the labels in the given languages of a given type for a concept to
+   * a sink, the labels of the related concepts for relation types
+   */
+  private void expand(int concept, SKOSType type, long languages,
+      ExpansionSink sink) {
+    if (!ConceptGraph.isRelationType(type)) {
+      addLabels(concept, type, type, languages, sink);
+      return;
+    }
+    for (int i = graph.getStart(type, concept); i < graph.getEnd(type,
+        concept); i++) {
+      int target = graph.getValue(type, i);
+      for (SKOSType labelType : ConceptGraph.EXPANSION_LABEL_TYPES) {
+        addLabels(target, labelType, type, languages, sink);
+      }
+    }
+  }
+  
+  private void addLabels(int concept, SKOSType labelType, SKOSType type,
+      long languages, ExpansionSink sink) {
+    for (int i = graph.getStart(labelType, concept); i < graph.getEnd(
+        labelType, concept); i++) {
+      int language = graph.getValueLanguage(labelType, i);
+      if ((languageBits[language] & languages) != 0) {
+        sink.add(graph.getLabel(graph.getValue(labelType, i)), type);
+      }
+    }
+  }
+  
+  /**
+   * Returns true if a concept carries a label in one of the given languages
+   */
+  private boolean hasLabel(int concept, int labelId, long languages) {
+    for (SKOSType type : ConceptGraph.LABEL_TYPES) {
+      for (int i = graph.getStart(type, concept); i < graph.getEnd(type,
+          concept); i++) {
+        if (graph.getValue(type, i) == labelId
+            && (languageBits[graph.getValueLanguage(type, i)]
+                & languages) != 0) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+  
+  /**
+   * Returns a cache of the expansions of the labels of the trie
+   */
+  private LabelExpansions.Cache newLabelExpansions() {
+    return new LabelExpansions.Cache(labelTrie, new LabelExpansions.Expander() {
+      @Override
+      public SKOSExpansion expand(String label, EnumSet<SKOSType> types,
+          long languages) {
+        int labelId = graph.getLabelId(label);
+        return labelId == -1 ? null : buildExpansion(labelId, types,
+            languages);
+      }
+    });
+  }
+  
+  /**
+   * Computes the expansion of a label to the given types, restricted to the
+   * given languages: the labels in these languages of all concepts carrying
+   * the label in one of them, deduplicated per type
+   * 
+   * @return the expansion, or null if no concept carries the label in these
+   *         languages
+   */
+  private SKOSExpansion buildExpansion(int labelId, EnumSet<SKOSType> types,
+      long languages) {
+    int start = graph.getLabelConceptsStart(labelId);
+    int end = graph.getLabelConceptsEnd(labelId);
+    
+    int[] matching = new int[end - start];
+    int numMatching = 0;
+    for (int i = start; i < end; i++) {
+      int concept = graph.getLabelConcept(i);
+      if (languages == SKOSLanguages.ALL
+          || hasLabel(concept, labelId, languages)) {
+        matching[numMatching++] = concept;
+      }
+    }
+    if (numMatching == 0) {
+      return null;
+    }
+    
+    final List<String> labels = new ArrayList<String>();
+    final Set<String> seen = new HashSet<String>();
+    ExpansionSink sink = new ExpansionSink() {
+      @Override
+      public void add(String label, SKOSType type) {
+        if (seen.add(label)) {
+          labels.add(label);
+        }
+      }
+    };
+    int[] offsets = new int[TYPES.length + 1];
+    for (SKOSType type : TYPES) {
+      offsets[type.ordinal()] = labels.size();
+      if (types.contains(type)) {
+        seen.clear();
+        for (int c = 0; c < numMatching; c++) {
+          expand(matching[c], type, languages, sink);
+        }
+      }
+    }
+    offsets[TYPES.length] = labels.size();
+    
+    return new SKOSExpansion(labels.toArray(new String[labels.size()]),
+        offsets);
+  }
+  
+  @Override
+  public LabelTrie getLabelTrie() {
+    return labelTrie;
+  }
+  
+  @Override
+  public SKOSVocabularyProfile getProfile() {
+    return profile;
+  }
+  
+  @Override
+  public LabelExpansions getLabelExpansions(EnumSet<SKOSType> types,
+      long languages) {
+    return labelExpansions.get(types, languages);
+  }
+  
+  @Override
+  public SKOSExpansion getExpansion(String label) throws IOException {
+    return getExpansion(label, SKOSLanguages.ALL);
+  }
+  
+  @Override
+  public SKOSExpansion getExpansion(String label, long languages)
+      throws IOException {
+    return labelExpansions.getExpansion(label.toLowerCase(), languages);
+  }
+  
+  @Override
+  public String[] getAltTerms(String label) throws IOException {
+    List<String> result = new ArrayList<String>();
+    
+    for (String conceptURI : getConcepts(label)) {
+      String[] altLabels = getAltLabels(conceptURI);
+      if (altLabels != null) {
+        result.addAll(Arrays.asList(altLabels));
+      }
+    }
+    
+    return result.toArray(new String[result.size()]);
+  }
+  
+  /** Returns the labels of the given label type for a concept */
+  private String[] readLabels(String conceptURI, SKOSType type) {
+    int concept = graph.getConceptId(conceptURI);
+    if (concept == -1) {
+      return null;
+    }
+    
+    int start = graph.getStart(type, concept);
+    int end = graph.getEnd(type, concept);
+    
+    String[] result = new String[end - start];
+    for (int i = start; i < end; i++) {
+      result[i - start] = graph.getLabel(graph.getValue(type, i));
+    }
+    return result;
+  }
+  
+  /** Returns the URIs of the concepts related through the given type */
+  private String[] readConcepts(String conceptURI, SKOSType type) {
+    int concept = graph.getConceptId(conceptURI);
+    if (concept == -1) {
+      return null;
+    }
+    
+    int start = graph.getStart(type, concept);
+    int end = graph.getEnd(type, concept);
+    
+    String[] result = new String[end - start];
+    for (int i = start; i < end; i++) {
+      result[i - start] = graph.getURI(graph.getValue(type, i));
+    }
+    return result;
+  }
+  
+  /**
+   * Returns the labels (prefLabel + altLabel and EHRI extension) of the
+   * concepts related through the given type
+   */
+  private String[] readRelatedLabels(String conceptURI, SKOSType type) {
+    int concept = graph.getConceptId(conceptURI);
+    if (concept == -1) {
+      return null;
+    }
+    
+    List<String> labels = new ArrayList<String>();
+    for (int i = graph.getStart(type, concept); i < graph.getEnd(type, concept); i++) {
+      int target = graph.getValue(type, i);
+      for (SKOSType labelType : ConceptGraph.EXPANSION_LABEL_TYPES) {
+        for (int j = graph.getStart(labelType, target); j < graph.getEnd(
+            labelType, target); j++) {
+          labels.add(graph.getLabel(graph.getValue(labelType, j)));
+        }
+      }
+    }
+    
+    return labels.toArray(new String[labels.size()]);
+  }
+  
+  @Override
+  public String[] getPrefLabels(String conceptURI) throws IOException {
+    return readLabels(conceptURI, SKOSType.PREF);
+  }
+  
+  @Override
+  public String[] getAltLabels(String conceptURI) throws IOException {
+    return readLabels(conceptURI, SKOSType.ALT);
+  }
+  
+  @Override
+  public String[] getHiddenLabels(String conceptURI) throws IOException {
+    return readLabels(conceptURI, SKOSType.HIDDEN);
+  }
+  
+  @Override
+  public String[] getPrefMaleLabels(String conceptURI) throws IOException {
+    return readLabels(conceptURI, SKOSType.PREFMALE);
+  }
+  
+  @Override
+  public String[] getPrefFemaleLabels(String conceptURI) throws IOException {
+    return readLabels(conceptURI, SKOSType.PREFFEMALE);
+  }
+  
+  @Override
+  public String[] getPrefNeuterLabels(String conceptURI) throws IOException {
+    return readLabels(conceptURI, SKOSType.PREFNEUTER);
+  }
+  
+  @Override
+  public String[] getAltMaleLabels(String conceptURI) throws IOException {
+    return readLabels(conceptURI, SKOSType.ALTMALE);
+  }
+  
+  @Override
+  public String[] getAltFemaleLabels(String conceptURI) throws IOException {
+    return readLabels(conceptURI, SKOSType.ALTFEMALE);
+  }
+  
+  @Override
+  public String[] getAltNeuterLabels(String conceptURI) throws IOException {
+    return readLabels(conceptURI, SKOSType.ALTNEUTER);
+  }
+  
+  @Override
+  public String[] getBroaderConcepts(String conceptURI) throws IOException {
+    return readConcepts(conceptURI, SKOSType.BROADER);
+  }
+  
+  @Override
+  public String[] getBroaderLabels(String conceptURI) throws IOException {
+    return readRelatedLabels(conceptURI, SKOSType.BROADER);
+  }
+  
+  @Override
+  public String[] getBroaderTransitiveConcepts(String conceptURI)
+      throws IOException {
+    return readConcepts(conceptURI, SKOSType.BROADERTRANSITIVE);
+  }
+  
+  @Override
+  public String[] getBroaderTransitiveLabels(String conceptURI)
+      throws IOException {
+    return readRelatedLabels(conceptURI, SKOSType.BROADERTRANSITIVE);
+  }
+  
+  @Override
+  public String[] getNarrowerConcepts(String conceptURI) throws IOException {
+    return readConcepts(conceptURI, SKOSType.NARROWER);
+  }
+  
+  @Override
+  public String[] getNarrowerLabels(String conceptURI) throws IOException {
+    return readRelatedLabels(conceptURI, SKOSType.NARROWER);
+  }
+  
+  @Override
+  public String[] getNarrowerTransitiveConcepts(String conceptURI)
+      throws IOException {
+    return readConcepts(conceptURI, SKOSType.NARROWERTRANSITIVE);
+  }
+  
+  @Override
+  public String[] getNarrowerTransitiveLabels(String conceptURI)
+      throws IOException {
+    return readRelatedLabels(conceptURI, SKOSType.NARROWERTRANSITIVE);
+  }
+  
+  @Override
+  public String[] getRelatedConcepts(String conceptURI) throws IOException {
+    return readConcepts(conceptURI, SKOSType.RELATED);
+  }
+  
+  @Override
+  public String[] getRelatedLabels(String conceptURI) throws IOException {
+    return readRelatedLabels(conceptURI, SKOSType.RELATED);
+  }
+  
+  /** The graph lives on the heap only, so there is nothing to release */
+  @Override
+  public void close() {}
+}
@@ -0,0 +1,107 @@
+package at.ac.univie.mminf.luceneSKOS.skos.impl;
+
+/**
+ * Copyright 2010 Bernhard Haslhofer 
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Set;
+
+import org.apache.commons.io.FilenameUtils;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.riot.RDFLanguages;
+
+import at.ac.univie.mminf.luceneSKOS.skos.SKOSEngineRegistry;
+
+import com.hp.hpl.jena.shared.NotFoundException;
+import com.hp.hpl.jena.util.FileManager;
+
+/**
+ * Streams SKOS sources into a {@link ConceptGraphBuilder}, without
+ * materializing them in a Jena model. Shared by the SKOSEngine
+ * implementations.
+ */
+final class SKOSSources {
+  
+  private SKOSSources() {}
+  
+  /**
+   * Reads SKOS data from an InputStream in the given serialization language,
+   * which must be either N3, RDF/XML, or TURTLE.
+   * 
+   * @param languages
+   *          the languages of the labels to be kept, null for all
+   */
+  static void read(InputStream inputStream, String lang,
+      ConceptGraphBuilder builder, Set<String> languages) throws IOException {
+    Lang riotLang;
+    if ("N3".equals(lang)) {
+      riotLang = Lang.N3;
+    } else if ("RDF/XML".equals(lang)) {
+      riotLang = Lang.RDFXML;
+    } else if ("TURTLE".equals(lang)) {
+      riotLang = Lang.TURTLE;
+    } else {
+      throw new IOException("Invalid RDF serialization format");
+    }
+    
+    RDFDataMgr.parse(new ConceptGraphSink(builder, languages), inputStream,
+        riotLang);
+  }
+  
+  /**
+   * Reads SKOS data from a given filename, URI or zip file. The serialization
+   * language is guessed from the file extension (RDF/XML by default).
+   * 
+   * @param languages
+   *          the languages of the labels to be kept, null for all
+   */
+  static void load(String filenameOrURI, ConceptGraphBuilder builder,
+      Set<String> languages) throws IOException {
+    FileManager fileManager = new FileManager();
+    fileManager.addLocatorFile();
+    fileManager.addLocatorURL();
+    fileManager.addLocatorClassLoader(SKOSSources.class.getClassLoader());
+    
+    if (FilenameUtils.getExtension(filenameOrURI).equals("zip")) {
+      fileManager.addLocatorZip(filenameOrURI);
+      filenameOrURI = FilenameUtils.getBaseName(filenameOrURI);
+    }
+    
+    InputStream in = fileManager.open(filenameOrURI);
+    if (in == null) {
+      throw new NotFoundException(filenameOrURI);
+    }
+    try {
+      RDFDataMgr.parse(new ConceptGraphSink(builder, languages), in,
+          RDFLanguages.filenameToLang(filenameOrURI, Lang.RDFXML));
+    } finally {
+      in.close();
+    }
+  }
+  
+  /**
+   * Returns the content hash of a local SKOS file, or null if the source is
+   * not a local file (URLs and class path resources are not checked for
+   * modifications)
+   */
+  static String sourceHash(String filenameOrURI) throws IOException {
+    File file = new File(filenameOrURI);
+    return file.isFile() ? SKOSEngineRegistry.contentHash(file) : null;
+  }
+}
@@ -0,0 +1,153 @@
+package at.ac.univie.mminf.luceneSKOS.skos.impl;
+
+/**
+ * Copyright 2010 Bernhard Haslhofer 
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * A sorted array of strings, held either on the heap or as UTF-8 bytes and
+ * their offsets in a buffer, e.g. a mapped snapshot. The strings of a buffer
+ * are decoded when they are read and looked up by comparing the key with
+ * their bytes, so only the strings returned take heap space.
+ * 
+ * Instances may be shared between threads.
+ */
+final class StringPool {
+  
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+  
+  /* the strings on the heap, null for a buffer */
+  private final String[] strings;
+  
+  /* size + 1 offsets into bytes, read by absolute index */
+  private final IntBuffer offsets;
+  
+  /* the UTF-8 bytes of the strings, read by absolute index */
+  private final ByteBuffer bytes;
+  
+  StringPool(String[] strings) {
+    this.strings = strings;
+    this.offsets = null;
+    this.bytes = null;
+  }
+  
+  StringPool(IntBuffer offsets, ByteBuffer bytes) {
+    this.strings = null;
+    this.offsets = offsets;
+    this.bytes = bytes;
+  }
+  
+  int size() {
+    return strings != null ? strings.length : offsets.capacity() - 1;
+  }
+  
+  String get(int i) {
+    if (strings != null) {
+      return strings[i];
+    }
+    int from = offsets.get(i);
+    byte[] encoded = new byte[offsets.get(i + 1) - from];
+    for (int j = 0; j < encoded.length; j++) {
+      encoded[j] = bytes.get(from + j);
+    }
+    return new String(encoded, UTF_8);
+  }
+  
+  /**
+   * Returns the index of a string, or -1 if the pool does not hold it
+   */
+  int indexOf(String key) {
+    if (strings != null) {
+      int i = Arrays.binarySearch(strings, key);
+      return i < 0 ? -1 : i;
+    }
+    int low = 0;
+    int high = size() - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      int cmp = compare(mid, key);
+      if (cmp < 0) {
+        low = mid + 1;
+      } else if (cmp > 0) {
+        high = mid - 1;
+      } else {
+        return mid;
+      }
+    }
+    return -1;
+  }
+  
+  /**
+   * Compares the i-th string with a key like {@link String#compareTo}, by the
+   * UTF-16 code units decoded from its bytes
+   */
+  private int compare(int i, String key) {
+    int pos = offsets.get(i);
+    int end = offsets.get(i + 1);
+    int k = 0;
+    while (pos < end) {
+      int b = bytes.get(pos++) & 0xFF;
+      int codePoint;
+      int continuation;
+      if (b < 0x80) {
+        codePoint = b;
+        continuation = 0;
+      } else if (b < 0xE0) {
+        codePoint = b & 0x1F;
+        continuation = 1;
+      } else if (b < 0xF0) {
+        codePoint = b & 0x0F;
+        continuation = 2;
+      } else {
+        codePoint = b & 0x07;
+        continuation = 3;
+      }
+      for (int j = 0; j < continuation; j++) {
+        codePoint = codePoint << 6 | bytes.get(pos++) & 0x3F;
+      }
+      
+      if (codePoint < Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+        if (k == key.length()) {
+          return 1;
+        }
+        int diff = codePoint - key.charAt(k++);
+        if (diff != 0) {
+          return diff;
+        }
+        continue;
+      }
+      
+      /* a surrogate pair */
+      int offset = codePoint - Character.MIN_SUPPLEMENTARY_CODE_POINT;
+      char[] pair = {(char) ((offset >>> 10) + Character.MIN_HIGH_SURROGATE),
+          (char) ((offset & 0x3FF) + Character.MIN_LOW_SURROGATE)};
+      for (char c : pair) {
+        if (k == key.length()) {
+          return 1;
+        }
+        int diff = c - key.charAt(k++);
+        if (diff != 0) {
+          return diff;
+        }
+      }
+    }
+    return k == key.length() ? 0 : -1;
+  }
+}
@@ -16,38 +16,73 @@ package at.ac.univie.mminf.luceneSKOS.solr;
  * limitations under the License.
  */
 
+import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
+import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.TokenStream;
 import org.apache.lucene.analysis.standard.StandardAnalyzer;
 import org.apache.lucene.analysis.util.ResourceLoader;
 import org.apache.lucene.analysis.util.ResourceLoaderAware;
 import org.apache.lucene.analysis.util.TokenFilterFactory;
 import org.apache.solr.core.SolrResourceLoader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import at.ac.univie.mminf.luceneSKOS.analysis.AbstractSKOSFilter;
 import at.ac.univie.mminf.luceneSKOS.analysis.SKOSAnalyzer.ExpansionType;
 import at.ac.univie.mminf.luceneSKOS.analysis.SKOSLabelFilter;
 import at.ac.univie.mminf.luceneSKOS.analysis.SKOSURIFilter;
 import at.ac.univie.mminf.luceneSKOS.analysis.tokenattributes.SKOSTypeAttribute.SKOSType;
+import at.ac.univie.mminf.luceneSKOS.skos.MergedSKOSEngine;
+import at.ac.univie.mminf.luceneSKOS.skos.ReloadableSKOSEngine;
 import at.ac.univie.mminf.luceneSKOS.skos.SKOSEngine;
 import at.ac.univie.mminf.luceneSKOS.skos.SKOSEngineFactory;
+import at.ac.univie.mminf.luceneSKOS.skos.SKOSEngineFactory.EngineType;
+import at.ac.univie.mminf.luceneSKOS.skos.SKOSLanguages;
 
 /**
  * A factory for plugging SKOS filters into Apache Solr
+ * 
+ * The skosFile attribute may list several files separated by commas, served
+ * by one filter through a {@link MergedSKOSEngine}; the type attribute then
+ * holds one type list per file, separated by commas (or a single list for
+ * all files).
  */
 public class SKOSFilterFactory extends TokenFilterFactory implements ResourceLoaderAware {
+  
+  private static final Logger log = LoggerFactory
+      .getLogger(SKOSFilterFactory.class);
+  
+  /** The default time between checks of the skos file for changes, in seconds */
+  public static final long DEFAULT_RELOAD_INTERVAL = 60;
+  
+  /** The types expanded to for vocabularies without a type list */
+  private static final SKOSType[] DEFAULT_TYPES = new SKOSType[] {
+      SKOSType.PREF, SKOSType.ALT};
+  
   private String skosFile;
   private String expansionTypeString;
   private String bufferSizeString;
   private String typeString;
   private String languageString;
+  private String engineTypeString;
+  private String dataDirString;
+  private String reloadIntervalString;
   private ExpansionType expansionType;
+  private EngineType engineType = SKOSEngineFactory.DEFAULT_ENGINE_TYPE;
   private SKOSType[] type;
   private SKOSEngine skosEngine;
+  private ReloadableSKOSEngine[] vocabularies;
   private int bufferSize;
+  private long languages = SKOSLanguages.ALL;
+  private Analyzer labelAnalyzer;
   
   
   public SKOSFilterFactory(Map<String,String> args) {
@@ -58,31 +93,93 @@ public class SKOSFilterFactory extends TokenFilterFactory implements ResourceLoa
     bufferSizeString = get(args, "bufferSize");
     typeString = get(args, "type");
     languageString = get(args, "language");
+    engineTypeString = get(args, "engine");
+    dataDirString = get(args, "dataDir");
+    reloadIntervalString = get(args, "reloadInterval");
     
-    System.out.println("Passed arguments: " + skosFile + " Type: "
+    log.debug("Passed arguments: " + skosFile + " Type: "
         + expansionTypeString + " bufferSize: "
-        + (bufferSizeString != null ? bufferSizeString : "Default")
+        + (bufferSizeString != null ? bufferSizeString : "Longest label")
         + " language: " + (languageString != null ? languageString : "All")
-        + " type: " + (typeString != null ? typeString : "Default"));
+        + " type: " + (typeString != null ? typeString : "Default")
+        + " engine: " + (engineTypeString != null ? engineTypeString : "Default")
+        + " dataDir: " + (dataDirString != null ? dataDirString : "Default")
+        + " reloadInterval: "
+        + (reloadIntervalString != null ? reloadIntervalString : "Default"));
   }
   
   @Override
   public void inform(ResourceLoader loader) {    
-    try {
-      if (skosFile.endsWith(".n3") || skosFile.endsWith(".rdf")
-          || skosFile.endsWith(".ttl") || skosFile.endsWith(".zip")) {
-        skosEngine = SKOSEngineFactory.getSKOSEngine(luceneMatchVersion,
-            ((SolrResourceLoader)loader) .getConfigDir() + skosFile,
-            languageString != null ? languageString.split(" ") : null);
+    if (engineTypeString != null) {
+      if (engineTypeString.equalsIgnoreCase(EngineType.LUCENE.toString())) {
+        engineType = EngineType.LUCENE;
+      } else if (engineTypeString.equalsIgnoreCase(EngineType.GRAPH
+          .toString())) {
+        engineType = EngineType.GRAPH;
       } else {
-        throw new IOException(
-            "Allowed file suffixes are: .n3 (N3), .rdf (RDF/XML), .ttl (TURTLE) and .zip (ZIP)");
+        throw new IllegalArgumentException(
+            "The property 'engine' must be either LUCENE or GRAPH");
       }
-      
+    }
+    
+    /* relative data directories are resolved against the core's instance dir */
+    File dataDir = null;
+    if (dataDirString != null) {
+      dataDir = new File(dataDirString);
+      if (!dataDir.isAbsolute()) {
+        dataDir = new File(((SolrResourceLoader) loader).getInstanceDir(),
+            dataDirString);
+      }
+    }
+    
+    long reloadInterval = DEFAULT_RELOAD_INTERVAL;
+    if (reloadIntervalString != null) {
+      reloadInterval = Long.parseLong(reloadIntervalString);
+      if (reloadInterval < 0) {
+        throw new IllegalArgumentException(
+            "The property 'reloadInterval' must be a number of seconds, or 0 to disable reloading");
+      }
+    }
+    
+    /*
+     * the filters emit the labels analyzed by this analyzer when a vocabulary
+     * version was built, see setRevisionLabels
+     */
+    labelAnalyzer = new StandardAnalyzer(luceneMatchVersion);
+    
+    String[] skosFiles = skosFile.split(",");
+    vocabularies = new ReloadableSKOSEngine[skosFiles.length];
+    try {
+      for (int i = 0; i < skosFiles.length; i++) {
+        String file = skosFiles[i].trim();
+        if (file.endsWith(".n3") || file.endsWith(".rdf")
+            || file.endsWith(".ttl") || file.endsWith(".zip")) {
+          /*
+           * engines are shared by all factories using the same vocabulary and
+           * released once this factory is garbage collected (e.g. after a
+           * core reload). They are built in the background, so that the
+           * vocabularies of all factories are loaded in parallel, and rebuilt
+           * in the background when the skos file changes. An engine holds the
+           * labels of all languages, the filters select them.
+           */
+          vocabularies[i] = new ReloadableSKOSEngine(this, luceneMatchVersion,
+              engineType, dataDir,
+              ((SolrResourceLoader)loader) .getConfigDir() + file,
+              reloadInterval * 1000, labelAnalyzer);
+        } else {
+          throw new IOException(
+              "Allowed file suffixes are: .n3 (N3), .rdf (RDF/XML), .ttl (TURTLE) and .zip (ZIP)");
+        }
+      }
+    
     } catch (IOException e) {
       throw new RuntimeException("Could not instantiate SKOS engine", e);
     }
     
+    if (languageString != null) {
+      languages = SKOSLanguages.getMask(languageString.trim().split(" +"));
+    }
+    
     if (expansionTypeString.equalsIgnoreCase(ExpansionType.URI.toString())) {
       expansionType = ExpansionType.URI;
     } else if (expansionTypeString.equalsIgnoreCase(ExpansionType.LABEL
@@ -99,31 +196,72 @@ public class SKOSFilterFactory extends TokenFilterFactory implements ResourceLoa
         throw new IllegalArgumentException(
             "The property 'bufferSize' must be a positive (smallish) integer");
       }
+    } else {
+      /* the longest label of the vocabulary, from the engine's profile */
+      bufferSize = SKOSLabelFilter.AUTO_BUFFER_SIZE;
     }
     
-    if (typeString != null) {
-      List<SKOSType> types = new ArrayList<SKOSType>();
-      for (String s : typeString.split(" ")) {
-        SKOSType st = SKOSType.valueOf(s.toUpperCase());
-        if (st != null) {
-          types.add(st);
-        }
+    if (vocabularies.length == 1) {
+      if (typeString != null) {
+        type = parseTypes(typeString);
+      }
+      skosEngine = vocabularies[0];
+      return;
+    }
+    
+    /* one type list per vocabulary, the filter expands to all of them */
+    String[] typeStrings = typeString != null ? typeString.split(",")
+        : new String[0];
+    if (typeStrings.length > 1 && typeStrings.length != vocabularies.length) {
+      throw new IllegalArgumentException(
+          "The property 'type' must hold one type list per skos file, separated by commas");
+    }
+    SKOSType[][] vocabularyTypes = new SKOSType[vocabularies.length][];
+    Set<SKOSType> types = EnumSet.noneOf(SKOSType.class);
+    for (int i = 0; i < vocabularies.length; i++) {
+      vocabularyTypes[i] = typeStrings.length == 0 ? DEFAULT_TYPES
+          : parseTypes(typeStrings[typeStrings.length == 1 ? 0 : i]);
+      types.addAll(Arrays.asList(vocabularyTypes[i]));
+    }
+    type = types.toArray(new SKOSType[types.size()]);
+    skosEngine = new MergedSKOSEngine(vocabularies, vocabularyTypes);
+  }
+  
+  private static SKOSType[] parseTypes(String typeString) {
+    List<SKOSType> types = new ArrayList<SKOSType>();
+    for (String s : typeString.trim().split(" ")) {
+      SKOSType st = SKOSType.valueOf(s.toUpperCase());
+      if (st != null) {
+        types.add(st);
       }
-      type = types.toArray(new SKOSType[types.size()]);
     }
+    return types.toArray(new SKOSType[types.size()]);
   }
   
   @Override
   public TokenStream create(TokenStream input) {
     
+    /* waits for the engines to be built */
+    try {
+      for (ReloadableSKOSEngine vocabulary : vocabularies) {
+        vocabulary.get();
+      }
+    } catch (IOException e) {
+      throw new RuntimeException("Could not instantiate SKOS engine", e);
+    }
+    
+    /* the filters pin the current version of the engine per token stream */
+    AbstractSKOSFilter filter;
     if (expansionType.equals(ExpansionType.LABEL)) {
-      return new SKOSLabelFilter(input, skosEngine, new StandardAnalyzer(
-          luceneMatchVersion), bufferSize, type);
-      
+      filter = new SKOSLabelFilter(input, skosEngine, labelAnalyzer,
+          bufferSize, type);
+    
     } else {
-      return new SKOSURIFilter(input, skosEngine, new StandardAnalyzer(
-          luceneMatchVersion), type);
+      filter = new SKOSURIFilter(input, skosEngine, labelAnalyzer, type);
     }
-    
+    filter.setLanguages(languages);
+    filter.setRevisionLabels(true);
+    return filter;
+  
   }
 }
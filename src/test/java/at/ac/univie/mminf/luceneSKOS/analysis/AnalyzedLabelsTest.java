@@ -0,0 +1,67 @@
+package at.ac.univie.mminf.luceneSKOS.analysis;
+
+/**
+ * Copyright 2010 Bernhard Haslhofer 
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Testing the labels analyzed once per vocabulary
+ */
+public class AnalyzedLabelsTest extends AbstractFilterTest {
+  
+  @Before
+  @Override
+  public void setUp() throws Exception {
+    
+    super.setUp();
+    
+  }
+  
+  @Test
+  public void testAnalyzedLabels() throws IOException {
+    
+    AnalyzedLabels labels = AnalyzedLabels.analyze(new StandardAnalyzer(
+        matchVersion), skosEngine.getLabelTrie());
+    
+    Assert.assertEquals(18, labels.size());
+    
+    Assert.assertEquals("united nations", new String(labels
+        .get("united nations")));
+    
+    Assert.assertNull(labels.get("no such label"));
+    
+  }
+  
+  @Test
+  public void testMerge() throws IOException {
+    
+    AnalyzedLabels labels = AnalyzedLabels.analyze(new StandardAnalyzer(
+        matchVersion), skosEngine.getLabelTrie());
+    
+    Assert.assertEquals(18, AnalyzedLabels.merge(labels, labels).size());
+    
+    /* labels missing for one vocabulary are analyzed when emitted */
+    Assert.assertNull(AnalyzedLabels.merge(labels, null));
+    
+  }
+  
+}
@@ -17,7 +17,10 @@ package at.ac.univie.mminf.luceneSKOS.analysis;
  */
 
 import java.io.IOException;
+import java.io.StringReader;
 
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
 import org.apache.lucene.analysis.core.SimpleAnalyzer;
 import org.apache.lucene.analysis.standard.StandardAnalyzer;
 import org.apache.lucene.document.Document;
@@ -39,6 +42,10 @@ import org.junit.Before;
 import org.junit.Test;
 
 import at.ac.univie.mminf.luceneSKOS.analysis.SKOSAnalyzer.ExpansionType;
+import at.ac.univie.mminf.luceneSKOS.analysis.tokenattributes.SKOSTypeAttribute.SKOSType;
+import at.ac.univie.mminf.luceneSKOS.mock.SKOSEngineMock;
+import at.ac.univie.mminf.luceneSKOS.skos.MergedSKOSEngine;
+import at.ac.univie.mminf.luceneSKOS.skos.SKOSEngine;
 import at.ac.univie.mminf.luceneSKOS.util.AnalyzerUtils;
 import at.ac.univie.mminf.luceneSKOS.util.TestUtil;
 
@@ -148,6 +155,81 @@ public class SKOSLabelFilterTest extends AbstractFilterTest {
     
   }
   
+  @Test
+  public void testMergedVocabularies() throws CorruptIndexException,
+      IOException {
+    
+    /* one vocabulary holds the longer label, the other one a shorter one */
+    SKOSEngineMock first = new SKOSEngineMock();
+    first.addEntry("http://example.com/first/1", SKOSType.PREF, "lazy dog");
+    first.addEntry("http://example.com/first/1", SKOSType.ALT, "slacker");
+    
+    SKOSEngineMock second = new SKOSEngineMock();
+    second.addEntry("http://example.com/second/1", SKOSType.PREF, "lazy");
+    second.addEntry("http://example.com/second/1", SKOSType.ALT, "sluggish");
+    
+    MergedSKOSEngine merged = new MergedSKOSEngine(new SKOSEngine[] {first,
+        second}, null);
+    
+    writer.close();
+    writer = new IndexWriter(directory, new IndexWriterConfig(matchVersion,
+        new SKOSAnalyzer(matchVersion, merged, ExpansionType.LABEL)));
+    
+    Document doc = new Document();
+    doc.add(new Field("content", "The quick brown fox jumps over the lazy dog",
+        TextField.TYPE_STORED));
+    
+    writer.addDocument(doc);
+    
+    searcher = new IndexSearcher(DirectoryReader.open(writer, false));
+    
+    /* both vocabularies expand, as separate filters would */
+    Assert.assertEquals(1, TestUtil.hitCount(searcher, new TermQuery(
+        new Term("content", "slacker"))));
+    Assert.assertEquals(1, TestUtil.hitCount(searcher, new TermQuery(
+        new Term("content", "sluggish"))));
+    
+    merged.close();
+    
+  }
+  
+  @Test
+  public void testLookups() throws IOException {
+    
+    /* counts the labels looked up in the engine */
+    final int[] lookups = new int[1];
+    SKOSEngineMock engine = new SKOSEngineMock() {
+      @Override
+      public String[] getConcepts(String label) throws IOException {
+        lookups[0]++;
+        return super.getConcepts(label);
+      }
+    };
+    engine.addEntry("http://example.com/concept/1", SKOSType.PREF, "jumps");
+    engine.addEntry("http://example.com/concept/1", SKOSType.ALT, "hops");
+    engine.addEntry("http://example.com/concept/7", SKOSType.PREF,
+        "lazy dog");
+    engine.addEntry("http://example.com/concept/7", SKOSType.ALT, "Odie");
+    
+    String text = "The quick brown fox jumps over the lazy dog";
+    Analyzer analyzer = new StandardAnalyzer(matchVersion);
+    for (int i = 0; i < 2; i++) {
+      TokenStream stream = new SKOSLabelFilter(analyzer.tokenStream("content",
+          new StringReader(text)), engine, analyzer, 150, SKOSType.ALT);
+      stream.reset();
+      while (stream.incrementToken()) {}
+      stream.end();
+      stream.close();
+    }
+    
+    /*
+     * only the two labels reach the engine, not the token sequences of up
+     * to 150 tokens starting at every token, and only on their first lookup
+     */
+    Assert.assertEquals(2, lookups[0]);
+    
+  }
+  
   // @Test
   public void displayTokensWithLabelExpansion() throws IOException {
     
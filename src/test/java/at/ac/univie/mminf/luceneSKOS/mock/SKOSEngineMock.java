@@ -19,12 +19,21 @@ package at.ac.univie.mminf.luceneSKOS.mock;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import at.ac.univie.mminf.luceneSKOS.analysis.tokenattributes.SKOSTypeAttribute.SKOSType;
+import at.ac.univie.mminf.luceneSKOS.skos.ExpansionSink;
+import at.ac.univie.mminf.luceneSKOS.skos.LabelExpansions;
+import at.ac.univie.mminf.luceneSKOS.skos.LabelTrie;
+import at.ac.univie.mminf.luceneSKOS.skos.SKOSBatchResult;
 import at.ac.univie.mminf.luceneSKOS.skos.SKOSEngine;
+import at.ac.univie.mminf.luceneSKOS.skos.SKOSExpansion;
+import at.ac.univie.mminf.luceneSKOS.skos.SKOSVocabularyProfile;
 
 /**
  * A mock that simulates the behavior of a SKOS engine for testing purposes
@@ -41,6 +50,14 @@ public class SKOSEngineMock implements SKOSEngine {
    */
   private int maxPrefLabelTerms = -1;
   
+  /**
+   * The label trie and the expansions of its labels, built again once entries
+   * were added
+   */
+  private LabelTrie labelTrie;
+  
+  private LabelExpansions.Cache labelExpansions;
+  
   /**
    * Method for feeding mock with data
    * 
@@ -49,6 +66,9 @@ public class SKOSEngineMock implements SKOSEngine {
    * @param value
    */
   public void addEntry(String conceptURI, SKOSType type, String... values) {
+    labelTrie = null;
+    labelExpansions = null;
+    
     if (!conceptMap.containsKey(conceptURI)) {
       Map<SKOSType,List<String>> entryMap = new HashMap<SKOSType,List<String>>();
       conceptMap.put(conceptURI, entryMap);
@@ -111,6 +131,105 @@ public class SKOSEngineMock implements SKOSEngine {
     return altTerms.toArray(new String[altTerms.size()]);
   }
   
+  @Override
+  public SKOSExpansion getExpansion(String label) throws IOException {
+    return SKOSExpansion.expand(this, label);
+  }
+  
+  @Override
+  public SKOSExpansion getExpansion(String label, long languages)
+      throws IOException {
+    return SKOSExpansion.expand(this, label, languages);
+  }
+  
+  @Override
+  public SKOSBatchResult getConcepts(String[] labels) throws IOException {
+    return SKOSBatchResult.getConcepts(this, labels);
+  }
+  
+  @Override
+  public void expand(String conceptURI, EnumSet<SKOSType> types,
+      ExpansionSink sink) throws IOException {
+    SKOSExpansion.expand(this, conceptURI, types, sink);
+  }
+  
+  /**
+   * The mock has no language tags, so all labels are passed
+   */
+  @Override
+  public void expand(String conceptURI, EnumSet<SKOSType> types,
+      long languages, ExpansionSink sink) throws IOException {
+    expand(conceptURI, types, sink);
+  }
+  
+  @Override
+  public LabelTrie getLabelTrie() throws IOException {
+    if (labelTrie != null) {
+      return labelTrie;
+    }
+    LabelTrie.Builder builder = new LabelTrie.Builder();
+    for (Map<SKOSType,List<String>> entryMap : conceptMap.values()) {
+      for (SKOSType type : new SKOSType[] {SKOSType.PREF, SKOSType.ALT,
+          SKOSType.HIDDEN}) {
+        if (entryMap.containsKey(type)) {
+          for (String label : entryMap.get(type)) {
+            builder.add(label);
+          }
+        }
+      }
+    }
+    labelTrie = builder.build();
+    return labelTrie;
+  }
+  
+  @Override
+  public LabelExpansions getLabelExpansions(EnumSet<SKOSType> types,
+      long languages) throws IOException {
+    if (labelExpansions == null) {
+      labelExpansions = new LabelExpansions.Cache(getLabelTrie(),
+          new LabelExpansions.Expander() {
+            @Override
+            public SKOSExpansion expand(String label,
+                EnumSet<SKOSType> types, long languages) throws IOException {
+              return SKOSExpansion.expand(SKOSEngineMock.this, label, types,
+                  languages);
+            }
+          });
+    }
+    return labelExpansions.get(types, languages);
+  }
+  
+  @Override
+  public SKOSVocabularyProfile getProfile() throws IOException {
+    SKOSVocabularyProfile.Builder builder = new SKOSVocabularyProfile.Builder();
+    builder.setNumConcepts(conceptMap.size());
+    Set<String> labels = new HashSet<String>();
+    for (Map<SKOSType,List<String>> entryMap : conceptMap.values()) {
+      for (Map.Entry<SKOSType,List<String>> entry : entryMap.entrySet()) {
+        builder.addCount(entry.getKey(), entry.getValue().size());
+      }
+      for (SKOSType type : new SKOSType[] {SKOSType.PREF, SKOSType.ALT,
+          SKOSType.HIDDEN}) {
+        if (entryMap.containsKey(type)) {
+          labels.addAll(entryMap.get(type));
+        }
+      }
+    }
+    for (String label : labels) {
+      builder.addLabel(label);
+    }
+    return builder.build();
+  }
+  
+  @Override
+  public SKOSBatchResult getLabels(String[] conceptURIs,
+      EnumSet<SKOSType> types) throws IOException {
+    return SKOSBatchResult.getLabels(this, conceptURIs, types);
+  }
+  
+  @Override
+  public void close() {}
+  
   @Override
   public String[] getHiddenLabels(String conceptURI) throws IOException {
     return readConceptFieldValues(conceptURI, SKOSType.HIDDEN);
@@ -138,6 +257,11 @@ public class SKOSEngineMock implements SKOSEngine {
     return getLabels(conceptURI, SKOSType.BROADERTRANSITIVE);
   }
   
+  @Override
+  public boolean hasConcept(String conceptURI) {
+    return conceptMap.containsKey(conceptURI);
+  }
+  
   @Override
   public String[] getConcepts(String label) throws IOException {
     String queryString = label.toLowerCase();
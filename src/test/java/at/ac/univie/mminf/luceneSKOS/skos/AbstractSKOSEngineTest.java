@@ -0,0 +1,101 @@
+package at.ac.univie.mminf.luceneSKOS.skos;
+
+/**
+ * Copyright 2010 Bernhard Haslhofer 
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.lucene.util.Version;
+import org.junit.After;
+import org.junit.runners.Parameterized.Parameters;
+
+import at.ac.univie.mminf.luceneSKOS.skos.SKOSEngineFactory.EngineType;
+
+/**
+ * Abstract class containing common code for the tests of engine features.
+ * Tests that run against every engine type are run with the Parameterized
+ * runner and take the engine type as their constructor argument.
+ */
+public abstract class AbstractSKOSEngineTest {
+  
+  protected static final String SIMPLE_SKOS =
+      "src/test/resources/skos_samples/simple_test_skos.rdf";
+  
+  protected static final String UKAT_SKOS =
+      "src/test/resources/skos_samples/ukat_examples.n3";
+  
+  protected static final String SKOS_NS =
+      "http://www.w3.org/2004/02/skos/core#";
+  
+  protected static final String UKAT_NS =
+      "http://www.ukat.org.uk/thesaurus/concept/";
+  
+  protected final Version matchVersion = Version.LUCENE_45;
+  
+  /** The engine implementation under test */
+  protected final EngineType engineType;
+  
+  /* the data directories created by the test, deleted after it */
+  private final List<File> dataDirs = new ArrayList<File>();
+  
+  protected AbstractSKOSEngineTest(EngineType engineType) {
+    this.engineType = engineType;
+  }
+  
+  /**
+   * Returns every engine type, as the parameters of a Parameterized test
+   */
+  @Parameters(name = "{0}")
+  public static Collection<Object[]> engineTypes() {
+    List<Object[]> engineTypes = new ArrayList<Object[]>();
+    for (EngineType engineType : EngineType.values()) {
+      engineTypes.add(new Object[] {engineType});
+    }
+    return engineTypes;
+  }
+  
+  /**
+   * Returns an engine of the type under test for a SKOS file
+   */
+  protected SKOSEngine getEngine(String skosFile) throws IOException {
+    return SKOSEngineFactory.getSKOSEngine(matchVersion, engineType, skosFile);
+  }
+  
+  /**
+   * Returns a new data directory, which is deleted after the test
+   */
+  protected File newDataDir() {
+    File dataDir = new File(System.getProperty("java.io.tmpdir"), "skosdata-"
+        + System.nanoTime());
+    dataDirs.add(dataDir);
+    return dataDir;
+  }
+  
+  @After
+  public void tearDown() throws Exception {
+    
+    for (File dataDir : dataDirs) {
+      FileUtils.deleteDirectory(dataDir);
+    }
+    
+  }
+  
+}
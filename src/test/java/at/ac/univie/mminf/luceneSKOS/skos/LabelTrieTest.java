@@ -0,0 +1,105 @@
+package at.ac.univie.mminf.luceneSKOS.skos;
+
+/**
+ * Copyright 2010 Bernhard Haslhofer 
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.EnumSet;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import at.ac.univie.mminf.luceneSKOS.analysis.tokenattributes.SKOSTypeAttribute.SKOSType;
+import at.ac.univie.mminf.luceneSKOS.skos.SKOSEngineFactory.EngineType;
+
+/**
+ * Tests the label trie of the engines
+ */
+@RunWith(Parameterized.class)
+public class LabelTrieTest extends AbstractSKOSEngineTest {
+  
+  public LabelTrieTest(EngineType engineType) {
+    super(engineType);
+  }
+  
+  @Test
+  public void testUKATLabelTrie() throws IOException {
+    
+    LabelTrie labels = getEngine(UKAT_SKOS).getLabelTrie();
+    
+    int military = labels.step(LabelTrie.ROOT, "Military");
+    
+    Assert.assertTrue(military != LabelTrie.NO_NODE);
+    
+    Assert.assertFalse(labels.isLabel(military));
+    
+    int equipment = labels.step(military, "equipment");
+    
+    Assert.assertTrue(labels.isLabel(equipment));
+    
+    Assert.assertEquals(LabelTrie.NO_NODE, labels.step(equipment, "weapons"));
+    
+    Assert.assertTrue(labels.isLabel(labels.step(LabelTrie.ROOT, "weapons")));
+    
+    Assert.assertTrue(labels.contains("military equipment"));
+    
+    Assert.assertFalse(labels.contains("military"));
+    
+  }
+  
+  @Test
+  public void testUKATLabelIds() throws IOException {
+    
+    LabelTrie labels = getEngine(UKAT_SKOS).getLabelTrie();
+    
+    int equipment = labels.step(labels.step(LabelTrie.ROOT, "military"),
+        "equipment");
+    
+    int id = labels.getLabelId(equipment);
+    
+    Assert.assertEquals(id, labels.getLabelId("military equipment"));
+    
+    Assert.assertEquals("military equipment", labels.getLabels().get(id));
+    
+    Assert.assertEquals(-1, labels.getLabelId(labels.step(LabelTrie.ROOT,
+        "military")));
+    
+    Assert.assertEquals(labels.getLabels().size(), labels.getNumLabels());
+    
+  }
+  
+  @Test
+  public void testLabelExpansionTables() throws IOException {
+    
+    SKOSEngine skosEngine = getEngine(UKAT_SKOS);
+    EnumSet<SKOSType> types = EnumSet.of(SKOSType.ALT);
+    
+    LabelExpansions first = skosEngine.getLabelExpansions(types, 1L);
+    Assert.assertSame(first, skosEngine.getLabelExpansions(types, 1L));
+    
+    /* only the most recently used tables are kept */
+    for (long languages = 2; languages < 1L << 10; languages++) {
+      skosEngine.getLabelExpansions(types, languages);
+    }
+    LabelExpansions last = skosEngine.getLabelExpansions(types, 1L << 10);
+    Assert.assertSame(last, skosEngine.getLabelExpansions(types, 1L << 10));
+    Assert.assertNotSame(first, skosEngine.getLabelExpansions(types, 1L));
+    
+  }
+  
+}
@@ -0,0 +1,130 @@
+package at.ac.univie.mminf.luceneSKOS.skos;
+
+/**
+ * Copyright 2010 Bernhard Haslhofer 
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import at.ac.univie.mminf.luceneSKOS.analysis.tokenattributes.SKOSTypeAttribute.SKOSType;
+import at.ac.univie.mminf.luceneSKOS.skos.SKOSEngineFactory.EngineType;
+
+/**
+ * Tests serving several vocabularies from one merged engine
+ */
+@RunWith(Parameterized.class)
+public class MergedSKOSEngineTest extends AbstractSKOSEngineTest {
+  
+  public MergedSKOSEngineTest(EngineType engineType) {
+    super(engineType);
+  }
+  
+  @Test
+  public void testMergedEngine() throws IOException {
+    
+    MergedSKOSEngine merged = new MergedSKOSEngine(new SKOSEngine[] {
+        getEngine(UKAT_SKOS), getEngine(SIMPLE_SKOS)}, new SKOSType[][] {
+        {SKOSType.PREF, SKOSType.ALT}, {SKOSType.PREF}});
+    
+    LabelTrie labels = merged.getLabelTrie();
+    Assert.assertTrue(labels.isLabel(labels.step(LabelTrie.ROOT, "weapons")));
+    Assert.assertTrue(labels.isLabel(labels.step(labels.step(LabelTrie.ROOT,
+        "united"), "nations")));
+    Assert.assertTrue(labels.contains("dog"));
+    
+    SKOSExpansion weapons = merged.getExpansion("weapons");
+    Assert.assertEquals(2, weapons.getEnd(SKOSType.ALT)
+        - weapons.getStart(SKOSType.ALT));
+    
+    /* the second vocabulary expands to prefLabels only */
+    SKOSExpansion dog = merged.getExpansion("canine");
+    Assert.assertEquals(1, dog.size());
+    Assert.assertEquals("dog", dog.getLabel(dog.getStart(SKOSType.PREF)));
+    
+    Assert.assertNull(merged.getExpansion("nothing"));
+    
+    Assert.assertEquals(4, merged.getProfile().getMaxLabelTokens());
+    
+    merged.close();
+    
+  }
+  
+  @Test
+  public void testMergedRevisions() throws IOException {
+    
+    MergedSKOSEngine merged = new MergedSKOSEngine(new SKOSEngine[] {
+        getEngine(UKAT_SKOS), getEngine(SIMPLE_SKOS)}, new SKOSType[][] {
+        {SKOSType.PREF, SKOSType.ALT}, {SKOSType.PREF}});
+    
+    LabelTrie labels = merged.getLabelTrie();
+    
+    /* the vocabularies did not change, so they are not merged again */
+    SKOSRevision first = merged.acquire();
+    SKOSRevision second = merged.acquire();
+    Assert.assertSame(first, second);
+    Assert.assertSame(labels, first.getEngine().getLabelTrie());
+    first.release();
+    second.release();
+    
+    merged.close();
+    
+  }
+  
+  @Test
+  public void testMergedVersions() throws Exception {
+    
+    ReloadableSKOSEngine ukat = new ReloadableSKOSEngine(null, matchVersion,
+        engineType, newDataDir(), UKAT_SKOS, 0);
+    MergedSKOSEngine merged = new MergedSKOSEngine(new SKOSEngine[] {ukat,
+        getEngine(SIMPLE_SKOS)}, null);
+    
+    /* unchanged versions are checked without pinning the vocabularies */
+    SKOSRevision first = merged.acquire();
+    long version = merged.getVersion();
+    Assert.assertEquals(ukat.getVersion(), ukat.getVersion());
+    Assert.assertSame(first, merged.acquire());
+    Assert.assertEquals(version, merged.getVersion());
+    first.release();
+    
+    /* a new revision of a vocabulary is merged in the background */
+    long ukatVersion = ukat.getVersion();
+    ukat.reload();
+    long timeout = System.currentTimeMillis() + 30000;
+    while (ukat.getVersion() == ukatVersion
+        && System.currentTimeMillis() < timeout) {
+      Thread.sleep(10);
+    }
+    Assert.assertTrue(ukat.getVersion() != ukatVersion);
+    while (merged.getVersion() == version
+        && System.currentTimeMillis() < timeout) {
+      Thread.sleep(10);
+    }
+    Assert.assertTrue(merged.getVersion() != version);
+    
+    SKOSRevision second = merged.acquire();
+    Assert.assertNotSame(first, second);
+    Assert.assertEquals(1, second.getEngine().getConcepts("weapons").length);
+    second.release();
+    
+    merged.close();
+    
+  }
+  
+}
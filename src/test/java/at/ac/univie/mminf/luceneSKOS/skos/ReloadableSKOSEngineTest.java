@@ -0,0 +1,105 @@
+package at.ac.univie.mminf.luceneSKOS.skos;
+
+/**
+ * Copyright 2010 Bernhard Haslhofer 
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import at.ac.univie.mminf.luceneSKOS.skos.SKOSEngineFactory.EngineType;
+
+/**
+ * Tests reloading a modified vocabulary in the background
+ */
+@RunWith(Parameterized.class)
+public class ReloadableSKOSEngineTest extends AbstractSKOSEngineTest {
+  
+  public ReloadableSKOSEngineTest(EngineType engineType) {
+    super(engineType);
+  }
+  
+  @Test
+  public void testReload() throws Exception {
+    
+    String conceptURI = UKAT_NS + "859";
+    
+    File dataDir = newDataDir();
+    File skosFile = new File(dataDir, "source/ukat_examples.n3");
+    FileUtils.copyFile(new File(UKAT_SKOS), skosFile);
+    
+    ReloadableSKOSEngine skosEngine = new ReloadableSKOSEngine(null,
+        matchVersion, engineType, dataDir, skosFile.getPath(), 1);
+    
+    ReloadableSKOSEngine.Revision old = skosEngine.acquire();
+    Assert.assertEquals("weapons",
+        old.getEngine().getPrefLabels(conceptURI)[0]);
+    
+    String content = FileUtils.readFileToString(skosFile, "UTF-8");
+    FileUtils.writeStringToFile(skosFile,
+        content.replace("\"Weapons\"", "\"Arms and weapons\""), "UTF-8");
+    
+    /* the new revision is published once it is built */
+    String prefLabel = null;
+    long timeout = System.currentTimeMillis() + 30000;
+    while (System.currentTimeMillis() < timeout) {
+      prefLabel = skosEngine.getPrefLabels(conceptURI)[0];
+      if (!prefLabel.equals("weapons")) {
+        break;
+      }
+      Thread.sleep(10);
+    }
+    Assert.assertEquals("arms and weapons", prefLabel);
+    
+    /* readers of the old revision are not affected */
+    Assert.assertEquals("weapons",
+        old.getEngine().getPrefLabels(conceptURI)[0]);
+    old.release();
+    
+    skosEngine.close();
+    
+  }
+  
+  @Test
+  public void testPatch() throws Exception {
+    
+    String conceptURI = UKAT_NS + "859";
+    String patch = "A <" + conceptURI + "> <" + SKOS_NS
+        + "altLabel> \"Weaponry\" .\n";
+    
+    ReloadableSKOSEngine skosEngine = new ReloadableSKOSEngine(null,
+        matchVersion, engineType, null, UKAT_SKOS, 0);
+    
+    try {
+      skosEngine.apply(SKOSPatch.read(new ByteArrayInputStream(patch
+          .getBytes("UTF-8"))));
+      Assert.assertEquals(EngineType.GRAPH, engineType);
+      Assert.assertEquals(3, skosEngine.getAltLabels(conceptURI).length);
+    } catch (UnsupportedOperationException e) {
+      /* only the graph engine can be patched */
+      Assert.assertEquals(EngineType.LUCENE, engineType);
+    }
+    
+    skosEngine.close();
+    
+  }
+  
+}
@@ -0,0 +1,79 @@
+package at.ac.univie.mminf.luceneSKOS.skos;
+
+/**
+ * Copyright 2010 Bernhard Haslhofer 
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import at.ac.univie.mminf.luceneSKOS.skos.SKOSEngineFactory.EngineType;
+
+/**
+ * Tests building engines into and reusing them from a data directory
+ */
+@RunWith(Parameterized.class)
+public class SKOSEngineFactoryTest extends AbstractSKOSEngineTest {
+  
+  public SKOSEngineFactoryTest(EngineType engineType) {
+    super(engineType);
+  }
+  
+  @Test
+  public void testDataDir() throws IOException {
+    
+    File dataDir = newDataDir();
+    
+    SKOSEngine first = SKOSEngineFactory.getSKOSEngine(matchVersion,
+        engineType, dataDir, SIMPLE_SKOS);
+    Assert.assertEquals(2, first.getAltTerms("quick").length);
+    
+    Assert.assertEquals(1, countBuilt(dataDir));
+    
+    /* reuses the data built by the first engine */
+    SKOSEngine second = SKOSEngineFactory.getSKOSEngine(matchVersion,
+        engineType, dataDir, SIMPLE_SKOS);
+    Assert.assertEquals(2, second.getAltTerms("quick").length);
+    
+    /* a language restriction reuses the data of all languages */
+    SKOSEngine english = SKOSEngineFactory.getSKOSEngine(matchVersion,
+        engineType, dataDir, SIMPLE_SKOS, "en");
+    Assert.assertEquals(0, english.getAltTerms("quick").length);
+    Assert.assertEquals(1, countBuilt(dataDir));
+    
+    first.close();
+    second.close();
+    english.close();
+    
+  }
+  
+  /* returns the number of indexes or snapshots built in a data directory */
+  private static int countBuilt(File dataDir) {
+    int built = 0;
+    for (String name : dataDir.list()) {
+      Assert.assertFalse(name.endsWith(".tmp"));
+      if (name.startsWith("simple_test_skos.rdf") && !name.endsWith(".lock")) {
+        built++;
+      }
+    }
+    return built;
+  }
+  
+}
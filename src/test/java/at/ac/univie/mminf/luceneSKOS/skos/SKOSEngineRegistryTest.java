@@ -0,0 +1,155 @@
+package at.ac.univie.mminf.luceneSKOS.skos;
+
+/**
+ * Copyright 2010 Bernhard Haslhofer 
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+
+import org.apache.lucene.analysis.core.KeywordAnalyzer;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import at.ac.univie.mminf.luceneSKOS.analysis.AnalyzedLabels;
+import at.ac.univie.mminf.luceneSKOS.skos.SKOSEngineFactory.EngineType;
+
+/**
+ * Tests sharing engines between filter factories through the registry
+ */
+@RunWith(Parameterized.class)
+public class SKOSEngineRegistryTest extends AbstractSKOSEngineTest {
+  
+  public SKOSEngineRegistryTest(EngineType engineType) {
+    super(engineType);
+  }
+  
+  @Test
+  public void testRegistrySharesEngines() throws IOException {
+    
+    int size = SKOSEngineRegistry.size();
+    
+    FutureSKOSEngine first = SKOSEngineRegistry.acquire(null, matchVersion,
+        engineType, SIMPLE_SKOS);
+    FutureSKOSEngine second = SKOSEngineRegistry.acquire(null, matchVersion,
+        engineType, SIMPLE_SKOS);
+    
+    Assert.assertSame(first, second);
+    Assert.assertEquals(size + 1, SKOSEngineRegistry.size());
+    
+    /* the labels are analyzed once with the engine */
+    AnalyzedLabels labels = SKOSEngineRegistry.getAnalyzedLabels(first);
+    Assert.assertNotNull(labels);
+    Assert.assertSame(labels, SKOSEngineRegistry.getAnalyzedLabels(second));
+    
+    SKOSEngineRegistry.release(first);
+    Assert.assertEquals(size + 1, SKOSEngineRegistry.size());
+    Assert.assertEquals(2, second.getAltTerms("quick").length);
+    
+    SKOSEngineRegistry.release(second);
+    Assert.assertEquals(size, SKOSEngineRegistry.size());
+    
+  }
+  
+  @Test
+  public void testLabelAnalyzer() throws IOException {
+    
+    int size = SKOSEngineRegistry.size();
+    
+    FutureSKOSEngine standard = SKOSEngineRegistry.acquire(null, matchVersion,
+        engineType, null, SIMPLE_SKOS, new StandardAnalyzer(matchVersion));
+    FutureSKOSEngine keyword = SKOSEngineRegistry.acquire(null, matchVersion,
+        engineType, null, SIMPLE_SKOS, new KeywordAnalyzer());
+    
+    /* the labels are analyzed by the analyzer of the filters */
+    Assert.assertNotSame(standard, keyword);
+    Assert.assertEquals(size + 2, SKOSEngineRegistry.size());
+    Assert.assertNotSame(SKOSEngineRegistry.getAnalyzedLabels(standard),
+        SKOSEngineRegistry.getAnalyzedLabels(keyword));
+    
+    /* the default analyzer is a StandardAnalyzer */
+    FutureSKOSEngine standardDefault = SKOSEngineRegistry.acquire(null,
+        matchVersion, engineType, SIMPLE_SKOS);
+    Assert.assertSame(standard, standardDefault);
+    
+    SKOSEngineRegistry.release(standard);
+    SKOSEngineRegistry.release(keyword);
+    SKOSEngineRegistry.release(standardDefault);
+    Assert.assertEquals(size, SKOSEngineRegistry.size());
+    
+  }
+  
+  @Test
+  public void testReleasedOwnersAreForgotten() throws Exception {
+    
+    int size = SKOSEngineRegistry.size();
+    
+    Object first = new Object();
+    Object second = new Object();
+    FutureSKOSEngine engine = SKOSEngineRegistry.acquire(first, matchVersion,
+        engineType, SIMPLE_SKOS);
+    Assert.assertSame(engine, SKOSEngineRegistry.acquire(second,
+        matchVersion, engineType, SIMPLE_SKOS));
+    
+    SKOSEngineRegistry.release(first, engine);
+    
+    /* the released owner going away does not release the engine again */
+    WeakReference<Object> collected = new WeakReference<Object>(first);
+    first = null;
+    for (int i = 0; i < 100 && collected.get() != null; i++) {
+      System.gc();
+      Thread.sleep(10);
+    }
+    Assert.assertNull(collected.get());
+    
+    /* acquiring expunges the owners that went away */
+    SKOSEngineRegistry.release(SKOSEngineRegistry.acquire(null, matchVersion,
+        engineType, SIMPLE_SKOS));
+    
+    Assert.assertEquals(size + 1, SKOSEngineRegistry.size());
+    Assert.assertEquals(2, engine.getAltTerms("quick").length);
+    
+    SKOSEngineRegistry.release(second, engine);
+    Assert.assertEquals(size, SKOSEngineRegistry.size());
+    
+  }
+  
+  @Test
+  public void testRegistryForgetsFailedBuilds() throws IOException {
+    
+    String skosFile = "src/test/resources/skos_samples/no_such_file.rdf";
+    
+    int size = SKOSEngineRegistry.size();
+    
+    FutureSKOSEngine engine = SKOSEngineRegistry.acquire(null, matchVersion,
+        engineType, skosFile);
+    
+    try {
+      engine.get();
+      Assert.fail("Expected the build to fail");
+    } catch (Exception expected) {
+      // the file does not exist
+    }
+    Assert.assertTrue(engine.isDone());
+    Assert.assertEquals(size, SKOSEngineRegistry.size());
+    
+    SKOSEngineRegistry.release(engine);
+    
+  }
+  
+}
@@ -17,13 +17,19 @@ package at.ac.univie.mminf.luceneSKOS.skos;
  */
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
 
 import org.junit.Assert;
 
 import org.apache.lucene.util.Version;
 import org.junit.Test;
 
+import at.ac.univie.mminf.luceneSKOS.analysis.tokenattributes.SKOSTypeAttribute.SKOSType;
+import at.ac.univie.mminf.luceneSKOS.skos.SKOSEngineFactory.EngineType;
+
 /**
  * Tests the functionality of the Lucene-backed SKOS Engine implementation
  */
@@ -31,13 +37,16 @@ public class SKOSEngineTest {
   
   protected final Version matchVersion = Version.LUCENE_45;
   
+  /** The engine implementation under test */
+  protected EngineType engineType = EngineType.LUCENE;
+  
   @Test
   public void testSimpleSKOSSamplesRDFXML() throws IOException {
     
     String skosFile = "src/test/resources/skos_samples/simple_test_skos.rdf";
     
     SKOSEngine skosEngine = SKOSEngineFactory.getSKOSEngine(matchVersion,
-        skosFile);
+        engineType, skosFile);
     
     Assert.assertEquals(2, skosEngine.getAltTerms("quick").length);
     
@@ -51,7 +60,7 @@ public class SKOSEngineTest {
     String skosFile = "src/test/resources/skos_samples/simple_test_skos.rdf";
     
     SKOSEngine skosEngine = SKOSEngineFactory.getSKOSEngine(matchVersion,
-        skosFile);
+        engineType, skosFile);
     
     Assert.assertEquals(2, skosEngine.getAltTerms("quick").length);
     
@@ -68,7 +77,7 @@ public class SKOSEngineTest {
       String skosFile = "src/test/resources/skos_samples/simple_test_skos.n3";
 
       SKOSEngine skosEngine = SKOSEngineFactory.getSKOSEngine(matchVersion,
-          skosFile);
+          engineType, skosFile);
 
       Assert.assertEquals(2, skosEngine.getAltTerms("sheep").length);
 
@@ -82,7 +91,7 @@ public class SKOSEngineTest {
     String skosFile = "src/test/resources/skos_samples/skos_spec_samples.n3";
     
     SKOSEngine skosEngine = SKOSEngineFactory.getSKOSEngine(matchVersion,
-        skosFile);
+        engineType, skosFile);
     
     Assert.assertEquals(3, skosEngine.getAltTerms("animals").length);
     
@@ -97,7 +106,7 @@ public class SKOSEngineTest {
     String skosFile = "src/test/resources/skos_samples/skos_spec_samples.n3";
     
     SKOSEngine skosEngine = SKOSEngineFactory.getSKOSEngine(matchVersion,
-        skosFile, "en");
+        engineType, skosFile, "en");
     
     String[] altTerms = skosEngine.getAltTerms("animals");
     
@@ -107,6 +116,51 @@ public class SKOSEngineTest {
     
   }
   
+  @Test
+  public void testSKOSSpecSamplesWithLanguageMask() throws IOException {
+    
+    String skosFile = "src/test/resources/skos_samples/skos_spec_samples.n3";
+    
+    SKOSEngine skosEngine = SKOSEngineFactory.getSKOSEngine(matchVersion,
+        engineType, skosFile);
+    
+    long en = SKOSLanguages.getMask("en");
+    long fr = SKOSLanguages.getMask("FR");
+    
+    SKOSExpansion animals = skosEngine.getExpansion("animals", en);
+    
+    Assert.assertEquals(1, animals.getEnd(SKOSType.ALT)
+        - animals.getStart(SKOSType.ALT));
+    
+    Assert.assertEquals("creatures",
+        animals.getLabel(animals.getStart(SKOSType.ALT)));
+    
+    /* the label is not carried in the selected languages */
+    Assert.assertNull(skosEngine.getExpansion("animals", fr));
+    
+    SKOSExpansion animaux = skosEngine.getExpansion("animaux", fr);
+    
+    Assert.assertEquals(2, animaux.getEnd(SKOSType.ALT)
+        - animaux.getStart(SKOSType.ALT));
+    
+    SKOSExpansion all = skosEngine.getExpansion("animaux", SKOSLanguages.ALL);
+    
+    Assert.assertEquals(3, all.getEnd(SKOSType.ALT)
+        - all.getStart(SKOSType.ALT));
+    
+    final List<String> labels = new ArrayList<String>();
+    skosEngine.expand("http://www.example.com/animals", EnumSet.of(
+        SKOSType.PREF, SKOSType.HIDDEN), fr, new ExpansionSink() {
+      @Override
+      public void add(String label, SKOSType type) {
+        labels.add(label);
+      }
+    });
+    
+    Assert.assertEquals(Arrays.asList("animaux", "betes"), labels);
+    
+  }
+  
   @Test
   public void testUKATSamples() throws IOException {
     
@@ -115,7 +169,7 @@ public class SKOSEngineTest {
     String conceptURI = "http://www.ukat.org.uk/thesaurus/concept/859";
     
     SKOSEngine skosEngine = SKOSEngineFactory.getSKOSEngine(matchVersion,
-        skosFile);
+        engineType, skosFile);
     
     // testing pref-labels
     String[] prefLabel = skosEngine.getPrefLabels(conceptURI);
@@ -176,4 +230,174 @@ public class SKOSEngineTest {
     
   }
   
+  /**
+   * Tests that inverse relations are inferred when only one direction is
+   * stated
+   */
+  @Test
+  public void testUKATInverseRelations() throws IOException {
+    
+    String skosFile = "src/test/resources/skos_samples/ukat_examples.n3";
+    
+    SKOSEngine skosEngine = SKOSEngineFactory.getSKOSEngine(matchVersion,
+        engineType, skosFile);
+    
+    String[] narrower = skosEngine
+        .getNarrowerConcepts("http://www.ukat.org.uk/thesaurus/concept/5060");
+    
+    Assert.assertEquals(1, narrower.length);
+    
+    Assert.assertEquals("http://www.ukat.org.uk/thesaurus/concept/859",
+        narrower[0]);
+    
+    String[] broaderLabels = skosEngine
+        .getBroaderLabels("http://www.ukat.org.uk/thesaurus/concept/7630");
+    
+    Assert.assertEquals(1, broaderLabels.length);
+    
+    Assert.assertEquals("weapons", broaderLabels[0]);
+    
+  }
+  
+  /**
+   * Tests that the transitive relations are computed from skos:broader
+   */
+  @Test
+  public void testUKATTransitiveClosure() throws IOException {
+    
+    String skosFile = "src/test/resources/skos_samples/ukat_examples.n3";
+    
+    SKOSEngine skosEngine = SKOSEngineFactory.getSKOSEngine(matchVersion,
+        engineType, skosFile);
+    
+    String[] broaderTransitive = skosEngine
+        .getBroaderTransitiveConcepts("http://www.ukat.org.uk/thesaurus/concept/7630");
+    
+    Assert.assertEquals(2, broaderTransitive.length);
+    
+    Assert.assertTrue(Arrays.asList(broaderTransitive).contains(
+        "http://www.ukat.org.uk/thesaurus/concept/859"));
+    
+    Assert.assertTrue(Arrays.asList(broaderTransitive).contains(
+        "http://www.ukat.org.uk/thesaurus/concept/5060"));
+    
+    String[] narrowerTransitiveLabels = skosEngine
+        .getNarrowerTransitiveLabels("http://www.ukat.org.uk/thesaurus/concept/5060");
+    
+    Assert.assertEquals(5, narrowerTransitiveLabels.length);
+    
+    Assert.assertTrue(Arrays.asList(narrowerTransitiveLabels).contains(
+        "ammunition"));
+    
+  }
+  
+  @Test
+  public void testUKATExpansion() throws IOException {
+    
+    String skosFile = "src/test/resources/skos_samples/ukat_examples.n3";
+    
+    SKOSEngine skosEngine = SKOSEngineFactory.getSKOSEngine(matchVersion,
+        engineType, skosFile);
+    
+    SKOSExpansion expansion = skosEngine.getExpansion("Weapons");
+    
+    Assert.assertNotNull(expansion);
+    
+    Assert.assertEquals(1, expansion.getEnd(SKOSType.PREF)
+        - expansion.getStart(SKOSType.PREF));
+    
+    Assert.assertEquals("weapons",
+        expansion.getLabel(expansion.getStart(SKOSType.PREF)));
+    
+    Assert.assertEquals(2, expansion.getEnd(SKOSType.ALT)
+        - expansion.getStart(SKOSType.ALT));
+    
+    Assert.assertEquals(3, expansion.getEnd(SKOSType.BROADER)
+        - expansion.getStart(SKOSType.BROADER));
+    
+    Assert.assertEquals(2, expansion.getEnd(SKOSType.NARROWER)
+        - expansion.getStart(SKOSType.NARROWER));
+    
+    Assert.assertNull(skosEngine.getExpansion("no such label"));
+    
+  }
+  
+  @Test
+  public void testUKATBatchLookups() throws IOException {
+    
+    String skosFile = "src/test/resources/skos_samples/ukat_examples.n3";
+    
+    SKOSEngine skosEngine = SKOSEngineFactory.getSKOSEngine(matchVersion,
+        engineType, skosFile);
+    
+    SKOSBatchResult concepts = skosEngine.getConcepts(new String[] {
+        "Weapons", "no such label", "arms"});
+    
+    Assert.assertEquals(3, concepts.getNumKeys());
+    
+    Assert.assertEquals(1, concepts.getEnd(0) - concepts.getStart(0));
+    
+    Assert.assertEquals("http://www.ukat.org.uk/thesaurus/concept/859",
+        concepts.getValue(concepts.getStart(0)));
+    
+    Assert.assertEquals(0, concepts.getEnd(1) - concepts.getStart(1));
+    
+    Assert.assertEquals(1, concepts.getEnd(2) - concepts.getStart(2));
+    
+    SKOSBatchResult labels = skosEngine.getLabels(new String[] {
+        "http://www.ukat.org.uk/thesaurus/concept/859", "urn:no-such-concept"},
+        EnumSet.of(SKOSType.PREF, SKOSType.BROADER));
+    
+    Assert.assertEquals(2, labels.getNumKeys());
+    
+    Assert.assertEquals(1, labels.getEnd(0, SKOSType.PREF)
+        - labels.getStart(0, SKOSType.PREF));
+    
+    Assert.assertEquals("weapons",
+        labels.getValue(labels.getStart(0, SKOSType.PREF)));
+    
+    Assert.assertEquals(3, labels.getEnd(0, SKOSType.BROADER)
+        - labels.getStart(0, SKOSType.BROADER));
+    
+    Assert.assertEquals(labels.getStart(1), labels.getEnd(1));
+    
+  }
+  
+  @Test
+  public void testUKATExpand() throws IOException {
+    
+    String skosFile = "src/test/resources/skos_samples/ukat_examples.n3";
+    
+    SKOSEngine skosEngine = SKOSEngineFactory.getSKOSEngine(matchVersion,
+        engineType, skosFile);
+    
+    final List<String> labels = new ArrayList<String>();
+    final List<SKOSType> types = new ArrayList<SKOSType>();
+    ExpansionSink sink = new ExpansionSink() {
+      @Override
+      public void add(String label, SKOSType type) {
+        labels.add(label);
+        types.add(type);
+      }
+    };
+    
+    skosEngine.expand("http://www.ukat.org.uk/thesaurus/concept/859",
+        EnumSet.of(SKOSType.ALT, SKOSType.BROADER), sink);
+    
+    Assert.assertEquals(5, labels.size());
+    
+    Assert.assertEquals(Arrays.asList(SKOSType.ALT, SKOSType.ALT,
+        SKOSType.BROADER, SKOSType.BROADER, SKOSType.BROADER), types);
+    
+    Assert.assertTrue(labels.contains("armaments"));
+    
+    Assert.assertTrue(labels.contains("military equipment"));
+    
+    skosEngine.expand("urn:no-such-concept", EnumSet.allOf(SKOSType.class),
+        sink);
+    
+    Assert.assertEquals(5, labels.size());
+    
+  }
+  
 }
@@ -0,0 +1,156 @@
+package at.ac.univie.mminf.luceneSKOS.skos;
+
+/**
+ * Copyright 2010 Bernhard Haslhofer 
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import at.ac.univie.mminf.luceneSKOS.skos.SKOSEngineFactory.EngineType;
+import at.ac.univie.mminf.luceneSKOS.skos.impl.SKOSGraphEngineImpl;
+
+/**
+ * Tests applying patches to a graph engine
+ */
+public class SKOSPatchTest extends AbstractSKOSEngineTest {
+  
+  public SKOSPatchTest() {
+    super(EngineType.GRAPH);
+  }
+  
+  @Test
+  public void testPatch() throws IOException {
+    
+    SKOSGraphEngineImpl skosEngine = (SKOSGraphEngineImpl) getEngine(UKAT_SKOS);
+    
+    String patch = "# replaces an alt label\n"
+        + "D <" + UKAT_NS + "859> <" + SKOS_NS + "altLabel> \"Arms\" .\n"
+        + "A <" + UKAT_NS + "859> <" + SKOS_NS + "altLabel> \"Weaponry\" .\n"
+        + "\n"
+        + "D <" + UKAT_NS + "859> <" + SKOS_NS + "narrower> <" + UKAT_NS
+        + "18874> .\n"
+        + "A <" + UKAT_NS + "7630> <" + SKOS_NS + "related> <" + UKAT_NS
+        + "18874> .\n";
+    
+    SKOSGraphEngineImpl patched = apply(skosEngine, patch);
+    
+    String[] altLabels = patched.getAltLabels(UKAT_NS + "859");
+    Assert.assertEquals(2, altLabels.length);
+    Assert.assertTrue(Arrays.asList(altLabels).contains("armaments"));
+    Assert.assertTrue(Arrays.asList(altLabels).contains("weaponry"));
+    Assert.assertEquals(1, patched.getConcepts("weaponry").length);
+    Assert.assertEquals(0, patched.getConcepts("arms").length);
+    
+    /* the inverse relations follow */
+    Assert.assertEquals(0,
+        patched.getBroaderConcepts(UKAT_NS + "18874").length);
+    Assert.assertEquals(1, patched.getNarrowerConcepts(UKAT_NS + "859").length);
+    Assert.assertEquals(UKAT_NS + "7630",
+        patched.getRelatedConcepts(UKAT_NS + "18874")[0]);
+    Assert.assertEquals(2,
+        patched.getNarrowerTransitiveConcepts(UKAT_NS + "5060").length);
+    
+    /* the original engine is not modified */
+    Assert.assertEquals(2,
+        skosEngine.getNarrowerConcepts(UKAT_NS + "859").length);
+    Assert.assertEquals(1, skosEngine.getConcepts("arms").length);
+    
+  }
+  
+  @Test
+  public void testPatchKeepsAuthoredTransitive() throws IOException {
+    
+    SKOSGraphEngineImpl skosEngine = (SKOSGraphEngineImpl) getEngine(UKAT_SKOS);
+    
+    String authored = "# a transitive relation without a broader path\n"
+        + "A <" + UKAT_NS + "18874> <" + SKOS_NS + "broaderTransitive> <"
+        + UKAT_NS + "7630> .\n";
+    String label = "A <" + UKAT_NS + "18874> <" + SKOS_NS
+        + "altLabel> \"Ammo\" .\n";
+    
+    SKOSGraphEngineImpl patched = apply(apply(skosEngine, authored), label);
+    
+    Assert.assertEquals(1, patched.getConcepts("ammo").length);
+    
+    /* the authored relation survives rebuilding the patched graph */
+    String[] broaderTransitive = patched
+        .getBroaderTransitiveConcepts(UKAT_NS + "18874");
+    Assert.assertEquals(3, broaderTransitive.length);
+    Assert.assertTrue(Arrays.asList(broaderTransitive).contains(
+        UKAT_NS + "7630"));
+    Assert.assertTrue(Arrays.asList(
+        patched.getNarrowerTransitiveConcepts(UKAT_NS + "7630")).contains(
+        UKAT_NS + "18874"));
+    
+    /* and can still be deleted */
+    String delete = "D <" + UKAT_NS + "18874> <" + SKOS_NS
+        + "broaderTransitive> <" + UKAT_NS + "7630> .\n";
+    patched = apply(patched, delete);
+    Assert.assertEquals(2,
+        patched.getBroaderTransitiveConcepts(UKAT_NS + "18874").length);
+    
+  }
+  
+  @Test
+  public void testPatchLabelLanguages() throws IOException {
+    
+    SKOSGraphEngineImpl skosEngine = (SKOSGraphEngineImpl) getEngine(
+        "src/test/resources/skos_samples/skos_spec_samples.n3");
+    
+    String animals = "http://www.example.com/animals";
+    String patch = "# moves a label from one language to another\n"
+        + "D <" + animals + "> <" + SKOS_NS + "altLabel> \"creatures\"@en .\n"
+        + "A <" + animals + "> <" + SKOS_NS + "altLabel> \"creatures\"@fr .\n";
+    
+    SKOSGraphEngineImpl patched = apply(skosEngine, patch);
+    
+    long en = SKOSLanguages.getMask("en");
+    long fr = SKOSLanguages.getMask("fr");
+    
+    Assert.assertNull(patched.getExpansion("creatures", en));
+    Assert.assertNotNull(patched.getExpansion("creatures", fr));
+    
+    /* the label is held once, in French */
+    String[] altLabels = patched.getAltLabels(animals);
+    Assert.assertEquals(3, altLabels.length);
+    Assert.assertTrue(Arrays.asList(altLabels).contains("creatures"));
+    
+    /* deleting it in French only keeps the other labels */
+    patched = apply(patched, "D <" + animals + "> <" + SKOS_NS
+        + "altLabel> \"b\u00eates\"@fr .\n");
+    Assert.assertEquals(2, patched.getAltLabels(animals).length);
+    Assert.assertNotNull(patched.getExpansion("creatures", fr));
+    
+  }
+  
+  @Test(expected = IOException.class)
+  public void testInvalidPatch() throws IOException {
+    SKOSPatch.read(new ByteArrayInputStream("X <a> <b> <c> .\n"
+        .getBytes("UTF-8")));
+  }
+  
+  /* applies a patch given in the RDF Patch syntax */
+  private static SKOSGraphEngineImpl apply(SKOSGraphEngineImpl skosEngine,
+      String patch) throws IOException {
+    return skosEngine.apply(SKOSPatch.read(new ByteArrayInputStream(patch
+        .getBytes("UTF-8"))));
+  }
+  
+}
@@ -0,0 +1,63 @@
+package at.ac.univie.mminf.luceneSKOS.skos;
+
+/**
+ * Copyright 2010 Bernhard Haslhofer 
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import at.ac.univie.mminf.luceneSKOS.analysis.tokenattributes.SKOSTypeAttribute.SKOSType;
+import at.ac.univie.mminf.luceneSKOS.skos.SKOSEngineFactory.EngineType;
+
+/**
+ * Tests the vocabulary profile computed when building the engines
+ */
+@RunWith(Parameterized.class)
+public class SKOSVocabularyProfileTest extends AbstractSKOSEngineTest {
+  
+  public SKOSVocabularyProfileTest(EngineType engineType) {
+    super(engineType);
+  }
+  
+  @Test
+  public void testUKATProfile() throws IOException {
+    
+    SKOSVocabularyProfile profile = getEngine(UKAT_SKOS).getProfile();
+    
+    Assert.assertEquals(4, profile.getNumConcepts());
+    Assert.assertEquals(4, profile.getCount(SKOSType.PREF));
+    Assert.assertEquals(4, profile.getCount(SKOSType.ALT));
+    Assert.assertEquals(Integer.valueOf(8), profile.getLanguageCounts().get(""));
+    
+    Assert.assertEquals(8, profile.getNumLabels());
+    Assert.assertEquals(4, profile.getMaxLabelTokens());
+    Assert.assertEquals(1, profile.getLabelTokensPercentile(50));
+    Assert.assertEquals(4, profile.getLabelTokensPercentile(100));
+    
+    Assert.assertEquals(3, profile.getHierarchyDepth());
+    Assert.assertEquals(2, profile.getMaxFanOut());
+    Assert.assertEquals(1.5, profile.getAverageFanOut(), 0.001);
+    
+    Assert.assertEquals(profile.toMap(), SKOSVocabularyProfile.fromMap(
+        profile.toMap()).toMap());
+    
+  }
+  
+}
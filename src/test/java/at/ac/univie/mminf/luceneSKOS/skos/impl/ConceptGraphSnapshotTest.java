@@ -0,0 +1,164 @@
+package at.ac.univie.mminf.luceneSKOS.skos.impl;
+
+/**
+ * Copyright 2010 Bernhard Haslhofer 
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import at.ac.univie.mminf.luceneSKOS.analysis.tokenattributes.SKOSTypeAttribute.SKOSType;
+import at.ac.univie.mminf.luceneSKOS.skos.AbstractSKOSEngineTest;
+import at.ac.univie.mminf.luceneSKOS.skos.SKOSEngineFactory.EngineType;
+import at.ac.univie.mminf.luceneSKOS.skos.SKOSPatch;
+
+/**
+ * Tests writing and reading concept graph snapshots
+ */
+public class ConceptGraphSnapshotTest extends AbstractSKOSEngineTest {
+  
+  public ConceptGraphSnapshotTest() {
+    super(EngineType.GRAPH);
+  }
+  
+  @Test
+  public void testRoundTrip() throws IOException {
+    
+    /* a graph with an authored transitive relation */
+    String patch = "A <" + UKAT_NS + "18874> <" + SKOS_NS
+        + "broaderTransitive> <" + UKAT_NS + "7630> .\n";
+    ConceptGraph graph = ((SKOSGraphEngineImpl) getEngine(UKAT_SKOS)).apply(
+        SKOSPatch.read(new ByteArrayInputStream(patch.getBytes("UTF-8"))))
+        .getGraph();
+    
+    File snapshot = newSnapshot();
+    ConceptGraphSnapshot.write(graph, snapshot, "hash");
+    
+    ConceptGraph read = ConceptGraphSnapshot.read(snapshot, true, "hash");
+    
+    Assert.assertEquals(graph.getNumConcepts(), read.getNumConcepts());
+    for (int c = 0; c < graph.getNumConcepts(); c++) {
+      Assert.assertEquals(graph.getURI(c), read.getURI(c));
+      Assert.assertEquals(c, read.getConceptId(graph.getURI(c)));
+    }
+    Assert.assertEquals(graph.getNumLabels(), read.getNumLabels());
+    for (int l = 0; l < graph.getNumLabels(); l++) {
+      Assert.assertEquals(graph.getLabel(l), read.getLabel(l));
+      Assert.assertEquals(l, read.getLabelId(graph.getLabel(l)));
+    }
+    Assert.assertEquals(-1, read.getLabelId("no such label"));
+    Assert.assertArrayEquals(graph.languages, read.languages);
+    for (SKOSType type : SKOSType.values()) {
+      Assert.assertEquals(graph.start[type.ordinal()],
+          read.start[type.ordinal()]);
+      Assert.assertEquals(graph.values[type.ordinal()],
+          read.values[type.ordinal()]);
+      Assert.assertEquals(graph.valueLanguages[type.ordinal()],
+          read.valueLanguages[type.ordinal()]);
+    }
+    Assert.assertEquals(graph.labelConceptStart, read.labelConceptStart);
+    Assert.assertEquals(graph.labelConcepts, read.labelConcepts);
+    
+    Assert.assertEquals(graph.authoredStart, read.authoredStart);
+    Assert.assertEquals(graph.authoredValues, read.authoredValues);
+    Assert.assertEquals(1, read.getNumAuthoredTransitive());
+    
+  }
+  
+  @Test
+  public void testNonASCIILabels() throws IOException {
+    
+    /* sorted by UTF-16 code units, unlike their UTF-8 bytes */
+    String[] labels = {"abc", "\u00e9t\u00e9", "\ud83d\ude00", "\uff21"};
+    ConceptGraphBuilder builder = new ConceptGraphBuilder();
+    for (String label : labels) {
+      builder.addLabel(UKAT_NS + "1", SKOSType.ALT, label);
+    }
+    ConceptGraph graph = builder.build();
+    
+    File snapshot = newSnapshot();
+    ConceptGraphSnapshot.write(graph, snapshot);
+    ConceptGraph read = ConceptGraphSnapshot.read(snapshot, false);
+    
+    for (String label : labels) {
+      int labelId = read.getLabelId(label);
+      Assert.assertEquals(graph.getLabelId(label), labelId);
+      Assert.assertEquals(label, read.getLabel(labelId));
+    }
+    Assert.assertEquals(-1, read.getLabelId("\ud83d"));
+    Assert.assertEquals(-1, read.getLabelId("ab"));
+    
+  }
+  
+  /* replacing a snapshot keeps no temporary or previous file around */
+  @Test
+  public void testReplace() throws IOException {
+    
+    ConceptGraph graph = ((SKOSGraphEngineImpl) getEngine(UKAT_SKOS))
+        .getGraph();
+    File snapshot = newSnapshot();
+    ConceptGraphSnapshot.write(graph, snapshot, "first");
+    ConceptGraphSnapshot.write(graph, snapshot, "second");
+    
+    ConceptGraphSnapshot.read(snapshot, false, "second");
+    Assert.assertEquals(1, snapshot.getParentFile().list().length);
+    
+  }
+  
+  @Test(expected = IOException.class)
+  public void testModifiedSource() throws IOException {
+    
+    File snapshot = newSnapshot();
+    ConceptGraphSnapshot.write(((SKOSGraphEngineImpl) getEngine(UKAT_SKOS))
+        .getGraph(), snapshot, "hash");
+    
+    ConceptGraphSnapshot.read(snapshot, false, "other hash");
+    
+  }
+  
+  @Test(expected = IOException.class)
+  public void testChecksumMismatch() throws IOException {
+    
+    File snapshot = newSnapshot();
+    ConceptGraphSnapshot.write(((SKOSGraphEngineImpl) getEngine(UKAT_SKOS))
+        .getGraph(), snapshot);
+    
+    RandomAccessFile raf = new RandomAccessFile(snapshot, "rw");
+    try {
+      raf.seek(raf.length() / 2);
+      int b = raf.read();
+      raf.seek(raf.length() / 2);
+      raf.write(b ^ 0xFF);
+    } finally {
+      raf.close();
+    }
+    
+    ConceptGraphSnapshot.read(snapshot, false);
+    
+  }
+  
+  /* returns a snapshot file in a new data directory */
+  private File newSnapshot() {
+    File dataDir = newDataDir();
+    dataDir.mkdirs();
+    return new File(dataDir, "ukat_examples.n3.snapshot");
+  }
+  
+}